@@ -0,0 +1,380 @@
+package com.kozejin;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+/**
+ * Activity counters at minute, hour and day resolution, each a fixed ring of
+ * primitive arrays indexed by time bucket. A slot remembers which bucket it
+ * holds and is cleared when the ring comes round to it again, so recording an
+ * event is a few array writes with no allocation. Unique players per day are
+ * counted with a small HyperLogLog whose estimate is kept up to date as
+ * registers change.
+ */
+public class ActivityStats {
+    public static final int MINUTE = 0;
+    public static final int HOUR = 1;
+    public static final int DAY = 2;
+
+    public static final int PEAK = 0;
+    public static final int CHAT = 1;
+    public static final int JOINS = 2;
+    public static final int SESSIONS = 3;
+
+    private static final long[] BUCKET_MS = {60_000L, 3_600_000L, 86_400_000L};
+    private static final int[] SLOTS = {24 * 60, 14 * 24, 365};
+    private static final int COUNTERS = 4;
+    private static final int HLL_BITS = 10;
+    private static final int REGISTERS = 1 << HLL_BITS;
+    private static final double[] INVERSE_POWERS = new double[66];
+    private static final int MAGIC = 0x53544154;
+    private static final int FORMAT = 1;
+    private static final long SAVE_EVERY_MINUTES = 10;
+    private static final String SPARK_LEVELS = "_.-:=+*#";
+
+    static {
+        for (int i = 0; i < INVERSE_POWERS.length; i++) {
+            INVERSE_POWERS[i] = Math.pow(2, -i);
+        }
+    }
+
+    private final File file;
+    private final IntSupplier online;
+    // Buckets are counted in local time so days start at local midnight
+    private final long offsetMs = ZoneId.systemDefault().getRules().getOffset(Instant.now()).getTotalSeconds() * 1000L;
+
+    // All guarded by this
+    private final long[][] bucketIds = new long[3][];
+    private final int[][][] counters = new int[3][COUNTERS][];
+    private final long[][] sessionMs = new long[3][];
+    private final int[] dailyUniques = new int[SLOTS[DAY]];
+    private final byte[] registers = new byte[REGISTERS];
+    private long registerDay = -1;
+    private double inverseSum = REGISTERS;
+    private int zeroRegisters = REGISTERS;
+
+    private final PluginExecutor executor;
+    private final Executor lane;
+    private final List<PluginExecutor.Repeating> scheduled = new ArrayList<>();
+
+    public ActivityStats(File dataFolder, PluginExecutor executor, IntSupplier online) {
+        this.file = new File(dataFolder, "stats.bin");
+        this.executor = executor;
+        this.lane = executor.lane();
+        this.online = online;
+        for (int res = 0; res < 3; res++) {
+            bucketIds[res] = new long[SLOTS[res]];
+            sessionMs[res] = new long[SLOTS[res]];
+            for (int counter = 0; counter < COUNTERS; counter++) {
+                counters[res][counter] = new int[SLOTS[res]];
+            }
+        }
+        load();
+    }
+
+    public void start() {
+        // A quiet minute still needs its concurrency recorded
+        scheduled.add(executor.scheduleAtFixedRate(lane, this::sample, 1, 1, TimeUnit.MINUTES));
+        scheduled.add(executor.scheduleWithFixedDelay(lane, this::save, SAVE_EVERY_MINUTES, SAVE_EVERY_MINUTES, TimeUnit.MINUTES));
+    }
+
+    public void close() {
+        for (PluginExecutor.Repeating task : scheduled) {
+            task.cancel();
+        }
+        // A periodic save still writing would race the final one for the temp file
+        executor.awaitLane(lane, TimeUnit.SECONDS.toMillis(5));
+        save();
+    }
+
+    public synchronized void recordJoin(UUID uuid, int nowOnline) {
+        long now = System.currentTimeMillis();
+        for (int res = 0; res < 3; res++) {
+            int slot = slot(res, now);
+            counters[res][JOINS][slot]++;
+            raisePeak(res, slot, nowOnline);
+        }
+        addUnique(uuid, now);
+    }
+
+    public synchronized void recordLeave(long sessionLengthMs) {
+        long now = System.currentTimeMillis();
+        for (int res = 0; res < 3; res++) {
+            int slot = slot(res, now);
+            counters[res][SESSIONS][slot]++;
+            sessionMs[res][slot] += sessionLengthMs;
+        }
+    }
+
+    public synchronized void recordChat() {
+        long now = System.currentTimeMillis();
+        for (int res = 0; res < 3; res++) {
+            counters[res][CHAT][slot(res, now)]++;
+        }
+    }
+
+    private void sample() {
+        try {
+            int nowOnline = online.getAsInt();
+            synchronized (this) {
+                long now = System.currentTimeMillis();
+                for (int res = 0; res < 3; res++) {
+                    raisePeak(res, slot(res, now), nowOnline);
+                }
+            }
+        } catch (RuntimeException e) {
+            System.out.println("[Discord Integration] Activity sample failed: " + e.getMessage());
+        }
+    }
+
+    /** The last {@code count} buckets of a counter, oldest first; buckets with no data are 0. */
+    public synchronized long[] series(int res, int counter, int count) {
+        long[] values = new long[count];
+        long current = bucketOf(res, System.currentTimeMillis());
+        for (int i = 0; i < count; i++) {
+            long bucket = current - (count - 1 - i);
+            int index = (int) Math.floorMod(bucket, (long) SLOTS[res]);
+            if (bucketIds[res][index] == bucket) {
+                values[i] = counters[res][counter][index];
+            }
+        }
+        return values;
+    }
+
+    /** Unique players for each of the last {@code count} days, oldest first. */
+    public synchronized long[] dailyUniques(int count) {
+        long[] values = new long[count];
+        long current = bucketOf(DAY, System.currentTimeMillis());
+        for (int i = 0; i < count; i++) {
+            long bucket = current - (count - 1 - i);
+            int index = (int) Math.floorMod(bucket, (long) SLOTS[DAY]);
+            if (bucketIds[DAY][index] == bucket) {
+                values[i] = dailyUniques[index];
+            }
+        }
+        return values;
+    }
+
+    /** Mean length of sessions that ended in the last {@code count} buckets, or 0 if none did. */
+    public synchronized long averageSessionMs(int res, int count) {
+        long current = bucketOf(res, System.currentTimeMillis());
+        long total = 0;
+        long sessions = 0;
+        for (int i = 0; i < count; i++) {
+            long bucket = current - i;
+            int index = (int) Math.floorMod(bucket, (long) SLOTS[res]);
+            if (bucketIds[res][index] == bucket) {
+                total += sessionMs[res][index];
+                sessions += counters[res][SESSIONS][index];
+            }
+        }
+        return sessions > 0 ? total / sessions : 0;
+    }
+
+    /** One character per value, scaled to the largest; zero sits on the baseline. */
+    public static String sparkline(long[] values) {
+        long max = 0;
+        for (long value : values) {
+            max = Math.max(max, value);
+        }
+        StringBuilder line = new StringBuilder(values.length);
+        for (long value : values) {
+            if (value == 0) {
+                line.append(SPARK_LEVELS.charAt(0));
+            } else {
+                line.append(SPARK_LEVELS.charAt((int) ((value * (SPARK_LEVELS.length() - 1) + max - 1) / max)));
+            }
+        }
+        return line.toString();
+    }
+
+    public static long max(long[] values) {
+        long max = 0;
+        for (long value : values) {
+            max = Math.max(max, value);
+        }
+        return max;
+    }
+
+    public static long sum(long[] values) {
+        long sum = 0;
+        for (long value : values) {
+            sum += value;
+        }
+        return sum;
+    }
+
+    private long bucketOf(int res, long now) {
+        return (now + offsetMs) / BUCKET_MS[res];
+    }
+
+    private int slot(int res, long now) {
+        long bucket = bucketOf(res, now);
+        int index = (int) (bucket % SLOTS[res]);
+        if (bucketIds[res][index] != bucket) {
+            bucketIds[res][index] = bucket;
+            for (int counter = 0; counter < COUNTERS; counter++) {
+                counters[res][counter][index] = 0;
+            }
+            sessionMs[res][index] = 0;
+            if (res == DAY) {
+                dailyUniques[index] = 0;
+            }
+        }
+        return index;
+    }
+
+    private void raisePeak(int res, int slot, int nowOnline) {
+        if (nowOnline > counters[res][PEAK][slot]) {
+            counters[res][PEAK][slot] = nowOnline;
+        }
+    }
+
+    private void addUnique(UUID uuid, long now) {
+        long day = bucketOf(DAY, now);
+        if (day != registerDay) {
+            Arrays.fill(registers, (byte) 0);
+            registerDay = day;
+            inverseSum = REGISTERS;
+            zeroRegisters = REGISTERS;
+        }
+        long hash = mix(uuid.getMostSignificantBits() ^ mix(uuid.getLeastSignificantBits()));
+        int index = (int) (hash >>> (64 - HLL_BITS));
+        int rank = Long.numberOfLeadingZeros((hash << HLL_BITS) | (1L << (HLL_BITS - 1))) + 1;
+        int previous = registers[index];
+        if (rank > previous) {
+            registers[index] = (byte) rank;
+            inverseSum += INVERSE_POWERS[rank] - INVERSE_POWERS[previous];
+            if (previous == 0) {
+                zeroRegisters--;
+            }
+            dailyUniques[slot(DAY, now)] = (int) Math.round(estimate());
+        }
+    }
+
+    private double estimate() {
+        double alpha = 0.7213 / (1 + 1.079 / REGISTERS);
+        double raw = alpha * REGISTERS * REGISTERS / inverseSum;
+        // Small counts: linear counting over the empty registers is far more accurate
+        if (raw <= 2.5 * REGISTERS && zeroRegisters > 0) {
+            return REGISTERS * Math.log((double) REGISTERS / zeroRegisters);
+        }
+        return raw;
+    }
+
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    private void save() {
+        File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+        try {
+            synchronized (this) {
+                // Small enough (tens of KB) to write under the lock
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(FORMAT);
+                    for (int res = 0; res < 3; res++) {
+                        int used = 0;
+                        for (long bucket : bucketIds[res]) {
+                            if (bucket != 0) {
+                                used++;
+                            }
+                        }
+                        out.writeInt(SLOTS[res]);
+                        out.writeInt(used);
+                        for (int index = 0; index < SLOTS[res]; index++) {
+                            if (bucketIds[res][index] == 0) {
+                                continue;
+                            }
+                            out.writeShort(index);
+                            out.writeLong(bucketIds[res][index]);
+                            for (int counter = 0; counter < COUNTERS; counter++) {
+                                out.writeInt(counters[res][counter][index]);
+                            }
+                            out.writeLong(sessionMs[res][index]);
+                            out.writeInt(res == DAY ? dailyUniques[index] : 0);
+                        }
+                    }
+                    out.writeLong(registerDay);
+                    out.write(registers);
+                }
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            System.out.println("[Discord Integration] Could not save activity stats: " + e.getMessage());
+        }
+    }
+
+    private synchronized void load() {
+        if (!file.isFile()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT) {
+                System.out.println("[Discord Integration] Ignoring activity stats in an unknown format");
+                return;
+            }
+            for (int res = 0; res < 3; res++) {
+                int slots = in.readInt();
+                int used = in.readInt();
+                for (int i = 0; i < used; i++) {
+                    int index = in.readUnsignedShort();
+                    long bucket = in.readLong();
+                    int[] values = new int[COUNTERS];
+                    for (int counter = 0; counter < COUNTERS; counter++) {
+                        values[counter] = in.readInt();
+                    }
+                    long ms = in.readLong();
+                    int uniques = in.readInt();
+                    // A ring resized between versions keeps only what still maps to the same slot
+                    if (slots != SLOTS[res] || index >= SLOTS[res]) {
+                        continue;
+                    }
+                    bucketIds[res][index] = bucket;
+                    for (int counter = 0; counter < COUNTERS; counter++) {
+                        counters[res][counter][index] = values[counter];
+                    }
+                    sessionMs[res][index] = ms;
+                    if (res == DAY) {
+                        dailyUniques[index] = uniques;
+                    }
+                }
+            }
+            registerDay = in.readLong();
+            in.readFully(registers);
+            inverseSum = 0;
+            zeroRegisters = 0;
+            for (byte register : registers) {
+                inverseSum += INVERSE_POWERS[register];
+                if (register == 0) {
+                    zeroRegisters++;
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("[Discord Integration] Could not load activity stats: " + e.getMessage());
+        }
+    }
+}
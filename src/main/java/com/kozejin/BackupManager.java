@@ -0,0 +1,249 @@
+package com.kozejin;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Periodic gzip snapshots of the player store. A snapshot walks the live
+ * records on the backup thread while joins and leaves carry on, streams them
+ * straight into the compressor and writes a SHA-256 sidecar that restores
+ * verify before touching any data.
+ */
+public class BackupManager {
+    private static final String PREFIX = "players-";
+    private static final String SUFFIX = ".json.gz";
+    private static final String CHECKSUM_SUFFIX = ".sha256";
+    private static final DateTimeFormatter STAMP =
+        DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss").withZone(ZoneId.systemDefault());
+
+    private final PlayerDataStorage storage;
+    private final ConfigManager configManager;
+    private final File backupFolder;
+    private final Gson gson = new Gson();
+    private final PluginExecutor executor;
+    // Backups and restores run one at a time, in the order asked for
+    private final Executor lane;
+    private PluginExecutor.Repeating scheduled;
+
+    public BackupManager(PlayerDataStorage storage, ConfigManager configManager, PluginExecutor executor, File dataFolder) {
+        this.storage = storage;
+        this.configManager = configManager;
+        this.executor = executor;
+        this.lane = executor.lane();
+        this.backupFolder = new File(dataFolder, "backups");
+    }
+
+    public void start() {
+        DiscordConfig.Backup settings = configManager.get().getBackup();
+        if (!settings.isEnabled()) {
+            return;
+        }
+        long interval = settings.getIntervalMinutes();
+        scheduled = executor.scheduleAtFixedRate(lane, () -> {
+            try {
+                backup();
+            } catch (IOException | RuntimeException e) {
+                System.err.println("[Discord Integration] Scheduled backup failed: " + e.getMessage());
+            }
+        }, interval, interval, TimeUnit.MINUTES);
+        System.out.println("[Discord Integration] Player data backups every " + interval + " minutes to: " + backupFolder.getAbsolutePath());
+    }
+
+    public void stop() {
+        if (scheduled != null) {
+            scheduled.cancel();
+        }
+    }
+
+    public CompletableFuture<File> backupAsync() {
+        CompletableFuture<File> future = new CompletableFuture<>();
+        lane.execute(() -> {
+            try {
+                future.complete(backup());
+            } catch (IOException | RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    public CompletableFuture<Integer> restoreAsync(String name) {
+        CompletableFuture<Integer> future = new CompletableFuture<>();
+        lane.execute(() -> {
+            try {
+                future.complete(restore(name));
+            } catch (IOException | RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    /** Backup names, newest first. */
+    public List<String> listBackups() {
+        String[] names = backupFolder.list((dir, name) -> name.startsWith(PREFIX) && name.endsWith(SUFFIX));
+        if (names == null) {
+            return Collections.emptyList();
+        }
+        List<String> sorted = new ArrayList<>(Arrays.asList(names));
+        sorted.sort(Collections.reverseOrder());
+        return sorted;
+    }
+
+    private File backup() throws IOException {
+        File archive = snapshot();
+        rotate(configManager.get().getBackup().getKeep(), null);
+        return archive;
+    }
+
+    /** Writes a new archive and its checksum without rotating old ones. */
+    private File snapshot() throws IOException {
+        backupFolder.mkdirs();
+        long start = System.currentTimeMillis();
+        String name = PREFIX + STAMP.format(Instant.ofEpochMilli(start)) + SUFFIX;
+        File archive = new File(backupFolder, name);
+        File temp = new File(backupFolder, name + ".tmp");
+
+        MessageDigest digest = sha256();
+        int[] count = {0};
+        try (JsonWriter writer = new JsonWriter(new BufferedWriter(new OutputStreamWriter(
+                new GZIPOutputStream(new DigestOutputStream(new FileOutputStream(temp), digest), 64 * 1024),
+                StandardCharsets.UTF_8)))) {
+            writer.beginObject();
+            storage.forEachPlayer(data -> {
+                try {
+                    writer.name(data.getUuid().toString());
+                    gson.toJson(data, PlayerData.class, writer);
+                    count[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writer.endObject();
+        } catch (IOException | RuntimeException e) {
+            temp.delete();
+            throw e;
+        }
+
+        String checksum = toHex(digest.digest());
+        Files.write(new File(backupFolder, name + CHECKSUM_SUFFIX).toPath(),
+            (checksum + "  " + name + "\n").getBytes(StandardCharsets.UTF_8));
+        Files.move(temp.toPath(), archive.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        System.out.println("[Discord Integration] Backed up " + count[0] + " player records to " + name
+            + " (" + archive.length() / 1024 + " KB, " + (System.currentTimeMillis() - start) + "ms)");
+        return archive;
+    }
+
+    private int restore(String name) throws IOException {
+        if ("latest".equalsIgnoreCase(name)) {
+            List<String> backups = listBackups();
+            if (backups.isEmpty()) {
+                throw new IOException("no backups found");
+            }
+            name = backups.get(0);
+        }
+        File archive = new File(backupFolder, new File(name).getName());
+        if (!archive.isFile()) {
+            throw new IOException("backup not found: " + name);
+        }
+        verify(archive);
+
+        // Keep the state we are about to overwrite, in case the wrong archive was picked. Rotating
+        // waits until the merge is done, or restoring the oldest kept archive would delete it first
+        snapshot();
+
+        int restored;
+        try (JsonReader reader = new JsonReader(new InputStreamReader(
+                new GZIPInputStream(new BufferedInputStream(new FileInputStream(archive)), 64 * 1024), StandardCharsets.UTF_8))) {
+            restored = JsonPlayerDataStorage.forEachRecord(reader, gson, (uuid, data) -> {
+                // Sessions open when the snapshot was taken ended long ago; a live record keeps its own session either way
+                data.setCurrentSessionStart(-1);
+                storage.mergePlayerData(data);
+            });
+        }
+        storage.saveAllPlayers();
+        rotate(configManager.get().getBackup().getKeep(), archive.getName());
+        System.out.println("[Discord Integration] Merged " + restored + " player records from " + archive.getName());
+        return restored;
+    }
+
+    private static void verify(File archive) throws IOException {
+        File sidecar = new File(archive.getParentFile(), archive.getName() + CHECKSUM_SUFFIX);
+        if (!sidecar.isFile()) {
+            throw new IOException("missing checksum for " + archive.getName());
+        }
+        String expected = new String(Files.readAllBytes(sidecar.toPath()), StandardCharsets.UTF_8).trim().split("\\s+")[0];
+
+        MessageDigest digest = sha256();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = new FileInputStream(archive)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        if (!expected.equalsIgnoreCase(toHex(digest.digest()))) {
+            throw new IOException("checksum mismatch for " + archive.getName());
+        }
+    }
+
+    /** Deletes all but the newest {@code keep} archives, sparing {@code spare} if it is one of them. */
+    private void rotate(int keep, String spare) {
+        List<String> backups = listBackups();
+        for (int i = Math.max(keep, 1); i < backups.size(); i++) {
+            String name = backups.get(i);
+            if (name.equals(spare)) {
+                continue;
+            }
+            new File(backupFolder, name).delete();
+            new File(backupFolder, name + CHECKSUM_SUFFIX).delete();
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+}
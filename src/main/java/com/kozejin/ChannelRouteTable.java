@@ -0,0 +1,93 @@
+package com.kozejin;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Open-addressing map from channel snowflake to route. Lookups work on the
+ * raw {@code long} so the gateway thread never boxes an ID just to find out
+ * the channel is not one of ours.
+ */
+public final class ChannelRouteTable {
+    private final long[] keys;
+    private final DiscordConfig.Route[] values;
+    private final int mask;
+    private final DiscordConfig.Route[] routes;
+    private final long commandChannelId;
+
+    private ChannelRouteTable(List<DiscordConfig.Route> routeList, long commandChannelId) {
+        int capacity = Integer.highestOneBit(Math.max(4, routeList.size() * 4 - 1)) << 1;
+        this.keys = new long[capacity];
+        this.values = new DiscordConfig.Route[capacity];
+        this.mask = capacity - 1;
+        this.commandChannelId = commandChannelId;
+
+        List<DiscordConfig.Route> unique = new ArrayList<>(routeList.size());
+        for (DiscordConfig.Route route : routeList) {
+            long id = route.getChannelIdLong();
+            if (id != 0 && get(id) == null) {
+                put(id, route);
+                unique.add(route);
+            }
+        }
+        this.routes = unique.toArray(new DiscordConfig.Route[0]);
+    }
+
+    public static ChannelRouteTable build(DiscordConfig config, DiscordConfig.Route defaultRoute) {
+        List<DiscordConfig.Route> all = new ArrayList<>(config.getRoutes());
+        // The legacy single bridge channel keeps working as a catch-all route
+        all.add(defaultRoute);
+        return new ChannelRouteTable(all, parseSnowflake(config.getCommandChannelId()));
+    }
+
+    public DiscordConfig.Route get(long channelId) {
+        if (channelId == 0) {
+            return null;
+        }
+        int slot = mix(channelId) & mask;
+        while (true) {
+            long key = keys[slot];
+            if (key == channelId) {
+                return values[slot];
+            }
+            if (key == 0) {
+                return null;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    public boolean isCommandChannel(long channelId) {
+        return channelId != 0 && channelId == commandChannelId;
+    }
+
+    public DiscordConfig.Route[] getRoutes() {
+        return routes;
+    }
+
+    public static long parseSnowflake(String id) {
+        if (id == null || id.isEmpty()) {
+            return 0;
+        }
+        try {
+            return Long.parseUnsignedLong(id.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private void put(long channelId, DiscordConfig.Route route) {
+        int slot = mix(channelId) & mask;
+        while (keys[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = channelId;
+        values[slot] = route;
+    }
+
+    private static int mix(long id) {
+        // Snowflakes are timestamp-major, so fold and scramble the low bits
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
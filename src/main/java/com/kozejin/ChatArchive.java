@@ -0,0 +1,452 @@
+package com.kozejin;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Append-only archive of relayed chat. Lines are packed into blocks that are
+ * deflated one at a time and appended to the current time segment. Each
+ * segment carries a sparse time index (first timestamp and offset of every
+ * block) and a per-player index (which blocks a player spoke in), so a search
+ * maps the segment and inflates only the blocks it needs, newest first.
+ */
+public class ChatArchive {
+    public static final byte GAME = 0;
+    public static final byte DISCORD = 1;
+
+    private static final String PREFIX = "chat-";
+    private static final String DATA = ".dat";
+    private static final String TIME_INDEX = ".tix";
+    private static final String PLAYER_INDEX = ".pix";
+    private static final int BLOCK_HEADER = 8;
+    private static final int TIME_ENTRY = 16;
+    private static final long FLUSH_AFTER_MS = 10_000;
+    private static final int MAX_FIELD_LENGTH = 4000;
+
+    private final File folder;
+    private final ConfigManager configManager;
+    private final Executor lane;
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+
+    // Active segment, guarded by this
+    private long segmentStart = -1;
+    private FileChannel dataChannel;
+    private FileChannel timeChannel;
+    private int flushedBlocks;
+    private final Map<String, List<Integer>> playerBlocks = new HashMap<>();
+    private final ByteArrayOutputStream block = new ByteArrayOutputStream(32 * 1024);
+    private final DataOutputStream blockOut = new DataOutputStream(block);
+    private final Set<String> blockAuthors = new HashSet<>();
+    private long blockFirst;
+
+    public interface ResultConsumer {
+        /** Returns false to stop the search. */
+        boolean accept(long timestamp, byte source, String author, String context, String message);
+    }
+
+    public ChatArchive(File dataFolder, ConfigManager configManager, Executor lane) {
+        this.folder = new File(dataFolder, "archive");
+        this.configManager = configManager;
+        this.lane = lane;
+        folder.mkdirs();
+    }
+
+    public void append(byte source, String author, String context, String message) {
+        long timestamp = System.currentTimeMillis();
+        lane.execute(() -> {
+            try {
+                write(timestamp, source, author, context, message);
+            } catch (IOException e) {
+                System.out.println("[Discord Integration] Chat archive write failed: " + e.getMessage());
+            }
+        });
+    }
+
+    public void close() {
+        lane.execute(() -> {
+            synchronized (this) {
+                try {
+                    closeSegment();
+                } catch (IOException e) {
+                    System.out.println("[Discord Integration] Error closing chat archive: " + e.getMessage());
+                }
+            }
+        });
+    }
+
+    private synchronized void write(long timestamp, byte source, String author, String context, String message) throws IOException {
+        DiscordConfig.ChatArchive settings = configManager.get().getChatArchive();
+        long segmentMillis = settings.getSegmentMinutes() * 60_000L;
+        if (segmentStart >= 0 && timestamp >= segmentStart + segmentMillis) {
+            closeSegment();
+            enforceRetention(settings);
+        }
+        if (segmentStart < 0) {
+            openSegment(timestamp);
+        }
+
+        if (block.size() == 0) {
+            blockFirst = timestamp;
+        }
+        blockOut.writeLong(timestamp);
+        blockOut.writeByte(source);
+        blockOut.writeUTF(clip(author));
+        blockOut.writeUTF(clip(context));
+        blockOut.writeUTF(clip(message));
+        if (author != null) {
+            blockAuthors.add(author.toLowerCase(Locale.ROOT));
+        }
+
+        if (block.size() >= settings.getBlockKb() * 1024 || timestamp - blockFirst >= FLUSH_AFTER_MS) {
+            flushBlock();
+        }
+    }
+
+    private void openSegment(long timestamp) throws IOException {
+        segmentStart = timestamp;
+        dataChannel = FileChannel.open(file(timestamp, DATA).toPath(),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        timeChannel = FileChannel.open(file(timestamp, TIME_INDEX).toPath(),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        flushedBlocks = 0;
+        playerBlocks.clear();
+    }
+
+    private void flushBlock() throws IOException {
+        if (block.size() == 0) {
+            return;
+        }
+        byte[] raw = block.toByteArray();
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        byte[] compressed = new byte[raw.length + 64];
+        int length = 0;
+        while (!deflater.finished()) {
+            if (length == compressed.length) {
+                compressed = Arrays.copyOf(compressed, compressed.length * 2);
+            }
+            length += deflater.deflate(compressed, length, compressed.length - length);
+        }
+
+        long offset = dataChannel.size();
+        ByteBuffer data = ByteBuffer.allocate(BLOCK_HEADER + length);
+        data.putInt(length).putInt(raw.length).put(compressed, 0, length).flip();
+        while (data.hasRemaining()) {
+            dataChannel.write(data);
+        }
+        ByteBuffer entry = ByteBuffer.allocate(TIME_ENTRY);
+        entry.putLong(blockFirst).putLong(offset).flip();
+        while (entry.hasRemaining()) {
+            timeChannel.write(entry);
+        }
+
+        for (String author : blockAuthors) {
+            playerBlocks.computeIfAbsent(author, k -> new ArrayList<>()).add(flushedBlocks);
+        }
+        flushedBlocks++;
+        blockAuthors.clear();
+        block.reset();
+    }
+
+    private void closeSegment() throws IOException {
+        if (segmentStart < 0) {
+            return;
+        }
+        flushBlock();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file(segmentStart, PLAYER_INDEX))))) {
+            out.writeInt(playerBlocks.size());
+            for (Map.Entry<String, List<Integer>> entry : playerBlocks.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeInt(entry.getValue().size());
+                for (int ordinal : entry.getValue()) {
+                    out.writeInt(ordinal);
+                }
+            }
+        }
+        dataChannel.close();
+        timeChannel.close();
+        segmentStart = -1;
+        playerBlocks.clear();
+    }
+
+    private void enforceRetention(DiscordConfig.ChatArchive settings) {
+        long cutoff = System.currentTimeMillis() - settings.getRetentionDays() * 86_400_000L;
+        long maxBytes = settings.getMaxDiskMb() * 1024L * 1024L;
+        long[] starts = segmentStarts();
+        long total = 0;
+        for (long start : starts) {
+            total += segmentBytes(start);
+        }
+        for (long start : starts) {
+            File data = file(start, DATA);
+            if (data.lastModified() >= cutoff && total <= maxBytes) {
+                break;
+            }
+            total -= segmentBytes(start);
+            data.delete();
+            file(start, TIME_INDEX).delete();
+            file(start, PLAYER_INDEX).delete();
+        }
+    }
+
+    /**
+     * Streams matching lines newest first. {@code player} restricts results to one
+     * author and uses the player index; otherwise {@code text} is matched
+     * case-insensitively against the message.
+     */
+    public void search(String player, String text, long since, ResultConsumer consumer) throws IOException {
+        String author = player != null ? player.toLowerCase(Locale.ROOT) : null;
+        String needle = text != null ? text.toLowerCase(Locale.ROOT) : null;
+        Matcher matcher = new Matcher(author, needle, since, consumer);
+
+        long activeStart;
+        int activeBlocks;
+        byte[] pending;
+        List<Integer> activeCandidates;
+        synchronized (this) {
+            activeStart = segmentStart;
+            activeBlocks = flushedBlocks;
+            pending = block.toByteArray();
+            List<Integer> blocks = author != null ? playerBlocks.get(author) : null;
+            activeCandidates = blocks != null ? new ArrayList<>(blocks) : null;
+        }
+
+        if (pending.length > 0 && !matcher.scan(pending)) {
+            return;
+        }
+
+        long[] starts = segmentStarts();
+        long segmentEnd = Long.MAX_VALUE;
+        for (int s = starts.length - 1; s >= 0; s--) {
+            long start = starts[s];
+            if (segmentEnd < since) {
+                return;
+            }
+            int[] candidates;
+            int blockCount;
+            if (start == activeStart) {
+                blockCount = activeBlocks;
+                candidates = author == null ? null : toArray(activeCandidates);
+            } else {
+                blockCount = -1;
+                candidates = author == null ? null : readPlayerIndex(start, author);
+            }
+            if (!searchSegment(start, blockCount, candidates, matcher)) {
+                return;
+            }
+            segmentEnd = start;
+        }
+    }
+
+    private boolean searchSegment(long start, int blockCount, int[] candidates, Matcher matcher) throws IOException {
+        File data = file(start, DATA);
+        File index = file(start, TIME_INDEX);
+        if (!data.exists() || !index.exists()) {
+            return true;
+        }
+        try (FileChannel dataIn = FileChannel.open(data.toPath(), StandardOpenOption.READ);
+             FileChannel indexIn = FileChannel.open(index.toPath(), StandardOpenOption.READ)) {
+            int blocks = (int) (indexIn.size() / TIME_ENTRY);
+            if (blockCount >= 0) {
+                blocks = Math.min(blocks, blockCount);
+            }
+            if (blocks == 0) {
+                return true;
+            }
+            // Pages are only faulted in for the blocks we actually inflate
+            MappedByteBuffer times = indexIn.map(FileChannel.MapMode.READ_ONLY, 0, (long) blocks * TIME_ENTRY);
+            MappedByteBuffer mapped = dataIn.map(FileChannel.MapMode.READ_ONLY, 0, dataIn.size());
+
+            // Without a player index every block is a candidate
+            int count = candidates != null ? candidates.length : blocks;
+            for (int i = count - 1; i >= 0; i--) {
+                int ordinal = candidates != null ? candidates[i] : i;
+                if (ordinal >= blocks) {
+                    continue;
+                }
+                long blockEnd = ordinal + 1 < blocks ? times.getLong((ordinal + 1) * TIME_ENTRY) : Long.MAX_VALUE;
+                if (blockEnd < matcher.since) {
+                    return true;
+                }
+                long offset = times.getLong(ordinal * TIME_ENTRY + 8);
+                if (!matcher.scan(inflate(mapped, (int) offset))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static byte[] inflate(MappedByteBuffer mapped, int offset) throws IOException {
+        int length = mapped.getInt(offset);
+        int rawLength = mapped.getInt(offset + 4);
+        ByteBuffer compressed = mapped.slice(offset + BLOCK_HEADER, length);
+        byte[] raw = new byte[rawLength];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            int read = 0;
+            while (read < rawLength && !inflater.finished()) {
+                read += inflater.inflate(raw, read, rawLength - read);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("corrupt archive block at " + offset, e);
+        } finally {
+            inflater.end();
+        }
+        return raw;
+    }
+
+    private int[] readPlayerIndex(long start, String author) throws IOException {
+        File index = file(start, PLAYER_INDEX);
+        if (!index.exists()) {
+            // Segment from an unclean shutdown: fall back to scanning every block
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(index)))) {
+            int players = in.readInt();
+            for (int p = 0; p < players; p++) {
+                String name = in.readUTF();
+                int count = in.readInt();
+                if (name.equals(author)) {
+                    int[] ordinals = new int[count];
+                    for (int i = 0; i < count; i++) {
+                        ordinals[i] = in.readInt();
+                    }
+                    return ordinals;
+                }
+                in.skipBytes(count * 4);
+            }
+        }
+        return new int[0];
+    }
+
+    private long[] segmentStarts() {
+        String[] names = folder.list((dir, name) -> name.startsWith(PREFIX) && name.endsWith(DATA));
+        if (names == null) {
+            return new long[0];
+        }
+        long[] starts = new long[names.length];
+        int count = 0;
+        for (String name : names) {
+            try {
+                starts[count++] = Long.parseLong(name.substring(PREFIX.length(), name.length() - DATA.length()));
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        starts = Arrays.copyOf(starts, count);
+        Arrays.sort(starts);
+        return starts;
+    }
+
+    private long segmentBytes(long start) {
+        return file(start, DATA).length() + file(start, TIME_INDEX).length() + file(start, PLAYER_INDEX).length();
+    }
+
+    private File file(long start, String suffix) {
+        return new File(folder, PREFIX + start + suffix);
+    }
+
+    private static int[] toArray(List<Integer> values) {
+        if (values == null) {
+            return new int[0];
+        }
+        int[] array = new int[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i);
+        }
+        return array;
+    }
+
+    private static String clip(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.length() > MAX_FIELD_LENGTH ? value.substring(0, MAX_FIELD_LENGTH) : value;
+    }
+
+    private static final class Matcher {
+        private final String author;
+        private final String needle;
+        private final long since;
+        private final ResultConsumer consumer;
+
+        private Matcher(String author, String needle, long since, ResultConsumer consumer) {
+            this.author = author;
+            this.needle = needle;
+            this.since = since;
+            this.consumer = consumer;
+        }
+
+        /** Decodes one block and reports its matches newest first; false once the consumer has enough. */
+        private boolean scan(byte[] raw) throws IOException {
+            List<Line> matches = new ArrayList<>();
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(raw));
+            while (in.available() > 0) {
+                long timestamp = in.readLong();
+                byte source = in.readByte();
+                String lineAuthor = in.readUTF();
+                String context = in.readUTF();
+                String message = in.readUTF();
+                if (timestamp < since) {
+                    continue;
+                }
+                if (author != null && !author.equalsIgnoreCase(lineAuthor)) {
+                    continue;
+                }
+                if (needle != null && !message.toLowerCase(Locale.ROOT).contains(needle)) {
+                    continue;
+                }
+                matches.add(new Line(timestamp, source, lineAuthor, context, message));
+            }
+            for (int i = matches.size() - 1; i >= 0; i--) {
+                Line match = matches.get(i);
+                if (!consumer.accept(match.timestamp, match.source, match.author, match.context, match.message)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class Line {
+        private final long timestamp;
+        private final byte source;
+        private final String author;
+        private final String context;
+        private final String message;
+
+        private Line(long timestamp, byte source, String author, String context, String message) {
+            this.timestamp = timestamp;
+            this.source = source;
+            this.author = author;
+            this.context = context;
+            this.message = message;
+        }
+    }
+}
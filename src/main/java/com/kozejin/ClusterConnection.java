@@ -0,0 +1,197 @@
+package com.kozejin;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ClusterConnection {
+    private static final int MAX_QUEUED_MESSAGES = 10000;
+    private static final int MAX_MESSAGES_PER_FLUSH = 1024;
+
+    private final Socket socket;
+    private final Handler handler;
+    private final long batchDelayMs;
+    private final BlockingQueue<byte[]> outbound = new LinkedBlockingQueue<>(MAX_QUEUED_MESSAGES);
+    private volatile boolean open = true;
+    private final AtomicLong accepted = new AtomicLong();
+    // Only the writer thread updates this
+    private volatile long flushed;
+    private volatile String nodeId;
+
+    public interface Handler {
+        void onMessage(ClusterConnection connection, byte type, DataInputStream in) throws IOException;
+
+        void onClosed(ClusterConnection connection);
+    }
+
+    public ClusterConnection(Socket socket, Handler handler, long batchDelayMs) throws IOException {
+        this.socket = socket;
+        this.handler = handler;
+        this.batchDelayMs = batchDelayMs;
+        socket.setTcpNoDelay(true);
+        socket.setKeepAlive(true);
+    }
+
+    public void start(String name) {
+        Thread reader = new Thread(this::readLoop, "DiscordIntegration-Cluster-Reader-" + name);
+        reader.setDaemon(true);
+        reader.start();
+
+        Thread writer = new Thread(this::writeLoop, "DiscordIntegration-Cluster-Writer-" + name);
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public boolean send(byte[] message) {
+        if (!open) {
+            return false;
+        }
+        if (!outbound.offer(message)) {
+            System.out.println("[Discord Integration] Cluster send queue full, dropping message for " + describe());
+            return false;
+        }
+        accepted.incrementAndGet();
+        return true;
+    }
+
+    public boolean isOpen() {
+        return open;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public void setNodeId(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    public String describe() {
+        return nodeId != null ? nodeId : String.valueOf(socket.getRemoteSocketAddress());
+    }
+
+    /** Waits until every queued message has been written to the socket; false on timeout. */
+    public boolean awaitFlushed(long timeoutMs) {
+        long target = accepted.get();
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (open && flushed < target) {
+            if (System.currentTimeMillis() >= deadline) {
+                return false;
+            }
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void close() {
+        if (!open) {
+            return;
+        }
+        open = false;
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
+        handler.onClosed(this);
+    }
+
+    private void readLoop() {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()))) {
+            while (open) {
+                int length = in.readInt();
+                if (length <= 0 || length > ClusterProtocol.MAX_FRAME_SIZE) {
+                    throw new IOException("Invalid frame length " + length);
+                }
+                byte[] frame = new byte[length];
+                in.readFully(frame);
+
+                DataInputStream messages = new DataInputStream(new ByteArrayInputStream(frame));
+                while (messages.available() > 0) {
+                    handler.onMessage(this, messages.readByte(), messages);
+                }
+            }
+        } catch (EOFException e) {
+            // Peer closed the connection
+        } catch (IOException e) {
+            if (open) {
+                System.out.println("[Discord Integration] Cluster connection to " + describe() + " failed: " + e.getMessage());
+            }
+        } finally {
+            close();
+        }
+    }
+
+    private void writeLoop() {
+        byte[] batch = new byte[ClusterProtocol.BATCH_SIZE_LIMIT];
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+            while (open) {
+                byte[] first = outbound.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+
+                // Linger briefly so a burst of events shares one frame
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(batchDelayMs);
+                int size = 0;
+                int count = 0;
+                byte[] next = first;
+                while (next != null) {
+                    if (size > 0 && size + next.length > batch.length) {
+                        writeFrame(out, batch, size);
+                        size = 0;
+                    }
+                    if (next.length > batch.length) {
+                        writeFrame(out, next, next.length);
+                    } else {
+                        System.arraycopy(next, 0, batch, size, next.length);
+                        size += next.length;
+                    }
+
+                    if (++count >= MAX_MESSAGES_PER_FLUSH) {
+                        break;
+                    }
+                    next = outbound.poll();
+                    if (next == null) {
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining > 0) {
+                            next = outbound.poll(remaining, TimeUnit.NANOSECONDS);
+                        }
+                    }
+                }
+
+                if (size > 0) {
+                    writeFrame(out, batch, size);
+                }
+                out.flush();
+                flushed += count;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            if (open) {
+                System.out.println("[Discord Integration] Cluster write to " + describe() + " failed: " + e.getMessage());
+            }
+        } finally {
+            close();
+        }
+    }
+
+    private static void writeFrame(DataOutputStream out, byte[] data, int length) throws IOException {
+        out.writeInt(length);
+        out.write(data, 0, length);
+    }
+}
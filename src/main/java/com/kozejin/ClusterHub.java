@@ -0,0 +1,168 @@
+package com.kozejin;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class ClusterHub implements ClusterConnection.Handler {
+    private final DiscordIntegration plugin;
+    private final DiscordConfig.Cluster settings;
+    private final Map<ClusterConnection, Integer> nodes = new ConcurrentHashMap<>();
+    private ServerSocket serverSocket;
+    private volatile boolean running;
+
+    public ClusterHub(DiscordIntegration plugin, DiscordConfig.Cluster settings) {
+        this.plugin = plugin;
+        this.settings = settings;
+    }
+
+    public void start() throws IOException {
+        serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(new InetSocketAddress(settings.getHubHost(), settings.getHubPort()));
+        running = true;
+
+        Thread acceptThread = new Thread(this::acceptLoop, "DiscordIntegration-Cluster-Hub");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+
+        System.out.println("[Discord Integration] Cluster hub listening on " + settings.getHubHost() + ":" + settings.getHubPort());
+    }
+
+    public void stop() {
+        running = false;
+        try {
+            if (serverSocket != null) {
+                serverSocket.close();
+            }
+        } catch (IOException ignored) {
+        }
+        for (ClusterConnection connection : nodes.keySet()) {
+            connection.close();
+        }
+        nodes.clear();
+    }
+
+    public int getRemotePlayerCount() {
+        int total = 0;
+        for (int count : nodes.values()) {
+            total += count;
+        }
+        return total;
+    }
+
+    public int getNodeCount() {
+        return nodes.size();
+    }
+
+    public void broadcastDiscordChat(String template, String username, String message, List<String> worlds) {
+        broadcast(ClusterProtocol.discordChat(template, username, message, worlds), null);
+    }
+
+    public void broadcastPlayerData(PlayerData data, ClusterConnection except) {
+        broadcast(ClusterProtocol.playerData(data), except);
+    }
+
+    private void broadcast(byte[] message, ClusterConnection except) {
+        for (ClusterConnection connection : nodes.keySet()) {
+            if (connection != except) {
+                connection.send(message);
+            }
+        }
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                ClusterConnection connection = new ClusterConnection(socket, this, settings.getBatchDelayMs());
+                nodes.put(connection, 0);
+                connection.start(String.valueOf(socket.getPort()));
+            } catch (IOException e) {
+                if (running) {
+                    System.out.println("[Discord Integration] Cluster hub accept failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void onMessage(ClusterConnection connection, byte type, DataInputStream in) throws IOException {
+        PlayerDataStorage storage = plugin.getPlayerDataStorage();
+
+        switch (type) {
+            case ClusterProtocol.HELLO: {
+                connection.setNodeId(in.readUTF());
+                System.out.println("[Discord Integration] Cluster node connected: " + connection.describe());
+                // Streamed from the store; records are encoded as visited, never collected
+                ClusterProtocol.PlayerDataChunker chunker = new ClusterProtocol.PlayerDataChunker(connection::send);
+                storage.forEachPlayer(chunker);
+                chunker.flush();
+                break;
+            }
+            case ClusterProtocol.CHAT: {
+                UUID uuid = ClusterProtocol.readUuid(in);
+                String playerName = in.readUTF();
+                String worldName = in.readUTF();
+                String message = in.readUTF();
+                plugin.handlePlayerChat(uuid, playerName, worldName.isEmpty() ? null : worldName, message, System.currentTimeMillis());
+                break;
+            }
+            case ClusterProtocol.JOIN: {
+                UUID uuid = ClusterProtocol.readUuid(in);
+                String playerName = in.readUTF();
+                PlayerData data = storage.getOrCreatePlayerData(uuid, playerName);
+                data.setUsername(playerName);
+                broadcastPlayerData(data, null);
+                plugin.handlePlayerJoin(uuid, playerName);
+                break;
+            }
+            case ClusterProtocol.LEAVE: {
+                UUID uuid = ClusterProtocol.readUuid(in);
+                plugin.handlePlayerLeave(uuid, in.readUTF());
+                break;
+            }
+            case ClusterProtocol.PLAYER_COUNT: {
+                nodes.put(connection, in.readInt());
+                plugin.updatePlayerCount();
+                break;
+            }
+            case ClusterProtocol.PLAYER_DATA: {
+                int count = in.readUnsignedShort();
+                for (int i = 0; i < count; i++) {
+                    PlayerData merged = storage.mergePlayerData(ClusterProtocol.readPlayerData(in));
+                    broadcastPlayerData(merged, connection);
+                    plugin.checkPlaytimeRoles(merged);
+                }
+                // A full store write per node update would stall this reader; let the storage lane batch them
+                plugin.requestSave();
+                break;
+            }
+            case ClusterProtocol.LINK_REQUEST: {
+                String code = in.readUTF();
+                UUID uuid = ClusterProtocol.readUuid(in);
+                String playerName = in.readUTF();
+                LinkCodeManager.LinkOutcome outcome = plugin.linkAccount(code, uuid, playerName);
+                String discordUsername = outcome.request != null ? outcome.request.discordUsername : null;
+                connection.send(ClusterProtocol.linkResult(uuid, outcome.result, discordUsername));
+                break;
+            }
+            default:
+                throw new IOException("Unknown cluster message type " + type);
+        }
+    }
+
+    @Override
+    public void onClosed(ClusterConnection connection) {
+        if (nodes.remove(connection) != null) {
+            System.out.println("[Discord Integration] Cluster node disconnected: " + connection.describe());
+            plugin.updatePlayerCount();
+        }
+    }
+}
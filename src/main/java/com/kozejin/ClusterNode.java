@@ -0,0 +1,203 @@
+package com.kozejin;
+
+import com.hypixel.hytale.server.core.universe.PlayerRef;
+import com.hypixel.hytale.server.core.universe.Universe;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class ClusterNode implements ClusterConnection.Handler {
+    private static final long RECONNECT_DELAY_MS = 5000;
+    private static final int CONNECT_TIMEOUT_MS = 3000;
+
+    private final DiscordIntegration plugin;
+    private final DiscordConfig.Cluster settings;
+    // Players whose record changed while the hub was unreachable; sent ahead of the next HELLO
+    private final Set<UUID> unsent = ConcurrentHashMap.newKeySet();
+    private volatile ClusterConnection connection;
+    private volatile boolean running;
+    private Thread connectThread;
+
+    public ClusterNode(DiscordIntegration plugin, DiscordConfig.Cluster settings) {
+        this.plugin = plugin;
+        this.settings = settings;
+    }
+
+    public void start() {
+        running = true;
+        connectThread = new Thread(this::connectLoop, "DiscordIntegration-Cluster-Node");
+        connectThread.setDaemon(true);
+        connectThread.start();
+    }
+
+    public void stop() {
+        running = false;
+        if (connectThread != null) {
+            connectThread.interrupt();
+        }
+        ClusterConnection current = connection;
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    /** Waits for messages already handed to the hub connection to be written. */
+    public void flush(long timeoutMs) {
+        ClusterConnection current = connection;
+        if (current != null && !current.awaitFlushed(timeoutMs)) {
+            System.out.println("[Discord Integration] Cluster messages were still queued for the hub at shutdown");
+        }
+    }
+
+    public boolean isConnected() {
+        ClusterConnection current = connection;
+        return current != null && current.isOpen();
+    }
+
+    public void sendChat(UUID uuid, String playerName, String worldName, String message) {
+        send(ClusterProtocol.chat(uuid, playerName, worldName, message));
+    }
+
+    public void sendJoin(UUID uuid, String playerName) {
+        send(ClusterProtocol.join(uuid, playerName));
+    }
+
+    public void sendLeave(UUID uuid, String playerName) {
+        send(ClusterProtocol.leave(uuid, playerName));
+    }
+
+    public void sendPlayerData(PlayerData data) {
+        if (!send(ClusterProtocol.playerData(data))) {
+            unsent.add(data.getUuid());
+        }
+    }
+
+    public void sendPlayerCount(int online) {
+        send(ClusterProtocol.playerCount(online));
+    }
+
+    public void requestLink(String code, UUID uuid, String playerName) {
+        send(ClusterProtocol.linkRequest(code, uuid, playerName));
+    }
+
+    private boolean send(byte[] message) {
+        ClusterConnection current = connection;
+        if (current == null || !current.send(message)) {
+            System.out.println("[Discord Integration] Not connected to cluster hub, dropping message");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Queues the records that changed during the outage ahead of HELLO. The hub
+     * merges them before building its snapshot, so the snapshot it answers with
+     * carries them instead of overwriting them with the hub's older copies.
+     */
+    private void sendUnsent(ClusterConnection opened) {
+        if (unsent.isEmpty()) {
+            return;
+        }
+        PlayerDataStorage storage = plugin.getPlayerDataStorage();
+        ClusterProtocol.PlayerDataChunker chunker = new ClusterProtocol.PlayerDataChunker(opened::send);
+        int count = 0;
+        for (UUID uuid : unsent) {
+            unsent.remove(uuid);
+            PlayerData data = storage.getPlayerData(uuid);
+            if (data != null) {
+                chunker.accept(data);
+                count++;
+            }
+        }
+        chunker.flush();
+        System.out.println("[Discord Integration] Sending " + count + " player records changed while the cluster hub was unreachable");
+    }
+
+    private void connectLoop() {
+        while (running) {
+            if (!isConnected()) {
+                try {
+                    Socket socket = new Socket();
+                    socket.connect(new InetSocketAddress(settings.getHubHost(), settings.getHubPort()), CONNECT_TIMEOUT_MS);
+                    ClusterConnection opened = new ClusterConnection(socket, this, settings.getBatchDelayMs());
+                    sendUnsent(opened);
+                    opened.send(ClusterProtocol.hello(settings.getNodeId()));
+                    opened.send(ClusterProtocol.playerCount(Universe.get().getPlayerCount()));
+                    connection = opened;
+                    opened.start(settings.getNodeId());
+                    System.out.println("[Discord Integration] Connected to cluster hub at " + settings.getHubHost() + ":" + settings.getHubPort());
+                } catch (IOException e) {
+                    System.out.println("[Discord Integration] Could not reach cluster hub: " + e.getMessage());
+                }
+            }
+
+            try {
+                Thread.sleep(RECONNECT_DELAY_MS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void onMessage(ClusterConnection source, byte type, DataInputStream in) throws IOException {
+        switch (type) {
+            case ClusterProtocol.DISCORD_CHAT: {
+                String template = in.readUTF();
+                String username = in.readUTF();
+                String message = in.readUTF();
+                int worldCount = in.readUnsignedShort();
+                List<String> worlds = new ArrayList<>(worldCount);
+                for (int i = 0; i < worldCount; i++) {
+                    worlds.add(in.readUTF());
+                }
+                plugin.deliverDiscordMessage(MessageTemplate.compile(template), username, message, worlds);
+                break;
+            }
+            case ClusterProtocol.PLAYER_DATA: {
+                PlayerDataStorage storage = plugin.getPlayerDataStorage();
+                int count = in.readUnsignedShort();
+                for (int i = 0; i < count; i++) {
+                    storage.mergePlayerData(ClusterProtocol.readPlayerData(in));
+                }
+                break;
+            }
+            case ClusterProtocol.LINK_RESULT: {
+                UUID uuid = ClusterProtocol.readUuid(in);
+                int ordinal = in.readUnsignedByte();
+                String discordUsername = in.readUTF();
+                LinkCodeManager.LinkResult[] results = LinkCodeManager.LinkResult.values();
+                if (ordinal >= results.length) {
+                    // A newer hub may know results we don't; skip the frame rather than drop the connection
+                    System.out.println("[Discord Integration] Ignoring link result with unknown code " + ordinal);
+                    break;
+                }
+                LinkCodeManager.LinkResult result = results[ordinal];
+                PlayerRef player = Universe.get().getPlayer(uuid);
+                if (player != null) {
+                    LinkCommand.sendLinkResult(player, result, discordUsername);
+                }
+                break;
+            }
+            default:
+                throw new IOException("Unknown cluster message type " + type);
+        }
+    }
+
+    @Override
+    public void onClosed(ClusterConnection closed) {
+        if (connection == closed) {
+            connection = null;
+            if (running) {
+                System.out.println("[Discord Integration] Lost connection to cluster hub, reconnecting...");
+            }
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.kozejin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Wire format shared by the cluster hub and its nodes.
+ *
+ * Every TCP write is one frame: a 4 byte length followed by one or more
+ * messages. Each message is a type byte followed by its fields, so a burst
+ * of chat lines costs a single frame and a single syscall.
+ */
+public final class ClusterProtocol {
+    public static final int MAX_FRAME_SIZE = 1 << 20;
+    public static final int BATCH_SIZE_LIMIT = 64 * 1024;
+
+    public static final byte HELLO = 1;
+    public static final byte CHAT = 2;
+    public static final byte JOIN = 3;
+    public static final byte LEAVE = 4;
+    public static final byte PLAYER_COUNT = 5;
+    public static final byte DISCORD_CHAT = 6;
+    public static final byte PLAYER_DATA = 7;
+    public static final byte LINK_REQUEST = 8;
+    public static final byte LINK_RESULT = 9;
+
+    private ClusterProtocol() {
+    }
+
+    public static byte[] hello(String nodeId) {
+        return encode(HELLO, out -> out.writeUTF(nodeId));
+    }
+
+    public static byte[] chat(UUID uuid, String playerName, String worldName, String message) {
+        return encode(CHAT, out -> {
+            writeUuid(out, uuid);
+            out.writeUTF(playerName);
+            out.writeUTF(worldName != null ? worldName : "");
+            out.writeUTF(message);
+        });
+    }
+
+    public static byte[] join(UUID uuid, String playerName) {
+        return encode(JOIN, out -> {
+            writeUuid(out, uuid);
+            out.writeUTF(playerName);
+        });
+    }
+
+    public static byte[] leave(UUID uuid, String playerName) {
+        return encode(LEAVE, out -> {
+            writeUuid(out, uuid);
+            out.writeUTF(playerName);
+        });
+    }
+
+    public static byte[] playerCount(int online) {
+        return encode(PLAYER_COUNT, out -> out.writeInt(online));
+    }
+
+    public static byte[] discordChat(String template, String username, String message, List<String> worlds) {
+        return encode(DISCORD_CHAT, out -> {
+            out.writeUTF(template);
+            out.writeUTF(username);
+            out.writeUTF(message);
+            int count = worlds != null ? worlds.size() : 0;
+            out.writeShort(count);
+            for (int i = 0; i < count; i++) {
+                out.writeUTF(worlds.get(i));
+            }
+        });
+    }
+
+    public static final int PLAYER_DATA_CHUNK = 512;
+
+    public static byte[] playerData(PlayerData data) {
+        return encode(PLAYER_DATA, out -> {
+            out.writeShort(1);
+            writePlayerData(out, data);
+        });
+    }
+
+    public static List<byte[]> playerDataChunks(Collection<PlayerData> records) {
+        List<byte[]> chunks = new ArrayList<>();
+        PlayerDataChunker chunker = new PlayerDataChunker(chunks::add);
+        records.forEach(chunker);
+        chunker.flush();
+        return chunks;
+    }
+
+    /**
+     * Encodes each record as it is visited and hands off a PLAYER_DATA message
+     * every {@link #PLAYER_DATA_CHUNK} records, so a store walk can be sent
+     * without collecting the records; call {@link #flush()} after the walk.
+     */
+    public static final class PlayerDataChunker implements Consumer<PlayerData> {
+        private final Consumer<byte[]> sink;
+        private final ByteArrayOutputStream records = new ByteArrayOutputStream(PLAYER_DATA_CHUNK * 64);
+        private final DataOutputStream out = new DataOutputStream(records);
+        private int count;
+
+        public PlayerDataChunker(Consumer<byte[]> sink) {
+            this.sink = sink;
+        }
+
+        @Override
+        public void accept(PlayerData data) {
+            try {
+                writePlayerData(out, data);
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to encode player data", e);
+            }
+            if (++count == PLAYER_DATA_CHUNK) {
+                flush();
+            }
+        }
+
+        public void flush() {
+            if (count == 0) {
+                return;
+            }
+            int chunkSize = count;
+            sink.accept(encode(PLAYER_DATA, message -> {
+                message.writeShort(chunkSize);
+                records.writeTo(message);
+            }));
+            records.reset();
+            count = 0;
+        }
+    }
+
+    public static byte[] linkRequest(String code, UUID uuid, String playerName) {
+        return encode(LINK_REQUEST, out -> {
+            out.writeUTF(code);
+            writeUuid(out, uuid);
+            out.writeUTF(playerName);
+        });
+    }
+
+    public static byte[] linkResult(UUID uuid, LinkCodeManager.LinkResult result, String discordUsername) {
+        return encode(LINK_RESULT, out -> {
+            writeUuid(out, uuid);
+            out.writeByte(result.ordinal());
+            out.writeUTF(discordUsername != null ? discordUsername : "");
+        });
+    }
+
+    public static void writeUuid(DataOutputStream out, UUID uuid) throws IOException {
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+    }
+
+    public static UUID readUuid(DataInputStream in) throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+
+    public static void writePlayerData(DataOutputStream out, PlayerData data) throws IOException {
+        writeUuid(out, data.getUuid());
+        out.writeUTF(data.getUsername() != null ? data.getUsername() : "");
+        out.writeLong(data.getFirstLoginTime());
+        out.writeLong(data.getLastLoginTime());
+        out.writeLong(data.getTotalPlayTime());
+        out.writeUTF(data.getDiscordId() != null ? data.getDiscordId() : "");
+        out.writeBoolean(data.isDiscordChatMuted());
+        out.writeInt(data.getRoleTier());
+    }
+
+    public static PlayerData readPlayerData(DataInputStream in) throws IOException {
+        UUID uuid = readUuid(in);
+        PlayerData data = new PlayerData(uuid, in.readUTF());
+        data.setFirstLoginTime(in.readLong());
+        data.setLastLoginTime(in.readLong());
+        data.setTotalPlayTime(in.readLong());
+        String discordId = in.readUTF();
+        data.setDiscordId(discordId.isEmpty() ? null : discordId);
+        data.setDiscordChatMuted(in.readBoolean());
+        data.setRoleTier(in.readInt());
+        return data;
+    }
+
+    private static byte[] encode(byte type, FieldWriter writer) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(type);
+            writer.write(out);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to encode cluster message " + type, e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private interface FieldWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+}
@@ -0,0 +1,304 @@
+package com.kozejin;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * Offline player records packed into parallel primitive columns, one row per
+ * player in insertion order, with an open-addressed index from UUID to row.
+ * Discord IDs are kept as their 64-bit snowflakes and usernames as UTF-8 in
+ * a single byte arena, so a row costs well under a hundred bytes against the
+ * several hundred of a {@link PlayerData} with its UUID, strings and map entry.
+ *
+ * <p>A row can be checked out while a live {@link PlayerData} stands in for
+ * it; the row keeps its last folded state until {@link #put} writes it back.
+ * Rows are never removed, so walking them by index is stable while others
+ * are added. Not thread-safe; the owning storage serializes access.
+ */
+public class CompactPlayerTable {
+    private static final int ROLE_TIER_MASK = 0xFFFF;
+    private static final int MUTED = 1 << 16;
+    private static final int CHECKED_OUT = 1 << 17;
+    private static final int NULL_NAME = 0xFFFF;
+    private static final int MAX_NAME_BYTES = 0xFFFE;
+
+    private long[] uuidHigh;
+    private long[] uuidLow;
+    private long[] firstLogin;
+    private long[] lastLogin;
+    private long[] playTime;
+    private long[] discordIds;
+    private int[] nameOffsets;
+    private int[] flags;
+    private int size;
+
+    // Row index + 1, or 0 for an empty slot
+    private int[] index;
+    private int mask;
+
+    // Each name is a two byte length (NULL_NAME for null) followed by its UTF-8 bytes
+    private byte[] names = new byte[4096];
+    private int namesUsed;
+    private int namesWasted;
+
+    public CompactPlayerTable() {
+        int rows = 1024;
+        uuidHigh = new long[rows];
+        uuidLow = new long[rows];
+        firstLogin = new long[rows];
+        lastLogin = new long[rows];
+        playTime = new long[rows];
+        discordIds = new long[rows];
+        nameOffsets = new int[rows];
+        flags = new int[rows];
+        index = new int[rows * 2];
+        mask = index.length - 1;
+    }
+
+    /** Whether the record can be folded into a row without losing anything. */
+    public static boolean fits(PlayerData data) {
+        if (data.getCurrentSessionStart() > 0 || data.getRoleTier() < 0 || data.getRoleTier() > ROLE_TIER_MASK) {
+            return false;
+        }
+        if (data.getDiscordId() != null && ChannelRouteTable.parseSnowflake(data.getDiscordId()) == 0) {
+            return false;
+        }
+        return data.getUsername() == null || data.getUsername().length() * 3 <= MAX_NAME_BYTES;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int find(UUID uuid) {
+        long high = uuid.getMostSignificantBits();
+        long low = uuid.getLeastSignificantBits();
+        int slot = mix(high, low) & mask;
+        while (index[slot] != 0) {
+            int row = index[slot] - 1;
+            if (uuidHigh[row] == high && uuidLow[row] == low) {
+                return row;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /** Writes the record into its row, adding one if needed, and clears any check-out. */
+    public void put(PlayerData data) {
+        int row = find(data.getUuid());
+        if (row < 0) {
+            row = addRow(data.getUuid());
+        }
+        firstLogin[row] = data.getFirstLoginTime();
+        lastLogin[row] = data.getLastLoginTime();
+        playTime[row] = data.getTotalPlayTime();
+        discordIds[row] = ChannelRouteTable.parseSnowflake(data.getDiscordId());
+        flags[row] = data.getRoleTier() | (data.isDiscordChatMuted() ? MUTED : 0);
+        setName(row, data.getUsername());
+    }
+
+    public boolean isCheckedOut(int row) {
+        return (flags[row] & CHECKED_OUT) != 0;
+    }
+
+    public void setCheckedOut(int row) {
+        flags[row] |= CHECKED_OUT;
+    }
+
+    /** A new live copy of the row. */
+    public PlayerData read(int row) {
+        PlayerData data = new PlayerData(null, null);
+        fill(row, data);
+        return data;
+    }
+
+    public UUID uuidAt(int row) {
+        return new UUID(uuidHigh[row], uuidLow[row]);
+    }
+
+    /**
+     * Visits rows {@code from} to {@code to}, filling the same {@code scratch}
+     * object for each one that is not checked out; callers must not keep it.
+     * Checked-out rows are passed to {@code checkedOut} by index instead.
+     */
+    public void forEach(int from, int to, PlayerData scratch, Consumer<PlayerData> action, IntConsumer checkedOut) {
+        for (int row = from; row < to; row++) {
+            if (isCheckedOut(row)) {
+                checkedOut.accept(row);
+                continue;
+            }
+            fill(row, scratch);
+            action.accept(scratch);
+        }
+    }
+
+    /** First row linked to the snowflake, or -1. */
+    public int findByDiscordId(long discordId) {
+        if (discordId == 0) {
+            return -1;
+        }
+        for (int row = 0; row < size; row++) {
+            if (discordIds[row] == discordId) {
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    /** First row whose username matches ignoring case, or -1. */
+    public int findByUsername(String username) {
+        byte[] wanted = username.getBytes(StandardCharsets.UTF_8);
+        boolean ascii = true;
+        for (byte b : wanted) {
+            ascii &= b >= 0;
+        }
+        for (int row = 0; row < size; row++) {
+            int offset = nameOffsets[row];
+            int length = nameLength(offset);
+            if (length == NULL_NAME) {
+                continue;
+            }
+            if (ascii) {
+                // Non-ASCII names never equal an ASCII query, so a byte-wise fold is exact here
+                if (length == wanted.length && asciiEqualsIgnoreCase(offset + 2, wanted)) {
+                    return row;
+                }
+            } else if (username.equalsIgnoreCase(new String(names, offset + 2, length, StandardCharsets.UTF_8))) {
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    private boolean asciiEqualsIgnoreCase(int start, byte[] wanted) {
+        for (int i = 0; i < wanted.length; i++) {
+            int a = names[start + i];
+            int b = wanted[i];
+            if (a == b) {
+                continue;
+            }
+            int folded = a | 0x20;
+            if (folded != (b | 0x20) || folded < 'a' || folded > 'z') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void fill(int row, PlayerData data) {
+        int offset = nameOffsets[row];
+        int length = nameLength(offset);
+        data.load(new UUID(uuidHigh[row], uuidLow[row]),
+            length == NULL_NAME ? null : new String(names, offset + 2, length, StandardCharsets.UTF_8),
+            firstLogin[row], lastLogin[row], playTime[row], -1,
+            discordIds[row] != 0 ? Long.toUnsignedString(discordIds[row]) : null,
+            (flags[row] & MUTED) != 0, flags[row] & ROLE_TIER_MASK);
+    }
+
+    private int addRow(UUID uuid) {
+        if (size == uuidHigh.length) {
+            int rows = size * 2;
+            uuidHigh = Arrays.copyOf(uuidHigh, rows);
+            uuidLow = Arrays.copyOf(uuidLow, rows);
+            firstLogin = Arrays.copyOf(firstLogin, rows);
+            lastLogin = Arrays.copyOf(lastLogin, rows);
+            playTime = Arrays.copyOf(playTime, rows);
+            discordIds = Arrays.copyOf(discordIds, rows);
+            nameOffsets = Arrays.copyOf(nameOffsets, rows);
+            flags = Arrays.copyOf(flags, rows);
+        }
+        int row = size++;
+        uuidHigh[row] = uuid.getMostSignificantBits();
+        uuidLow[row] = uuid.getLeastSignificantBits();
+        nameOffsets[row] = -1;
+        // Keep the index at most half full so probes stay short
+        if (size * 2 > index.length) {
+            rehash(index.length * 2);
+        } else {
+            insertIndex(row);
+        }
+        return row;
+    }
+
+    private void rehash(int capacity) {
+        index = new int[capacity];
+        mask = capacity - 1;
+        for (int row = 0; row < size; row++) {
+            insertIndex(row);
+        }
+    }
+
+    private void insertIndex(int row) {
+        int slot = mix(uuidHigh[row], uuidLow[row]) & mask;
+        while (index[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        index[slot] = row + 1;
+    }
+
+    private int nameLength(int offset) {
+        return ((names[offset] & 0xFF) << 8) | (names[offset + 1] & 0xFF);
+    }
+
+    private void setName(int row, String username) {
+        byte[] bytes = username != null ? username.getBytes(StandardCharsets.UTF_8) : null;
+        int length = bytes != null ? bytes.length : NULL_NAME;
+        int previous = nameOffsets[row];
+        if (previous >= 0) {
+            int previousLength = nameLength(previous);
+            if (previousLength == length && (bytes == null
+                    || Arrays.equals(names, previous + 2, previous + 2 + length, bytes, 0, length))) {
+                return;
+            }
+            namesWasted += 2 + (previousLength == NULL_NAME ? 0 : previousLength);
+        }
+        nameOffsets[row] = appendName(bytes);
+        // Renames leave dead bytes behind; rebuild once they are half the arena
+        if (namesWasted > 64 * 1024 && namesWasted * 2 > namesUsed) {
+            compactNames();
+        }
+    }
+
+    private int appendName(byte[] bytes) {
+        int needed = 2 + (bytes != null ? bytes.length : 0);
+        if (namesUsed + needed > names.length) {
+            names = Arrays.copyOf(names, Math.max(names.length * 2, namesUsed + needed));
+        }
+        int offset = namesUsed;
+        int length = bytes != null ? bytes.length : NULL_NAME;
+        names[offset] = (byte) (length >>> 8);
+        names[offset + 1] = (byte) length;
+        if (bytes != null) {
+            System.arraycopy(bytes, 0, names, offset + 2, bytes.length);
+        }
+        namesUsed += needed;
+        return offset;
+    }
+
+    private void compactNames() {
+        byte[] old = names;
+        names = new byte[Math.max(4096, namesUsed - namesWasted)];
+        namesUsed = 0;
+        namesWasted = 0;
+        for (int row = 0; row < size; row++) {
+            int offset = nameOffsets[row];
+            if (offset < 0) {
+                continue;
+            }
+            int length = ((old[offset] & 0xFF) << 8) | (old[offset + 1] & 0xFF);
+            int copied = 2 + (length == NULL_NAME ? 0 : length);
+            System.arraycopy(old, offset, names, namesUsed, copied);
+            nameOffsets[row] = namesUsed;
+            namesUsed += copied;
+        }
+    }
+
+    private static int mix(long high, long low) {
+        long h = (high ^ low) * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,208 @@
+package com.kozejin;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Owns the published {@link DiscordConfig} snapshot. Readers call {@link #get()}
+ * once per event and use that snapshot throughout; writers build a new
+ * snapshot, validate and prepare it, then swap it in with a single volatile
+ * write.
+ */
+public class ConfigManager {
+    private static final long DEBOUNCE_MS = 250;
+
+    private final File configFile;
+    private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+    private volatile DiscordConfig current;
+    private volatile String lastWritten;
+    private WatchService watchService;
+    private Thread watchThread;
+
+    public ConfigManager(File configFile) {
+        this.configFile = configFile;
+    }
+
+    public DiscordConfig get() {
+        return current;
+    }
+
+    public void load() {
+        if (!configFile.exists()) {
+            configFile.getParentFile().mkdirs();
+            DiscordConfig defaults = new DiscordConfig();
+            defaults.prepare();
+            current = defaults;
+            save(defaults);
+            System.out.println("[Discord Integration] Created default config at: " + configFile.getAbsolutePath());
+            System.out.println("[Discord Integration] Please configure your bot token and channel IDs!");
+            return;
+        }
+
+        try {
+            publish(read());
+            System.out.println("[Discord Integration] Config loaded successfully");
+        } catch (Exception e) {
+            // Keep the broken file for the admin to fix; the watcher picks up the correction
+            System.out.println("[Discord Integration] Error loading config, using defaults: " + e.getMessage());
+            DiscordConfig defaults = new DiscordConfig();
+            defaults.prepare();
+            current = defaults;
+        }
+    }
+
+    public boolean reload() {
+        try {
+            DiscordConfig previous = current;
+            DiscordConfig next = read();
+            publish(next);
+            warnRestartOnly(previous, next);
+            System.out.println("[Discord Integration] Config reloaded");
+            return true;
+        } catch (Exception e) {
+            System.out.println("[Discord Integration] Config reload rejected, keeping previous settings: " + e.getMessage());
+            return false;
+        }
+    }
+
+    public synchronized DiscordConfig update(Mutation mutation) throws Exception {
+        DiscordConfig next = gson.fromJson(gson.toJson(current), DiscordConfig.class);
+        mutation.apply(next);
+        publish(next);
+        save(next);
+        return next;
+    }
+
+    public void startWatching() {
+        try {
+            Path directory = configFile.getAbsoluteFile().getParentFile().toPath();
+            watchService = directory.getFileSystem().newWatchService();
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_CREATE);
+        } catch (IOException e) {
+            System.out.println("[Discord Integration] Config hot reload unavailable: " + e.getMessage());
+            return;
+        }
+
+        watchThread = new Thread(this::watchLoop, "DiscordIntegration-ConfigWatcher");
+        watchThread.setDaemon(true);
+        watchThread.start();
+    }
+
+    public void stopWatching() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void watchLoop() {
+        String fileName = configFile.getName();
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean touched = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    Object context = event.context();
+                    if (context instanceof Path && fileName.equals(((Path) context).getFileName().toString())) {
+                        touched = true;
+                    }
+                }
+                key.reset();
+                if (!touched) {
+                    continue;
+                }
+
+                // Editors write in several steps; wait for the burst to settle
+                TimeUnit.MILLISECONDS.sleep(DEBOUNCE_MS);
+                WatchKey pending;
+                while ((pending = watchService.poll()) != null) {
+                    pending.pollEvents();
+                    pending.reset();
+                }
+
+                String contents = new String(Files.readAllBytes(configFile.toPath()), StandardCharsets.UTF_8);
+                if (contents.equals(lastWritten)) {
+                    continue;
+                }
+                System.out.println("[Discord Integration] Detected change to " + fileName + ", reloading");
+                reload();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Shutting down
+        } catch (IOException e) {
+            System.out.println("[Discord Integration] Config watcher stopped: " + e.getMessage());
+        }
+    }
+
+    private DiscordConfig read() throws IOException {
+        String contents = new String(Files.readAllBytes(configFile.toPath()), StandardCharsets.UTF_8);
+        DiscordConfig config = gson.fromJson(contents, DiscordConfig.class);
+        if (config == null) {
+            throw new IOException("config file is empty");
+        }
+        return config;
+    }
+
+    private void publish(DiscordConfig next) {
+        List<String> errors = next.validate();
+        if (!errors.isEmpty()) {
+            throw new IllegalArgumentException(String.join("; ", errors));
+        }
+        next.prepare();
+        current = next;
+    }
+
+    private void save(DiscordConfig config) {
+        PluginExecutor.checkBlocking("config save");
+        try {
+            String json = gson.toJson(config);
+            lastWritten = json;
+            File temp = new File(configFile.getParentFile(), configFile.getName() + ".tmp");
+            Files.write(temp.toPath(), json.getBytes(StandardCharsets.UTF_8));
+            try {
+                Files.move(temp.toPath(), configFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), configFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            System.out.println("[Discord Integration] Error saving config: " + e.getMessage());
+        }
+    }
+
+    private static void warnRestartOnly(DiscordConfig previous, DiscordConfig next) {
+        if (previous == null) {
+            return;
+        }
+        if (!previous.getBotToken().equals(next.getBotToken()) || previous.isEnabled() != next.isEnabled()
+                || !previous.getCluster().getMode().equalsIgnoreCase(next.getCluster().getMode())
+                || !previous.getStorage().getBackend().equalsIgnoreCase(next.getStorage().getBackend())
+                || previous.getSharding().isEnabled() != next.getSharding().isEnabled()
+                || previous.getSharding().getTotalShards() != next.getSharding().getTotalShards()
+                || previous.getEventRingSize() != next.getEventRingSize()
+                || previous.getConsoleRelay().isEnabled() != next.getConsoleRelay().isEnabled()
+                || previous.getConsoleRelay().getFlushSeconds() != next.getConsoleRelay().getFlushSeconds()) {
+            System.out.println("[Discord Integration] botToken, enabled, cluster, sharding, storage, eventRingSize and consoleRelay enabled/flushSeconds settings take effect after a restart");
+        }
+    }
+
+    public interface Mutation {
+        void apply(DiscordConfig config) throws Exception;
+    }
+}
@@ -0,0 +1,204 @@
+package com.kozejin;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.SimpleFormatter;
+import java.util.regex.Pattern;
+
+/**
+ * Tails the server log into a staff channel. Records that pass the level and
+ * pattern filters are buffered as lines; a line that differs from the one
+ * before it only in its numbers is counted against that line instead of
+ * stored. On each flush the buffer is packed into code-block messages of up
+ * to 2000 characters, and at most {@code maxMessagesPerMinute} are sent; what
+ * does not fit waits in the bounded buffer, and what overflows it is counted.
+ */
+public class ConsoleRelay extends Handler {
+    private static final int MESSAGE_LIMIT = 2000;
+    private static final String OPEN = "```\n";
+    private static final String CLOSE = "```";
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm:ss").withZone(ZoneId.systemDefault());
+
+    private final ConfigManager configManager;
+    private final DiscordBot bot;
+    private final Formatter messageFormatter = new SimpleFormatter();
+    private final PluginExecutor executor;
+    private final Executor lane;
+    private PluginExecutor.Repeating scheduled;
+
+    // Guarded by this
+    private final ArrayDeque<Line> buffer = new ArrayDeque<>();
+    private long overflowed;
+
+    // Only touched on the console lane
+    private long windowStart;
+    private int sentInWindow;
+
+    public ConsoleRelay(ConfigManager configManager, DiscordBot bot, PluginExecutor executor) {
+        this.configManager = configManager;
+        this.bot = bot;
+        this.executor = executor;
+        this.lane = executor.lane();
+    }
+
+    public void start() {
+        int interval = configManager.get().getConsoleRelay().getFlushSeconds();
+        scheduled = executor.scheduleWithFixedDelay(lane, () -> {
+            try {
+                drain();
+            } catch (RuntimeException e) {
+                System.out.println("[Discord Integration] Console relay flush failed: " + e.getMessage());
+            }
+        }, interval, interval, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        DiscordConfig.ConsoleRelay settings = configManager.get().getConsoleRelay();
+        if (record == null || record.getLevel().intValue() < settings.getLevelValue()) {
+            return;
+        }
+        String logger = record.getLoggerName();
+        // JDA's own logging would feed back into the channel it is sending to
+        if (logger != null && logger.startsWith("net.dv8tion")) {
+            return;
+        }
+        String message = messageFormatter.formatMessage(record);
+        // Our own output, should the server route stdout through its log
+        if (message == null || message.startsWith("[Discord")) {
+            return;
+        }
+        String line = TIME.format(Instant.ofEpochMilli(record.getMillis())) + " " + record.getLevel().getName() + " "
+            + (logger != null && !logger.isEmpty() ? "[" + shortName(logger) + "] " : "") + message;
+        if (record.getThrown() != null) {
+            line += " (" + record.getThrown() + ")";
+        }
+        if (!settings.matches(line)) {
+            return;
+        }
+        add(line);
+    }
+
+    private synchronized void add(String line) {
+        long key = similarityKey(line);
+        Line last = buffer.peekLast();
+        if (last != null && last.key == key) {
+            last.similar++;
+            return;
+        }
+        if (buffer.size() >= configManager.get().getConsoleRelay().getBufferLines()) {
+            overflowed++;
+            return;
+        }
+        buffer.addLast(new Line(line, key));
+    }
+
+    private void drain() {
+        DiscordConfig.ConsoleRelay settings = configManager.get().getConsoleRelay();
+        long channelId = ChannelRouteTable.parseSnowflake(settings.getChannelId());
+        if (channelId == 0 || !bot.isConnected()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (now - windowStart >= TimeUnit.MINUTES.toMillis(1)) {
+            windowStart = now;
+            sentInWindow = 0;
+        }
+        while (sentInWindow < settings.getMaxMessagesPerMinute()) {
+            String message = nextMessage();
+            if (message == null) {
+                return;
+            }
+            bot.sendMessage(channelId, message);
+            sentInWindow++;
+        }
+    }
+
+    /** Takes as many buffered lines as fit in one message, or null if there are none. */
+    private synchronized String nextMessage() {
+        if (buffer.isEmpty() && overflowed == 0) {
+            return null;
+        }
+        StringBuilder text = new StringBuilder(OPEN);
+        if (overflowed > 0) {
+            text.append("...").append(overflowed).append(" lines dropped, buffer full\n");
+            overflowed = 0;
+        }
+        while (!buffer.isEmpty()) {
+            Line line = buffer.peekFirst();
+            String rendered = line.render();
+            if (text.length() + rendered.length() + CLOSE.length() > MESSAGE_LIMIT) {
+                if (text.length() > OPEN.length()) {
+                    break;
+                }
+                // A single line longer than a message is cut to fit
+                rendered = rendered.substring(0, MESSAGE_LIMIT - OPEN.length() - CLOSE.length() - 4) + "...\n";
+            }
+            text.append(rendered);
+            buffer.pollFirst();
+        }
+        return text.append(CLOSE).toString();
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    /** Stops the periodic flush and makes one last attempt to send what is buffered. */
+    @Override
+    public void close() {
+        if (scheduled != null) {
+            scheduled.cancel();
+        }
+        lane.execute(this::drain);
+        executor.awaitLane(lane, TimeUnit.SECONDS.toMillis(1));
+    }
+
+    private static String shortName(String logger) {
+        int dot = logger.lastIndexOf('.');
+        return dot >= 0 ? logger.substring(dot + 1) : logger;
+    }
+
+    /** 64-bit FNV-1a over the line minus its timestamp, with every run of digits folded to one mark. */
+    static long similarityKey(String line) {
+        long hash = 0xcbf29ce484222325L;
+        boolean inDigits = false;
+        for (int i = line.indexOf(' ') + 1, n = line.length(); i < n; i++) {
+            char c = line.charAt(i);
+            if (Character.isDigit(c)) {
+                if (inDigits) {
+                    continue;
+                }
+                inDigits = true;
+                c = '#';
+            } else {
+                inDigits = false;
+            }
+            hash = (hash ^ c) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static final class Line {
+        final String text;
+        final long key;
+        int similar;
+
+        Line(String text, long key) {
+            // A stray fence would end the code block early
+            this.text = text.replace("```", "`\u200b``");
+            this.key = key;
+        }
+
+        String render() {
+            return similar > 0 ? text + "\n..." + similar + " similar lines suppressed\n" : text + "\n";
+        }
+    }
+}
@@ -3,29 +3,84 @@ package com.kozejin;
 import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.JDABuilder;
 import net.dv8tion.jda.api.entities.Activity;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.Message;
 import net.dv8tion.jda.api.entities.channel.concrete.TextChannel;
 import net.dv8tion.jda.api.entities.MessageEmbed;
 import net.dv8tion.jda.api.EmbedBuilder;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.events.guild.member.GuildMemberJoinEvent;
+import net.dv8tion.jda.api.events.interaction.component.ButtonInteractionEvent;
+import net.dv8tion.jda.api.exceptions.ErrorResponseException;
 import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
 import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import net.dv8tion.jda.api.interactions.components.buttons.Button;
+import net.dv8tion.jda.api.requests.ErrorResponse;
 import net.dv8tion.jda.api.requests.GatewayIntent;
+import net.dv8tion.jda.api.sharding.DefaultShardManagerBuilder;
+import net.dv8tion.jda.api.sharding.ShardManager;
+import net.dv8tion.jda.api.utils.ChunkingFilter;
+import net.dv8tion.jda.api.utils.MemberCachePolicy;
 
+import java.io.IOException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
-import java.util.function.BiConsumer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class DiscordBot extends ListenerAdapter {
-    private final DiscordConfig config;
-    private final BiConsumer<String, String> onDiscordMessage;
+    // Relayed text must never ping anyone, whatever survives escaping
+    private static final EnumSet<Message.MentionType> ALLOWED_MENTIONS = EnumSet.noneOf(Message.MentionType.class);
+    private static final String PLAYERS_BUTTON_PREFIX = "players:";
+    private static final int SEARCH_RESULT_LIMIT = 20;
+    private static final int SEARCH_OUTPUT_LIMIT = 1900;
+    private static final long DEFAULT_SEARCH_WINDOW_MS = TimeUnit.DAYS.toMillis(7);
+    private static final DateTimeFormatter SEARCH_TIME_FORMAT =
+        DateTimeFormatter.ofPattern("MM-dd HH:mm", Locale.ENGLISH).withZone(ZoneId.systemDefault());
+
+    private final ConfigManager configManager;
+    private final PluginExecutor executor;
+    private final MessageHandler onDiscordMessage;
+    private final FloodGuard floodGuard;
+    private final OutboundSpool spool;
+    // Relay sends handed to JDA but not yet answered; a growing count means we are being rate limited
+    private final AtomicInteger pendingSends = new AtomicInteger();
     private JDA jda;
+    private ShardManager shardManager;
+    // Route channel -> id of the shard whose guild owns it, learned on first use
+    private final Map<Long, Integer> channelShards = new ConcurrentHashMap<>();
     private TextChannel textChannel;
+    // Sharded mode: route channels some shard could see at startup
+    private volatile int resolvedRoutes;
+
+    public enum EditResult { EDITED, MISSING, FAILED }
+
+    public interface MessageHandler {
+        void onMessage(DiscordConfig.Route route, String username, String message);
+    }
 
-    public DiscordBot(DiscordConfig config, BiConsumer<String, String> onDiscordMessage) {
-        this.config = config;
+    public DiscordBot(ConfigManager configManager, PluginExecutor executor, OutboundSpool spool, MessageHandler onDiscordMessage) {
+        this.configManager = configManager;
+        this.executor = executor;
+        this.spool = spool;
         this.onDiscordMessage = onDiscordMessage;
+        this.floodGuard = new FloodGuard(configManager.get().getFloodProtection());
     }
 
     public CompletableFuture<Boolean> start() {
         CompletableFuture<Boolean> future = new CompletableFuture<>();
+        DiscordConfig config = configManager.get();
 
         if (!config.isEnabled()) {
             System.out.println("[Discord] Bot is disabled in config");
@@ -42,17 +97,32 @@ public class DiscordBot extends ListenerAdapter {
         try {
             System.out.println("[Discord] Starting Discord bot...");
 
+            if (config.getSharding().isEnabled()) {
+                startShards(config);
+                // Routes carry the traffic here; the top-level channel is only the default for unrouted sends
+                if (resolvedRoutes == 0) {
+                    System.out.println("[Discord] No shard can see any route channel");
+                    future.complete(false);
+                    return future;
+                }
+                textChannel = resolveChannel(ChannelRouteTable.parseSnowflake(config.getChannelId()));
+                if (textChannel == null) {
+                    System.out.println("[Discord] No default channel resolved (channelId: " + config.getChannelId() + "), relaying through routes only");
+                }
+                System.out.println("[Discord] Bot connected successfully with " + resolvedRoutes + " route channels");
+                updatePlayerCount(0, 0);
+                future.complete(true);
+                return future;
+            }
+
             jda = JDABuilder.createDefault(config.getBotToken())
-                .enableIntents(
-                    GatewayIntent.GUILD_MESSAGES,
-                    GatewayIntent.MESSAGE_CONTENT
-                )
+                .enableIntents(intents(config))
                 .addEventListeners(this)
                 .build();
 
             jda.awaitReady();
 
-            textChannel = jda.getTextChannelById(config.getChannelId());
+            textChannel = resolveChannel(ChannelRouteTable.parseSnowflake(config.getChannelId()));
             if (textChannel == null) {
                 System.out.println("[Discord] Could not find channel with ID: " + config.getChannelId());
                 future.complete(false);
@@ -72,21 +142,268 @@ public class DiscordBot extends ListenerAdapter {
         return future;
     }
 
-    public void shutdown() {
+    private void startShards(DiscordConfig config) throws InterruptedException {
+        shardManager = DefaultShardManagerBuilder.createDefault(config.getBotToken())
+            .enableIntents(intents(config))
+            .setShardsTotal(config.getSharding().getTotalShards())
+            // Only messages are bridged, so no shard needs member lists for its guilds
+            .setMemberCachePolicy(MemberCachePolicy.NONE)
+            .setChunkingFilter(ChunkingFilter.NONE)
+            .addEventListeners(this)
+            .build();
+
+        for (JDA shard : shardManager.getShards()) {
+            shard.awaitReady();
+        }
+
+        DiscordConfig.Route[] routes = config.getRouteTable().getRoutes();
+        int resolved = 0;
+        for (DiscordConfig.Route route : routes) {
+            if (resolveChannel(route.getChannelIdLong()) != null) {
+                resolved++;
+            } else {
+                System.out.println("[Discord] No shard can see route channel with ID: " + route.getChannelId());
+            }
+        }
+        resolvedRoutes = resolved;
+        System.out.println("[Discord] " + shardManager.getShardsTotal() + " shards ready, "
+            + resolved + "/" + routes.length + " route channels resolved");
+    }
+
+    /** Waits for relay sends already handed to JDA; returns how many were still unanswered at the timeout. */
+    public int awaitPendingSends(long timeoutMs) {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (pendingSends.get() > 0 && System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return pendingSends.get();
+    }
+
+    private static EnumSet<GatewayIntent> intents(DiscordConfig config) {
+        EnumSet<GatewayIntent> intents = EnumSet.of(GatewayIntent.GUILD_MESSAGES, GatewayIntent.MESSAGE_CONTENT);
+        if (config.getRoleSync().isEnabled()) {
+            // Privileged: needed to hear about members rejoining the guild, whose roles Discord has dropped
+            intents.add(GatewayIntent.GUILD_MEMBERS);
+        }
+        return intents;
+    }
+
+    /** Closes the gateway connections, letting queued requests finish for up to {@code timeoutMs}. */
+    public void shutdown(long timeoutMs) {
         System.out.println("[Discord] Shutting down Discord bot...");
+        List<JDA> connections = new ArrayList<>();
         if (jda != null) {
+            connections.add(jda);
             jda.shutdown();
-            jda = null;
         }
+        if (shardManager != null) {
+            connections.addAll(shardManager.getShards());
+            shardManager.shutdown();
+        }
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        for (JDA connection : connections) {
+            try {
+                if (!connection.awaitShutdown(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS)) {
+                    connection.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                connection.shutdownNow();
+            }
+        }
+        jda = null;
+        shardManager = null;
+        channelShards.clear();
         textChannel = null;
+        resolvedRoutes = 0;
     }
 
     public void sendMessage(String message) {
-        if (textChannel != null) {
-            textChannel.sendMessage(message).queue(
-                success -> System.out.println("[Discord] Message sent: " + message),
-                error -> System.out.println("[Discord] Failed to send message: " + error.getMessage())
-            );
+        sendMessage(textChannel, message);
+    }
+
+    /** Sends to the default bridge channel, or spools the message if Discord cannot take it now. */
+    public void relay(String message, OutboundSpool.Category category) {
+        relay(ChannelRouteTable.parseSnowflake(configManager.get().getChannelId()), message, category);
+    }
+
+    public void relay(long channelId, String message, OutboundSpool.Category category) {
+        // Once anything is spooled, later messages queue behind it so order is kept
+        if (spool != null && (spool.hasBacklog() || !isConnected()
+                || pendingSends.get() >= configManager.get().getSpool().getMaxPendingSends())) {
+            spool.append(channelId, category, message);
+            return;
+        }
+        if (isConnected()) {
+            sendMessage(channelId, message);
+        }
+    }
+
+    /** Blocking send used by the spool replay; false if Discord did not accept it in time. */
+    boolean deliverSpooled(long channelId, String message) {
+        TextChannel channel = resolveChannel(channelId);
+        if (channel == null) {
+            System.out.println("[Discord] Dropping spooled message for unknown channel with ID: " + Long.toUnsignedString(channelId));
+            return true;
+        }
+        if (message.length() > Message.MAX_CONTENT_LENGTH) {
+            // Can never be sent as is, and would hold up everything queued behind it
+            System.out.println("[Discord] Dropping spooled message of " + message.length() + " characters for channel " + Long.toUnsignedString(channelId));
+            return true;
+        }
+        try {
+            channel.sendMessage(message)
+                .setAllowedMentions(ALLOWED_MENTIONS)
+                .mentionRepliedUser(false)
+                .submit()
+                .get(30, TimeUnit.SECONDS);
+            return true;
+        } catch (ExecutionException e) {
+            if (isPermanent(e.getCause())) {
+                System.out.println("[Discord] Dropping spooled message Discord rejected for channel " + Long.toUnsignedString(channelId) + ": " + e.getCause().getMessage());
+                return true;
+            }
+            System.out.println("[Discord] Spool replay paused: " + e.getCause().getMessage());
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            System.out.println("[Discord] Spool replay paused: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /** Whether Discord refused a request for good (4xx other than a rate limit), so retrying it cannot help. */
+    static boolean isPermanent(Throwable error) {
+        if (!(error instanceof ErrorResponseException)) {
+            return false;
+        }
+        ErrorResponseException response = (ErrorResponseException) error;
+        if (response.isServerError() || response.getResponse() == null) {
+            return false;
+        }
+        int status = response.getResponse().code;
+        return status >= 400 && status < 500 && status != 429;
+    }
+
+    public void sendMessage(long channelId, String message) {
+        TextChannel channel = textChannel;
+        if (channel == null || channel.getIdLong() != channelId) {
+            channel = resolveChannel(channelId);
+        }
+        if (channel == null) {
+            System.out.println("[Discord] Could not find route channel with ID: " + Long.toUnsignedString(channelId));
+            return;
+        }
+        sendMessage(channel, message);
+    }
+
+    /** Posts an embed and pins it, waiting for both; returns the message ID, or 0 if it could not be posted. */
+    long postPinnedEmbed(long channelId, MessageEmbed embed) {
+        TextChannel channel = resolveChannel(channelId);
+        if (channel == null) {
+            System.out.println("[Discord] Could not find status channel with ID: " + Long.toUnsignedString(channelId));
+            return 0;
+        }
+        long messageId;
+        try {
+            messageId = channel.sendMessageEmbeds(embed).submit().get(30, TimeUnit.SECONDS).getIdLong();
+        } catch (Exception e) {
+            System.out.println("[Discord] Failed to post status message: " + e.getMessage());
+            return 0;
+        }
+        channel.pinMessageById(messageId).queue(
+            null,
+            error -> System.out.println("[Discord] Could not pin status message: " + error.getMessage())
+        );
+        return messageId;
+    }
+
+    /** Replaces the embed of an earlier message, waiting for Discord's answer. */
+    EditResult editEmbed(long channelId, long messageId, MessageEmbed embed) {
+        TextChannel channel = resolveChannel(channelId);
+        if (channel == null) {
+            return EditResult.FAILED;
+        }
+        try {
+            channel.editMessageEmbedsById(messageId, embed).submit().get(30, TimeUnit.SECONDS);
+            return EditResult.EDITED;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ErrorResponseException
+                    && ((ErrorResponseException) e.getCause()).getErrorResponse() == ErrorResponse.UNKNOWN_MESSAGE) {
+                return EditResult.MISSING;
+            }
+            System.out.println("[Discord] Failed to edit status message: " + e.getCause().getMessage());
+            return EditResult.FAILED;
+        } catch (Exception e) {
+            System.out.println("[Discord] Failed to edit status message: " + e.getMessage());
+            return EditResult.FAILED;
+        }
+    }
+
+    Guild getGuild(long guildId) {
+        if (shardManager != null) {
+            return shardManager.getGuildById(guildId);
+        }
+        return jda != null ? jda.getGuildById(guildId) : null;
+    }
+
+    private TextChannel resolveChannel(long channelId) {
+        if (channelId == 0) {
+            return null;
+        }
+        if (shardManager == null) {
+            return jda != null ? jda.getTextChannelById(channelId) : null;
+        }
+        Integer shardId = channelShards.get(channelId);
+        if (shardId != null) {
+            JDA shard = shardManager.getShardById(shardId);
+            TextChannel channel = shard != null ? shard.getTextChannelById(channelId) : null;
+            if (channel != null) {
+                return channel;
+            }
+        }
+        // First use, or the guild moved after a reshard: ask each shard once
+        for (JDA shard : shardManager.getShards()) {
+            TextChannel channel = shard.getTextChannelById(channelId);
+            if (channel != null) {
+                channelShards.put(channelId, shard.getShardInfo().getShardId());
+                return channel;
+            }
+        }
+        channelShards.remove(channelId);
+        return null;
+    }
+
+    private void sendMessage(TextChannel channel, String message) {
+        if (channel != null) {
+            int pending = pendingSends.getAndIncrement();
+            FlightEvents.DiscordSend event = FlightEvents.DiscordSend.start(channel.getIdLong(), message.length(), pending);
+            channel.sendMessage(message)
+                .setAllowedMentions(ALLOWED_MENTIONS)
+                .mentionRepliedUser(false)
+                .queue(
+                    success -> {
+                        pendingSends.decrementAndGet();
+                        if (event != null) {
+                            event.finish(true);
+                        }
+                        System.out.println("[Discord] Message sent: " + message);
+                    },
+                    error -> {
+                        pendingSends.decrementAndGet();
+                        if (event != null) {
+                            event.finish(false);
+                        }
+                        System.out.println("[Discord] Failed to send message: " + error.getMessage());
+                    }
+                );
         }
     }
 
@@ -94,18 +411,26 @@ public class DiscordBot extends ListenerAdapter {
     public void onMessageReceived(MessageReceivedEvent event) {
         if (event.getAuthor().isBot()) return;
         
-        String channelId = event.getChannel().getId();
+        // Drop channels we don't route before touching any String state
+        long channelId = event.getChannel().getIdLong();
+        DiscordConfig config = configManager.get();
+        ChannelRouteTable routes = config.getRouteTable();
+        boolean commandChannel = routes.isCommandChannel(channelId);
+        DiscordConfig.Route route = routes.get(channelId);
+        if (!commandChannel && (route == null || !route.isInbound())) return;
+        
         String username = event.getAuthor().getName();
-        String message = event.getMessage().getContentDisplay();
+        String message = event.getMessage().getContentRaw();
 
-        if (channelId.equals(config.getCommandChannelId())) {
+        if (commandChannel) {
             if (message.equalsIgnoreCase("!link")) {
                 handleLinkCommand(event);
                 return;
             }
             
             if (message.toLowerCase().startsWith("!profile")) {
-                handleProfileCommand(event, message);
+                // Lookups can reach the database; keep them off the gateway thread
+                executor.runIo(() -> handleProfileCommand(event, message));
                 return;
             }
             
@@ -113,19 +438,56 @@ public class DiscordBot extends ListenerAdapter {
                 handlePlayersCommand(event, message);
                 return;
             }
+            
+            if (message.toLowerCase().startsWith("!search")) {
+                executor.runIo(() -> handleSearchCommand(event, message));
+                return;
+            }
+            
+            if (message.equalsIgnoreCase("!stats")) {
+                handleStatsCommand(event);
+                return;
+            }
         }
 
-        if (channelId.equals(config.getChannelId())) {
-            onDiscordMessage.accept(username, message);
+        if (route != null && route.isInbound()) {
+            FloodGuard.Verdict verdict = floodGuard.check(config.getFloodProtection(), event.getAuthor().getIdLong(), message);
+            if (verdict != FloodGuard.Verdict.ALLOWED) {
+                System.out.println("[Discord] Dropped message from " + username + " (" + verdict + ")");
+                return;
+            }
+            onDiscordMessage.onMessage(route, username, event.getMessage().getContentDisplay());
         }
     }
 
+    @Override
+    public void onGuildMemberJoin(GuildMemberJoinEvent event) {
+        RoleSyncEngine roleSync = DiscordIntegration.getInstance().getRoleSync();
+        if (roleSync == null || event.getGuild().getIdLong() != configManager.get().getRoleSync().getGuildIdLong()) return;
+        
+        String discordId = event.getUser().getId();
+        executor.runIo(() -> {
+            PlayerData data = DiscordIntegration.getInstance().getProfileService().findByDiscordId(discordId);
+            if (data != null) {
+                roleSync.resync(data.getUuid());
+            }
+        });
+    }
+
     private void handleLinkCommand(MessageReceivedEvent event) {
         String discordId = event.getAuthor().getId();
         String discordUsername = event.getAuthor().getName();
 
         LinkCodeManager linkManager = DiscordIntegration.getInstance().getLinkCodeManager();
+        FlightEvents.LinkCode linkEvent = new FlightEvents.LinkCode();
+        linkEvent.begin();
         String code = linkManager.generateCode(discordId, discordUsername);
+        linkEvent.end();
+        if (linkEvent.shouldCommit()) {
+            linkEvent.operation = "generate";
+            linkEvent.result = "ISSUED";
+            linkEvent.commit();
+        }
 
         MessageEmbed embed = new EmbedBuilder()
             .setTitle("Account Linking")
@@ -166,18 +528,12 @@ public class DiscordBot extends ListenerAdapter {
         String[] parts = message.split("\\s+");
         String discordId = event.getAuthor().getId();
         
-        PlayerDataStorage storage = DiscordIntegration.getInstance().getPlayerDataStorage();
-        PlayerData playerData = null;
-        String targetUsername = null;
+        ProfileService profiles = DiscordIntegration.getInstance().getProfileService();
+        PlayerData playerData;
         
         if (parts.length > 1) {
-            targetUsername = parts[1];
-            for (PlayerData data : storage.getAllPlayers().values()) {
-                if (data.getUsername().equalsIgnoreCase(targetUsername)) {
-                    playerData = data;
-                    break;
-                }
-            }
+            String targetUsername = parts[1];
+            playerData = profiles.findByUsername(targetUsername);
             
             if (playerData == null) {
                 MessageEmbed embed = new EmbedBuilder()
@@ -190,7 +546,7 @@ public class DiscordBot extends ListenerAdapter {
                 return;
             }
         } else {
-            playerData = storage.getPlayerByDiscordId(discordId);
+            playerData = profiles.findByDiscordId(discordId);
             
             if (playerData == null) {
                 MessageEmbed embed = new EmbedBuilder()
@@ -203,44 +559,21 @@ public class DiscordBot extends ListenerAdapter {
                 event.getChannel().sendMessageEmbeds(embed).queue();
                 return;
             }
-            targetUsername = playerData.getUsername();
         }
         
-        String discordTag = playerData.getDiscordId() != null ? "<@" + playerData.getDiscordId() + ">" : "Not linked";
-        long firstLogin = playerData.getFirstLoginTime();
-        String firstLoginDate = new java.text.SimpleDateFormat("MMM dd, yyyy").format(new java.util.Date(firstLogin));
-        
-        MessageEmbed embed = new EmbedBuilder()
-            .setTitle("Player Profile: " + targetUsername)
-            .setColor(0x00FF00)
-            .addField("Total Playtime", playerData.getFormattedPlayTime(), true)
-            .addField("First Login", firstLoginDate, true)
-            .addField("Discord", discordTag, false)
-            .setFooter("Discord Integration", null)
-            .build();
-        
-        event.getChannel().sendMessageEmbeds(embed).queue();
-        System.out.println("[Discord Integration] Profile requested for: " + targetUsername);
+        event.getChannel().sendMessageEmbeds(profiles.renderEmbed(playerData)).queue();
+        System.out.println("[Discord Integration] Profile requested for: " + playerData.getUsername());
     }
     
     private void handlePlayersCommand(MessageReceivedEvent event, String message) {
-        if (!hasAdminRole(event)) {
-            MessageEmbed errorEmbed = new EmbedBuilder()
-                .setTitle("Access Denied")
-                .setColor(0xFF0000)
-                .setDescription("You need admin permissions to use this command.")
-                .setFooter("Discord Integration", null)
-                .build();
-            event.getChannel().sendMessageEmbeds(errorEmbed).queue();
+        if (!hasAdminRole(event.getMember())) {
+            event.getChannel().sendMessageEmbeds(accessDeniedEmbed()).queue();
             return;
         }
         
-        com.hypixel.hytale.server.core.universe.Universe universe = 
-            com.hypixel.hytale.server.core.universe.Universe.get();
-        java.util.Collection<com.hypixel.hytale.server.core.universe.PlayerRef> onlinePlayers = universe.getPlayers();
-        int playerCount = onlinePlayers.size();
+        OnlineRoster.Snapshot roster = DiscordIntegration.getInstance().getOnlineRoster().snapshot();
         
-        if (playerCount == 0) {
+        if (roster.size() == 0) {
             MessageEmbed embed = new EmbedBuilder()
                 .setTitle("Server Status")
                 .setColor(0x00FFFF)
@@ -251,71 +584,267 @@ public class DiscordBot extends ListenerAdapter {
             return;
         }
         
-        java.util.List<String> playerNames = new java.util.ArrayList<>();
-        for (com.hypixel.hytale.server.core.universe.PlayerRef player : onlinePlayers) {
-            playerNames.add(player.getUsername());
-        }
-        
         String[] parts = message.split("\\s+");
         int page = 1;
         
         if (parts.length > 1) {
             try {
                 page = Integer.parseInt(parts[1]);
-                if (page < 1) page = 1;
             } catch (NumberFormatException e) {
                 page = 1;
             }
         }
+        page = roster.clampPage(page);
+        
+        event.getChannel().sendMessageEmbeds(playersPageEmbed(roster, page))
+            .setActionRow(playersPageButtons(roster, page))
+            .queue();
+        System.out.println("[Discord Integration] Players list page " + page + " requested by admin (" + roster.size() + " online)");
+    }
+    
+    @Override
+    public void onButtonInteraction(ButtonInteractionEvent event) {
+        String componentId = event.getComponentId();
+        if (componentId == null || !componentId.startsWith(PLAYERS_BUTTON_PREFIX)) return;
         
-        int playersPerPage = 15;
-        int totalPages = (int) Math.ceil((double) playerCount / playersPerPage);
+        if (!hasAdminRole(event.getMember())) {
+            event.replyEmbeds(accessDeniedEmbed()).setEphemeral(true).queue();
+            return;
+        }
         
-        if (page > totalPages) {
-            page = totalPages;
+        // Ids look like "players:<page>:<prev|refresh|next>"
+        int page;
+        try {
+            int end = componentId.indexOf(':', PLAYERS_BUTTON_PREFIX.length());
+            page = Integer.parseInt(componentId.substring(PLAYERS_BUTTON_PREFIX.length(), end < 0 ? componentId.length() : end));
+        } catch (NumberFormatException e) {
+            page = 1;
         }
         
-        sendPlayersPage(event, playerNames, page, totalPages, playersPerPage);
-        System.out.println("[Discord Integration] Players list page " + page + " requested by admin (" + playerCount + " online)");
+        OnlineRoster.Snapshot roster = DiscordIntegration.getInstance().getOnlineRoster().snapshot();
+        page = roster.clampPage(page);
+        event.editMessageEmbeds(playersPageEmbed(roster, page))
+            .setActionRow(playersPageButtons(roster, page))
+            .queue();
     }
     
-    private boolean hasAdminRole(MessageReceivedEvent event) {
-        String adminRoleId = config.getAdminRoleId();
-        if (adminRoleId == null || adminRoleId.isEmpty()) {
-            return true;
+    private void handleStatsCommand(MessageReceivedEvent event) {
+        ActivityStats stats = DiscordIntegration.getInstance().getActivityStats();
+        if (stats == null) {
+            event.getChannel().sendMessage("Activity stats are not available on this server.").queue();
+            return;
         }
         
-        return event.getMember() != null && 
-               event.getMember().getRoles().stream()
-                   .anyMatch(role -> role.getId().equals(adminRoleId));
+        long[] hourlyPeak = stats.series(ActivityStats.HOUR, ActivityStats.PEAK, 24);
+        long[] dailyPeak = stats.series(ActivityStats.DAY, ActivityStats.PEAK, 14);
+        long[] uniques = stats.dailyUniques(14);
+        long[] hourlyChat = stats.series(ActivityStats.HOUR, ActivityStats.CHAT, 24);
+        long[] dailyChat = stats.series(ActivityStats.DAY, ActivityStats.CHAT, 14);
+        
+        String chart = "```\n"
+            + "Online, last 24h (hourly peak)\n" + ActivityStats.sparkline(hourlyPeak) + "  max " + ActivityStats.max(hourlyPeak) + "\n\n"
+            + "Online, last 14 days (daily peak)\n" + ActivityStats.sparkline(dailyPeak) + "  max " + ActivityStats.max(dailyPeak) + "\n\n"
+            + "Unique players per day, last 14 days\n" + ActivityStats.sparkline(uniques) + "  today " + uniques[uniques.length - 1] + "\n\n"
+            + "Chat per hour, last 24h\n" + ActivityStats.sparkline(hourlyChat) + "  total " + ActivityStats.sum(hourlyChat) + "\n\n"
+            + "Chat per day, last 14 days\n" + ActivityStats.sparkline(dailyChat) + "  total " + ActivityStats.sum(dailyChat) + "\n"
+            + "```";
+        
+        long sessionToday = stats.averageSessionMs(ActivityStats.DAY, 1);
+        long sessionWeek = stats.averageSessionMs(ActivityStats.DAY, 7);
+        MessageEmbed embed = new EmbedBuilder()
+            .setTitle("Server Activity")
+            .setColor(0x00FFFF)
+            .setDescription(chart)
+            .addField("Online Now", String.valueOf(DiscordIntegration.getInstance().getTotalOnline()), true)
+            .addField("Avg Session (today)", sessionToday > 0 ? ProfileService.formatDuration(sessionToday) : "-", true)
+            .addField("Avg Session (7 days)", sessionWeek > 0 ? ProfileService.formatDuration(sessionWeek) : "-", true)
+            .setFooter("Discord Integration", null)
+            .build();
+        event.getChannel().sendMessageEmbeds(embed).queue();
     }
     
-    private void sendPlayersPage(MessageReceivedEvent event, java.util.List<String> playerNames, int page, int totalPages, int playersPerPage) {
-        int startIndex = (page - 1) * playersPerPage;
-        int endIndex = Math.min(startIndex + playersPerPage, playerNames.size());
+    private void handleSearchCommand(MessageReceivedEvent event, String message) {
+        if (!hasAdminRole(event.getMember())) {
+            event.getChannel().sendMessageEmbeds(accessDeniedEmbed()).queue();
+            return;
+        }
         
-        StringBuilder playerList = new StringBuilder();
-        for (int i = startIndex; i < endIndex; i++) {
-            playerList.append("• ").append(playerNames.get(i)).append("\n");
+        ChatArchive archive = DiscordIntegration.getInstance().getChatArchive();
+        if (archive == null) {
+            event.getChannel().sendMessage("The chat archive is disabled.").queue();
+            return;
         }
         
-        MessageEmbed embed = new EmbedBuilder()
-            .setTitle("Players Online (" + playerNames.size() + ")")
+        String[] parts = message.trim().split("\\s+");
+        if (parts.length < 2) {
+            event.getChannel().sendMessage("Usage: `!search <player|text> [since]`, e.g. `!search Steve 2d` or `!search griefing 12h`").queue();
+            return;
+        }
+        
+        long window = DEFAULT_SEARCH_WINDOW_MS;
+        int termEnd = parts.length;
+        if (parts.length > 2) {
+            long parsed = parseDuration(parts[parts.length - 1]);
+            if (parsed > 0) {
+                window = parsed;
+                termEnd--;
+            }
+        }
+        String term = String.join(" ", Arrays.copyOfRange(parts, 1, termEnd));
+        // A single word naming a known player searches by author, anything else by text
+        boolean byPlayer = termEnd == 2 && DiscordIntegration.getInstance().getProfileService().findByUsername(term) != null;
+        
+        List<String> lines = new ArrayList<>();
+        int[] length = {0};
+        try {
+            archive.search(byPlayer ? term : null, byPlayer ? null : term, System.currentTimeMillis() - window,
+                (timestamp, source, author, context, text) -> {
+                    String line = "[" + SEARCH_TIME_FORMAT.format(Instant.ofEpochMilli(timestamp)) + "] "
+                        + (source == ChatArchive.DISCORD ? "(Discord) " : "") + "<" + author + "> " + text;
+                    line = line.replace("```", "`\u200B``");
+                    if (length[0] + line.length() + 1 > SEARCH_OUTPUT_LIMIT) {
+                        return false;
+                    }
+                    lines.add(line);
+                    length[0] += line.length() + 1;
+                    return lines.size() < SEARCH_RESULT_LIMIT;
+                });
+        } catch (IOException e) {
+            System.out.println("[Discord Integration] Chat search failed: " + e.getMessage());
+            event.getChannel().sendMessage("Search failed, see the server console.").queue();
+            return;
+        }
+        
+        if (lines.isEmpty()) {
+            event.getChannel().sendMessage("No matches for `" + term.replace("`", "") + "`.").setAllowedMentions(ALLOWED_MENTIONS).queue();
+            return;
+        }
+        
+        // Newest first from the archive; show them in reading order
+        Collections.reverse(lines);
+        String header = (byPlayer ? "Messages by " : "Messages containing ") + "`" + term.replace("`", "") + "`"
+            + " (" + lines.size() + (lines.size() >= SEARCH_RESULT_LIMIT ? ", most recent" : "") + ")";
+        event.getChannel().sendMessage(header + "\n```\n" + String.join("\n", lines) + "\n```")
+            .setAllowedMentions(ALLOWED_MENTIONS)
+            .queue();
+        System.out.println("[Discord Integration] Chat search for '" + term + "' returned " + lines.size() + " lines");
+    }
+    
+    /** Parses 30m, 12h or 7d into milliseconds; 0 if the token is not a duration. */
+    private static long parseDuration(String token) {
+        if (token.length() < 2) {
+            return 0;
+        }
+        long amount;
+        try {
+            amount = Long.parseLong(token.substring(0, token.length() - 1));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+        switch (Character.toLowerCase(token.charAt(token.length() - 1))) {
+            case 'm':
+                return TimeUnit.MINUTES.toMillis(amount);
+            case 'h':
+                return TimeUnit.HOURS.toMillis(amount);
+            case 'd':
+                return TimeUnit.DAYS.toMillis(amount);
+            default:
+                return 0;
+        }
+    }
+    
+    private boolean hasAdminRole(Member member) {
+        long adminRoleId = configManager.get().getAdminRoleIdLong();
+        if (adminRoleId == 0) {
+            return true;
+        }
+        
+        return member != null && 
+               member.getRoles().stream()
+                   .anyMatch(role -> role.getIdLong() == adminRoleId);
+    }
+    
+    private static MessageEmbed accessDeniedEmbed() {
+        return new EmbedBuilder()
+            .setTitle("Access Denied")
+            .setColor(0xFF0000)
+            .setDescription("You need admin permissions to use this command.")
+            .setFooter("Discord Integration", null)
+            .build();
+    }
+    
+    private static MessageEmbed playersPageEmbed(OnlineRoster.Snapshot roster, int page) {
+        if (roster.size() == 0) {
+            return new EmbedBuilder()
+                .setTitle("Players Online (0)")
+                .setColor(0x00FFFF)
+                .setDescription("No players are currently online.")
+                .setFooter("Discord Integration", null)
+                .build();
+        }
+        return new EmbedBuilder()
+            .setTitle("Players Online (" + roster.size() + ")")
             .setColor(0x00FFFF)
-            .setDescription(playerList.toString())
-            .setFooter("Page " + page + "/" + totalPages + " | Use !players <page> to navigate", null)
+            .setDescription(roster.getPage(page))
+            .setFooter("Page " + page + "/" + roster.getPageCount(), null)
             .build();
-        
-        event.getChannel().sendMessageEmbeds(embed).queue();
+    }
+    
+    private static Button[] playersPageButtons(OnlineRoster.Snapshot roster, int page) {
+        return new Button[] {
+            Button.secondary(PLAYERS_BUTTON_PREFIX + (page - 1) + ":prev", "◀ Previous").withDisabled(page <= 1),
+            Button.secondary(PLAYERS_BUTTON_PREFIX + page + ":refresh", "Refresh"),
+            Button.secondary(PLAYERS_BUTTON_PREFIX + (page + 1) + ":next", "Next ▶").withDisabled(page >= roster.getPageCount())
+        };
     }
 
+    /** Unsharded: the default channel resolved and the gateway is up. Sharded: some route resolved and some shard is up. */
     public boolean isConnected() {
-        return jda != null && textChannel != null;
+        if (shardManager != null) {
+            if (resolvedRoutes == 0) {
+                return false;
+            }
+            for (JDA shard : shardManager.getShards()) {
+                if (shard.getStatus() == JDA.Status.CONNECTED) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return textChannel != null && jda != null && jda.getStatus() == JDA.Status.CONNECTED;
+    }
+
+    /** One line per gateway connection: status, ping, guilds and, when sharded, how many routes it carries. */
+    public List<String> getStatusLines() {
+        List<String> lines = new ArrayList<>();
+        if (shardManager != null) {
+            for (JDA shard : shardManager.getShards()) {
+                int shardId = shard.getShardInfo().getShardId();
+                int routes = 0;
+                for (int owner : channelShards.values()) {
+                    if (owner == shardId) {
+                        routes++;
+                    }
+                }
+                lines.add("Shard " + shardId + "/" + shard.getShardInfo().getShardTotal() + ": " + shard.getStatus()
+                    + ", " + shard.getGatewayPing() + "ms, " + shard.getGuilds().size() + " guilds, " + routes + " routes");
+            }
+        } else if (jda != null) {
+            lines.add("Gateway: " + jda.getStatus() + ", " + jda.getGatewayPing() + "ms, " + jda.getGuilds().size() + " guilds");
+        } else {
+            lines.add("Bot is not running");
+        }
+        if (spool != null && spool.hasBacklog()) {
+            lines.add("Spool: " + spool.getPending() + " messages waiting for delivery");
+        }
+        return lines;
     }
 
     public void updatePlayerCount(int online, int max) {
-        if (jda != null) {
-            String status = max > 0 ? online + "/" + max + " players online" : online + " players online";
+        String status = max > 0 ? online + "/" + max + " players online" : online + " players online";
+        if (shardManager != null) {
+            shardManager.setActivity(Activity.playing(status));
+        } else if (jda != null) {
             jda.getPresence().setActivity(Activity.playing(status));
         }
     }
@@ -1,5 +1,20 @@
 package com.kozejin;
 
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.logging.Level;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Plugin settings as read from config.json. An instance is treated as an
+ * immutable snapshot once {@link #prepare()} has run and it has been
+ * published through {@link ConfigManager}; changes are made on a copy and
+ * swapped in as a whole.
+ */
 public class DiscordConfig {
     private String botToken = "Bot Token Here";
     private String channelId = "111111111111111";
@@ -11,6 +26,24 @@ public class DiscordConfig {
     private boolean enableInGameChat = true;
     private ChatTagColors chatTagColors = new ChatTagColors();
     private MessageFormat messageFormat = new MessageFormat();
+    private Cluster cluster = new Cluster();
+    private Sharding sharding = new Sharding();
+    private List<Route> routes = new ArrayList<>();
+    private FloodProtection floodProtection = new FloodProtection();
+    private RelayLimits relayLimits = new RelayLimits();
+    private Escaping escaping = new Escaping();
+    private Storage storage = new Storage();
+    private Backup backup = new Backup();
+    private ChatArchive chatArchive = new ChatArchive();
+    private Spool spool = new Spool();
+    private StatusEmbed statusEmbed = new StatusEmbed();
+    private RoleSync roleSync = new RoleSync();
+    private ConsoleRelay consoleRelay = new ConsoleRelay();
+    private boolean debugThreadGuard = false;
+    private int shutdownDeadlineMs = 10000;
+    private int eventRingSize = 8192;
+    private transient ChannelRouteTable routeTable;
+    private transient long adminRoleIdLong;
 
     public static class ChatTagColors {
         private String bracketColor = "#808080";
@@ -18,10 +51,27 @@ public class DiscordConfig {
         private String usernameColor = "#00FFFF";
         private String messageColor = "#FFFFFF";
 
+        private transient Color bracket;
+        private transient Color tag;
+        private transient Color username;
+        private transient Color message;
+
         public String getBracketColor() { return bracketColor; }
         public String getTagColor() { return tagColor; }
         public String getUsernameColor() { return usernameColor; }
         public String getMessageColor() { return messageColor; }
+
+        public Color getBracket() { return bracket; }
+        public Color getTag() { return tag; }
+        public Color getUsername() { return username; }
+        public Color getMessage() { return message; }
+
+        private void prepare() {
+            bracket = Color.decode(bracketColor);
+            tag = Color.decode(tagColor);
+            username = Color.decode(usernameColor);
+            message = Color.decode(messageColor);
+        }
     }
 
     public static class MessageFormat {
@@ -36,29 +86,517 @@ public class DiscordConfig {
         public String getLeaveMessage() { return leaveMessage; }
     }
 
+    public static class Route {
+        private String channelId = "";
+        private String direction = "both";
+        private List<String> worlds = new ArrayList<>();
+        private boolean joinLeave = true;
+        private String discordToServer;
+        private String serverToDiscord;
+        private String joinMessage;
+        private String leaveMessage;
+        private transient long channelIdLong;
+        private transient MessageTemplate discordToServerTemplate;
+        private transient MessageTemplate serverToDiscordTemplate;
+        private transient MessageTemplate joinTemplate;
+        private transient MessageTemplate leaveTemplate;
+
+        static Route defaultRoute(String channelId) {
+            Route route = new Route();
+            route.channelId = channelId;
+            return route;
+        }
+
+        public String getChannelId() { return channelId; }
+        public String getDirection() { return direction; }
+        public List<String> getWorlds() { return worlds; }
+        public boolean isJoinLeave() { return joinLeave; }
+        public long getChannelIdLong() { return channelIdLong; }
+
+        public MessageTemplate getDiscordToServer() { return discordToServerTemplate; }
+        public MessageTemplate getServerToDiscord() { return serverToDiscordTemplate; }
+        public MessageTemplate getJoinMessage() { return joinTemplate; }
+        public MessageTemplate getLeaveMessage() { return leaveTemplate; }
+
+        private void prepare(MessageFormat defaults) {
+            if (worlds == null) {
+                worlds = new ArrayList<>();
+            }
+            channelIdLong = ChannelRouteTable.parseSnowflake(channelId);
+            discordToServerTemplate = MessageTemplate.compile(discordToServer != null ? discordToServer : defaults.getDiscordToServer());
+            serverToDiscordTemplate = MessageTemplate.compile(serverToDiscord != null ? serverToDiscord : defaults.getServerToDiscord());
+            joinTemplate = MessageTemplate.compile(joinMessage != null ? joinMessage : defaults.getJoinMessage());
+            leaveTemplate = MessageTemplate.compile(leaveMessage != null ? leaveMessage : defaults.getLeaveMessage());
+        }
+
+        public boolean isInbound() {
+            return !"game_to_discord".equalsIgnoreCase(direction);
+        }
+
+        public boolean isOutbound() {
+            return !"discord_to_game".equalsIgnoreCase(direction);
+        }
+
+        public boolean includesWorld(String worldName) {
+            if (worlds == null || worlds.isEmpty()) {
+                return true;
+            }
+            return worldName != null && worlds.contains(worldName);
+        }
+    }
+
+    public static class Escaping {
+        private boolean escapeMarkdown = true;
+        private boolean neutralizeMentions = true;
+        private boolean stripInvites = true;
+
+        public boolean isEscapeMarkdown() { return escapeMarkdown; }
+        public boolean isNeutralizeMentions() { return neutralizeMentions; }
+        public boolean isStripInvites() { return stripInvites; }
+    }
+
+    public static class FloodProtection {
+        private boolean enabled = true;
+        private int burst = 5;
+        private double refillPerSecond = 1.0;
+        private int globalBurst = 20;
+        private double globalPerSecond = 8.0;
+        private int repeatWindow = 8;
+        private int repeatThreshold = 3;
+        private int baseCooldownSeconds = 10;
+        private int maxCooldownSeconds = 600;
+        private int strikeDecaySeconds = 900;
+        private int idleEvictSeconds = 300;
+        private int maxTrackedAuthors = 5000;
+
+        public boolean isEnabled() { return enabled; }
+        public int getBurst() { return burst; }
+        public double getRefillPerSecond() { return refillPerSecond; }
+        public int getGlobalBurst() { return globalBurst; }
+        public double getGlobalPerSecond() { return globalPerSecond; }
+        public int getRepeatWindow() { return repeatWindow; }
+        public int getRepeatThreshold() { return repeatThreshold; }
+        public int getBaseCooldownSeconds() { return baseCooldownSeconds; }
+        public int getMaxCooldownSeconds() { return maxCooldownSeconds; }
+        public int getStrikeDecaySeconds() { return strikeDecaySeconds; }
+        public int getIdleEvictSeconds() { return idleEvictSeconds; }
+        public int getMaxTrackedAuthors() { return maxTrackedAuthors; }
+    }
+
+    public static class RelayLimits {
+        private boolean enabled = true;
+        private int burst = 5;
+        private int perMinute = 20;
+        private int collapseSeconds = 5;
+        private int repeatWindow = 8;
+        private int repeatThreshold = 3;
+        private int maxTrackedPlayers = 5000;
+
+        public boolean isEnabled() { return enabled; }
+        public int getBurst() { return burst; }
+        public int getPerMinute() { return perMinute; }
+        public int getCollapseSeconds() { return collapseSeconds; }
+        public int getRepeatWindow() { return repeatWindow; }
+        public int getRepeatThreshold() { return repeatThreshold; }
+        public int getMaxTrackedPlayers() { return maxTrackedPlayers; }
+    }
+
+    public static class Cluster {
+        private String mode = "standalone";
+        private String nodeId = "node-1";
+        private String hubHost = "127.0.0.1";
+        private int hubPort = 25580;
+        private int batchDelayMs = 10;
+
+        public String getMode() { return mode; }
+        public String getNodeId() { return nodeId; }
+        public String getHubHost() { return hubHost; }
+        public int getHubPort() { return hubPort; }
+        public int getBatchDelayMs() { return batchDelayMs; }
+
+        public boolean isHub() { return "hub".equalsIgnoreCase(mode); }
+        public boolean isNode() { return "node".equalsIgnoreCase(mode); }
+    }
+
+    public static class Sharding {
+        private boolean enabled = false;
+        private int totalShards = -1;
+
+        public boolean isEnabled() { return enabled; }
+        public int getTotalShards() { return totalShards; }
+    }
+
+    public static class Storage {
+        private String backend = "json";
+        private String sqliteFile = "players.db";
+        private int writeBatchSize = 256;
+        private int writeDelayMs = 200;
+
+        public String getBackend() { return backend; }
+        public String getSqliteFile() { return sqliteFile; }
+        public int getWriteBatchSize() { return writeBatchSize; }
+        public int getWriteDelayMs() { return writeDelayMs; }
+
+        public boolean isSqlite() { return "sqlite".equalsIgnoreCase(backend); }
+    }
+
+    public static class Backup {
+        private boolean enabled = true;
+        private int intervalMinutes = 60;
+        private int keep = 24;
+
+        public boolean isEnabled() { return enabled; }
+        public int getIntervalMinutes() { return intervalMinutes; }
+        public int getKeep() { return keep; }
+    }
+
+    public static class ChatArchive {
+        private boolean enabled = true;
+        private int segmentMinutes = 60;
+        private int blockKb = 32;
+        private int retentionDays = 14;
+        private int maxDiskMb = 512;
+
+        public boolean isEnabled() { return enabled; }
+        public int getSegmentMinutes() { return segmentMinutes; }
+        public int getBlockKb() { return blockKb; }
+        public int getRetentionDays() { return retentionDays; }
+        public int getMaxDiskMb() { return maxDiskMb; }
+    }
+
+    public static class Spool {
+        private boolean enabled = true;
+        private int segmentKb = 256;
+        private int maxMb = 32;
+        private int maxAgeMinutes = 60;
+        private int maxPendingSends = 25;
+        private String chatPolicy = "keep";
+        private String joinLeavePolicy = "drop_when_full";
+        private String systemPolicy = "keep";
+
+        public boolean isEnabled() { return enabled; }
+        public int getSegmentKb() { return segmentKb; }
+        public int getMaxMb() { return maxMb; }
+        public int getMaxAgeMinutes() { return maxAgeMinutes; }
+        public int getMaxPendingSends() { return maxPendingSends; }
+        public String getChatPolicy() { return chatPolicy; }
+        public String getJoinLeavePolicy() { return joinLeavePolicy; }
+        public String getSystemPolicy() { return systemPolicy; }
+    }
+
+    public static class StatusEmbed {
+        private boolean enabled = false;
+        private String channelId = "";
+        private int intervalSeconds = 30;
+
+        public boolean isEnabled() { return enabled; }
+        public String getChannelId() { return channelId; }
+        public int getIntervalSeconds() { return intervalSeconds; }
+    }
+
+    public static class ConsoleRelay {
+        private boolean enabled = false;
+        private String channelId = "";
+        private String level = "WARNING";
+        private String include = "";
+        private String exclude = "";
+        private int flushSeconds = 5;
+        private int maxMessagesPerMinute = 10;
+        private int bufferLines = 1000;
+
+        private transient int levelValue = Level.WARNING.intValue();
+        private transient Pattern includePattern;
+        private transient Pattern excludePattern;
+
+        public boolean isEnabled() { return enabled; }
+        public String getChannelId() { return channelId; }
+        public String getLevel() { return level; }
+        public String getInclude() { return include; }
+        public String getExclude() { return exclude; }
+        public int getFlushSeconds() { return flushSeconds; }
+        public int getMaxMessagesPerMinute() { return maxMessagesPerMinute; }
+        public int getBufferLines() { return bufferLines; }
+        public int getLevelValue() { return levelValue; }
+
+        /** Whether a formatted line passes the include and exclude patterns. */
+        public boolean matches(String line) {
+            return (includePattern == null || includePattern.matcher(line).find())
+                && (excludePattern == null || !excludePattern.matcher(line).find());
+        }
+
+        private void prepare() {
+            levelValue = Level.parse(level.toUpperCase(Locale.ROOT)).intValue();
+            includePattern = include == null || include.isEmpty() ? null : Pattern.compile(include);
+            excludePattern = exclude == null || exclude.isEmpty() ? null : Pattern.compile(exclude);
+        }
+    }
+
+    public static class PlaytimeRole {
+        private double hours;
+        private String roleId = "";
+
+        public double getHours() { return hours; }
+        public String getRoleId() { return roleId; }
+    }
+
+    public static class RoleSync {
+        private boolean enabled = false;
+        private String guildId = "";
+        private List<PlaytimeRole> roles = new ArrayList<>();
+        private boolean keepLowerRoles = true;
+        private int tickMinutes = 5;
+        private int batchSize = 5;
+        private int batchIntervalSeconds = 10;
+        private transient long guildIdLong;
+        private transient long[] thresholds = new long[0];
+        private transient long[] roleIds = new long[0];
+
+        public boolean isEnabled() { return enabled; }
+        public String getGuildId() { return guildId; }
+        public List<PlaytimeRole> getRoles() { return roles; }
+        public boolean isKeepLowerRoles() { return keepLowerRoles; }
+        public int getTickMinutes() { return tickMinutes; }
+        public int getBatchSize() { return batchSize; }
+        public int getBatchIntervalSeconds() { return batchIntervalSeconds; }
+        public long getGuildIdLong() { return guildIdLong; }
+        public int getTierCount() { return roleIds.length; }
+        public long getRoleIdLong(int tier) { return roleIds[tier]; }
+
+        /** How many thresholds {@code playTimeMs} has reached. */
+        public int tierFor(long playTimeMs) {
+            int tier = 0;
+            while (tier < thresholds.length && playTimeMs >= thresholds[tier]) {
+                tier++;
+            }
+            return tier;
+        }
+
+        private void prepare() {
+            if (roles == null) {
+                roles = new ArrayList<>();
+            }
+            List<PlaytimeRole> sorted = new ArrayList<>(roles);
+            sorted.sort(Comparator.comparingDouble(PlaytimeRole::getHours));
+            thresholds = new long[sorted.size()];
+            roleIds = new long[sorted.size()];
+            for (int i = 0; i < sorted.size(); i++) {
+                thresholds[i] = (long) (sorted.get(i).hours * 3_600_000L);
+                roleIds[i] = ChannelRouteTable.parseSnowflake(sorted.get(i).roleId);
+            }
+            guildIdLong = ChannelRouteTable.parseSnowflake(guildId);
+        }
+    }
+
+    // Setters are package-private: they are only used on unpublished copies inside ConfigManager.update
     public String getBotToken() { return botToken; }
-    public void setBotToken(String botToken) { this.botToken = botToken; }
+    void setBotToken(String botToken) { this.botToken = botToken; }
     
     public String getChannelId() { return channelId; }
-    public void setChannelId(String channelId) { this.channelId = channelId; }
+    void setChannelId(String channelId) { this.channelId = channelId; }
     
     public String getCommandChannelId() { return commandChannelId; }
-    public void setCommandChannelId(String commandChannelId) { this.commandChannelId = commandChannelId; }
+    void setCommandChannelId(String commandChannelId) { this.commandChannelId = commandChannelId; }
     
     public String getAdminRoleId() { return adminRoleId; }
-    public void setAdminRoleId(String adminRoleId) { this.adminRoleId = adminRoleId; }
+    void setAdminRoleId(String adminRoleId) { this.adminRoleId = adminRoleId; }
+    public long getAdminRoleIdLong() { return adminRoleIdLong; }
     
     public boolean isEnabled() { return enabled; }
-    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+    void setEnabled(boolean enabled) { this.enabled = enabled; }
     
     public String getChatTagText() { return chatTagText; }
-    public void setChatTagText(String chatTagText) { this.chatTagText = chatTagText; }
+    void setChatTagText(String chatTagText) { this.chatTagText = chatTagText; }
     
     public boolean isShowChatTag() { return showChatTag; }
-    public void setShowChatTag(boolean showChatTag) { this.showChatTag = showChatTag; }
+    void setShowChatTag(boolean showChatTag) { this.showChatTag = showChatTag; }
     
     public boolean isEnableInGameChat() { return enableInGameChat; }
-    public void setEnableInGameChat(boolean enableInGameChat) { this.enableInGameChat = enableInGameChat; }
+    void setEnableInGameChat(boolean enableInGameChat) { this.enableInGameChat = enableInGameChat; }
     public ChatTagColors getChatTagColors() { return chatTagColors; }
     public MessageFormat getMessageFormat() { return messageFormat; }
+    public Cluster getCluster() { return cluster; }
+    public Sharding getSharding() { return sharding; }
+    public FloodProtection getFloodProtection() { return floodProtection; }
+    public RelayLimits getRelayLimits() { return relayLimits; }
+    public Escaping getEscaping() { return escaping; }
+    public Storage getStorage() { return storage; }
+    public Backup getBackup() { return backup; }
+    public ChatArchive getChatArchive() { return chatArchive; }
+    public Spool getSpool() { return spool; }
+    public StatusEmbed getStatusEmbed() { return statusEmbed; }
+    public RoleSync getRoleSync() { return roleSync; }
+    public ConsoleRelay getConsoleRelay() { return consoleRelay; }
+    public boolean isDebugThreadGuard() { return debugThreadGuard; }
+    public int getShutdownDeadlineMs() { return shutdownDeadlineMs; }
+    public int getEventRingSize() { return eventRingSize; }
+    public List<Route> getRoutes() { return routes; }
+    public ChannelRouteTable getRouteTable() { return routeTable; }
+
+    public List<String> validate() {
+        List<String> errors = new ArrayList<>();
+        ChatTagColors colors = chatTagColors != null ? chatTagColors : new ChatTagColors();
+        checkColor(errors, "bracketColor", colors.bracketColor);
+        checkColor(errors, "tagColor", colors.tagColor);
+        checkColor(errors, "usernameColor", colors.usernameColor);
+        checkColor(errors, "messageColor", colors.messageColor);
+        checkSnowflake(errors, "channelId", channelId);
+        checkSnowflake(errors, "commandChannelId", commandChannelId);
+        checkSnowflake(errors, "adminRoleId", adminRoleId);
+        if (routes != null) {
+            for (Route route : routes) {
+                checkSnowflake(errors, "routes.channelId", route.channelId);
+                if (route.direction != null && !"both".equalsIgnoreCase(route.direction)
+                        && !"game_to_discord".equalsIgnoreCase(route.direction)
+                        && !"discord_to_game".equalsIgnoreCase(route.direction)) {
+                    errors.add("routes.direction must be both, game_to_discord or discord_to_game: " + route.direction);
+                }
+            }
+        }
+        if (floodProtection != null && (floodProtection.burst < 1 || floodProtection.globalBurst < 1
+                || floodProtection.refillPerSecond <= 0 || floodProtection.globalPerSecond <= 0)) {
+            errors.add("floodProtection rates and bursts must be positive");
+        }
+        if (relayLimits != null && (relayLimits.burst < 1 || relayLimits.perMinute < 1 || relayLimits.collapseSeconds < 1
+                || relayLimits.repeatThreshold < 2 || relayLimits.maxTrackedPlayers < 1)) {
+            errors.add("relayLimits rates and sizes must be at least 1, and repeatThreshold at least 2");
+        }
+        if (cluster != null && !cluster.isHub() && !cluster.isNode() && !"standalone".equalsIgnoreCase(cluster.mode)) {
+            errors.add("cluster.mode must be standalone, hub or node");
+        }
+        if (sharding != null && sharding.totalShards == 0) {
+            errors.add("sharding.totalShards must be positive, or -1 to let Discord decide");
+        }
+        if (storage != null) {
+            if (!storage.isSqlite() && !"json".equalsIgnoreCase(storage.backend)) {
+                errors.add("storage.backend must be json or sqlite");
+            }
+            if (storage.writeBatchSize < 1) {
+                errors.add("storage.writeBatchSize must be at least 1");
+            }
+        }
+        if (backup != null && (backup.intervalMinutes < 1 || backup.keep < 1)) {
+            errors.add("backup.intervalMinutes and backup.keep must be at least 1");
+        }
+        if (chatArchive != null && (chatArchive.segmentMinutes < 1 || chatArchive.blockKb < 1
+                || chatArchive.retentionDays < 1 || chatArchive.maxDiskMb < 1)) {
+            errors.add("chatArchive sizes and durations must be at least 1");
+        }
+        if (statusEmbed != null) {
+            checkSnowflake(errors, "statusEmbed.channelId", statusEmbed.channelId);
+            // Edits to one message are rate limited by Discord; stay well clear of it
+            if (statusEmbed.intervalSeconds < 10) {
+                errors.add("statusEmbed.intervalSeconds must be at least 10");
+            }
+        }
+        if (roleSync != null) {
+            checkSnowflake(errors, "roleSync.guildId", roleSync.guildId);
+            if (roleSync.enabled && ChannelRouteTable.parseSnowflake(roleSync.guildId) == 0) {
+                errors.add("roleSync.guildId is required when roleSync is enabled");
+            }
+            if (roleSync.roles != null) {
+                for (PlaytimeRole role : roleSync.roles) {
+                    checkSnowflake(errors, "roleSync.roles.roleId", role.roleId);
+                    if (role.hours <= 0) {
+                        errors.add("roleSync.roles.hours must be positive");
+                    }
+                }
+            }
+            if (roleSync.tickMinutes < 1 || roleSync.batchSize < 1 || roleSync.batchIntervalSeconds < 1) {
+                errors.add("roleSync.tickMinutes, batchSize and batchIntervalSeconds must be at least 1");
+            }
+        }
+        if (consoleRelay != null) {
+            checkSnowflake(errors, "consoleRelay.channelId", consoleRelay.channelId);
+            if (consoleRelay.enabled && ChannelRouteTable.parseSnowflake(consoleRelay.channelId) == 0) {
+                errors.add("consoleRelay.channelId is required when consoleRelay is enabled");
+            }
+            try {
+                Level.parse(String.valueOf(consoleRelay.level).toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                errors.add("consoleRelay.level must be a log level such as INFO or WARNING");
+            }
+            checkPattern(errors, "consoleRelay.include", consoleRelay.include);
+            checkPattern(errors, "consoleRelay.exclude", consoleRelay.exclude);
+            if (consoleRelay.flushSeconds < 1 || consoleRelay.maxMessagesPerMinute < 1 || consoleRelay.bufferLines < 1) {
+                errors.add("consoleRelay.flushSeconds, maxMessagesPerMinute and bufferLines must be at least 1");
+            }
+        }
+        if (shutdownDeadlineMs < 0) {
+            errors.add("shutdownDeadlineMs must not be negative");
+        }
+        if (eventRingSize < 64 || Integer.bitCount(eventRingSize) != 1) {
+            errors.add("eventRingSize must be a power of two, at least 64");
+        }
+        if (spool != null) {
+            // A segment must hold at least one full 2000 character message
+            if (spool.segmentKb < 16 || spool.maxMb < 1 || spool.maxAgeMinutes < 1 || spool.maxPendingSends < 1) {
+                errors.add("spool.segmentKb must be at least 16 and the other spool sizes at least 1");
+            }
+            checkSpoolPolicy(errors, "spool.chatPolicy", spool.chatPolicy);
+            checkSpoolPolicy(errors, "spool.joinLeavePolicy", spool.joinLeavePolicy);
+            checkSpoolPolicy(errors, "spool.systemPolicy", spool.systemPolicy);
+        }
+        return errors;
+    }
+
+    /** Fills missing sections and rebuilds all derived state. Runs once per published snapshot. */
+    void prepare() {
+        if (chatTagColors == null) chatTagColors = new ChatTagColors();
+        if (messageFormat == null) messageFormat = new MessageFormat();
+        if (cluster == null) cluster = new Cluster();
+        if (sharding == null) sharding = new Sharding();
+        if (routes == null) routes = new ArrayList<>();
+        if (floodProtection == null) floodProtection = new FloodProtection();
+        if (relayLimits == null) relayLimits = new RelayLimits();
+        if (escaping == null) escaping = new Escaping();
+        if (storage == null) storage = new Storage();
+        if (backup == null) backup = new Backup();
+        if (chatArchive == null) chatArchive = new ChatArchive();
+        if (spool == null) spool = new Spool();
+        if (statusEmbed == null) statusEmbed = new StatusEmbed();
+        if (roleSync == null) roleSync = new RoleSync();
+        if (consoleRelay == null) consoleRelay = new ConsoleRelay();
+
+        chatTagColors.prepare();
+        roleSync.prepare();
+        consoleRelay.prepare();
+        for (Route route : routes) {
+            route.prepare(messageFormat);
+        }
+        Route defaultRoute = Route.defaultRoute(channelId);
+        defaultRoute.prepare(messageFormat);
+        routeTable = ChannelRouteTable.build(this, defaultRoute);
+        adminRoleIdLong = ChannelRouteTable.parseSnowflake(adminRoleId);
+    }
+
+    private static void checkPattern(List<String> errors, String field, String value) {
+        if (value == null || value.isEmpty()) {
+            return;
+        }
+        try {
+            Pattern.compile(value);
+        } catch (PatternSyntaxException e) {
+            errors.add(field + " is not a valid regular expression: " + e.getDescription());
+        }
+    }
+
+    private static void checkSpoolPolicy(List<String> errors, String field, String value) {
+        if (OutboundSpool.Policy.parse(value) == null) {
+            errors.add(field + " must be keep, drop_when_full or drop");
+        }
+    }
+
+    private static void checkColor(List<String> errors, String field, String value) {
+        try {
+            Color.decode(value);
+        } catch (RuntimeException e) {
+            errors.add(field + " is not a valid color: " + value);
+        }
+    }
+
+    private static void checkSnowflake(List<String> errors, String field, String value) {
+        if (value != null && !value.trim().isEmpty() && ChannelRouteTable.parseSnowflake(value) == 0) {
+            errors.add(field + " is not a valid Discord ID: " + value);
+        }
+    }
 }
@@ -10,9 +10,10 @@ import com.hypixel.hytale.server.core.universe.world.World;
 import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
 
 import javax.annotation.Nonnull;
-import java.io.File;
+import java.util.List;
 
 public class DiscordConfigCommand extends AbstractPlayerCommand {
+    static final String BACKUP_PERMISSION = "discordintegration.backup";
 
     public DiscordConfigCommand() {
         super("discord", "Manage Discord integration settings", false);
@@ -55,6 +56,19 @@ public class DiscordConfigCommand extends AbstractPlayerCommand {
             listConfigValues(player);
         } else if ("reload".equals(action)) {
             reloadConfig(player);
+        } else if ("status".equals(action)) {
+            showBridgeStatus(player);
+        } else if ("mute".equals(action)) {
+            boolean muted = DiscordIntegration.getInstance().toggleDiscordChatMute(player);
+            player.sendMessage(Message.raw(muted
+                ? "Discord chat muted. Use /discord mute again to see it."
+                : "Discord chat unmuted."));
+        } else if (("backup".equals(action) || "restore".equals(action)) && !context.sender().hasPermission(BACKUP_PERMISSION)) {
+            player.sendMessage(Message.raw("You need the " + BACKUP_PERMISSION + " permission to manage backups."));
+        } else if ("backup".equals(action)) {
+            backupPlayerData(player);
+        } else if ("restore".equals(action)) {
+            restorePlayerData(player, args.length >= 3 ? args[2].trim() : null);
         } else {
             showConfigHelp(player);
         }
@@ -66,11 +80,15 @@ public class DiscordConfigCommand extends AbstractPlayerCommand {
         player.sendMessage(Message.raw("/discord set <field> <value> - Set config value"));
         player.sendMessage(Message.raw("/discord list - Show all config values"));
         player.sendMessage(Message.raw("/discord reload - Reload config from file"));
+        player.sendMessage(Message.raw("/discord status - Show the Discord connection and shard status"));
+        player.sendMessage(Message.raw("/discord mute - Toggle seeing chat relayed from Discord"));
+        player.sendMessage(Message.raw("/discord backup - Back up player data now"));
+        player.sendMessage(Message.raw("/discord restore [name|latest] - List backups, or merge one into player data"));
         player.sendMessage(Message.raw("Fields: enabled, showChatTag, enableInGameChat, chatTagText, channelId, commandChannelId, adminRoleId"));
     }
 
     private void getConfigValue(PlayerRef player, String fieldName) {
-        DiscordConfig config = DiscordIntegration.getInstance().config;
+        DiscordConfig config = DiscordIntegration.getInstance().getConfigManager().get();
         
         try {
             Object value = getFieldValue(config, fieldName);
@@ -81,11 +99,10 @@ public class DiscordConfigCommand extends AbstractPlayerCommand {
     }
 
     private void setConfigValue(PlayerRef player, String fieldName, String value) {
-        DiscordConfig config = DiscordIntegration.getInstance().config;
+        ConfigManager configManager = DiscordIntegration.getInstance().getConfigManager();
         
         try {
-            setFieldValue(config, fieldName, value);
-            saveConfig(config);
+            configManager.update(config -> setFieldValue(config, fieldName, value));
             player.sendMessage(Message.raw("Set " + fieldName + " to: " + value));
             System.out.println("[Discord Integration] Config updated in-game: " + fieldName + " = " + value);
         } catch (Exception e) {
@@ -94,7 +111,7 @@ public class DiscordConfigCommand extends AbstractPlayerCommand {
     }
 
     private void listConfigValues(PlayerRef player) {
-        DiscordConfig config = DiscordIntegration.getInstance().config;
+        DiscordConfig config = DiscordIntegration.getInstance().getConfigManager().get();
         
         player.sendMessage(Message.raw("=== Discord Config Values ==="));
         player.sendMessage(Message.raw("enabled: " + config.isEnabled()));
@@ -104,15 +121,80 @@ public class DiscordConfigCommand extends AbstractPlayerCommand {
         player.sendMessage(Message.raw("channelId: " + config.getChannelId()));
         player.sendMessage(Message.raw("commandChannelId: " + config.getCommandChannelId()));
         player.sendMessage(Message.raw("adminRoleId: " + config.getAdminRoleId()));
+        player.sendMessage(Message.raw("routes: " + config.getRoutes().size()));
     }
 
     private void reloadConfig(PlayerRef player) {
-        try {
-            DiscordIntegration.getInstance().loadConfig();
+        if (DiscordIntegration.getInstance().getConfigManager().reload()) {
             player.sendMessage(Message.raw("Config reloaded successfully!"));
-        } catch (Exception e) {
-            player.sendMessage(Message.raw("Error reloading config: " + e.getMessage()));
+        } else {
+            player.sendMessage(Message.raw("Config reload failed, previous settings kept. See console for details."));
+        }
+    }
+
+    private void showBridgeStatus(PlayerRef player) {
+        DiscordBot bot = DiscordIntegration.getInstance().discordBot;
+        if (bot == null) {
+            player.sendMessage(Message.raw("Discord is handled by the cluster hub."));
+            return;
+        }
+        
+        player.sendMessage(Message.raw("=== Discord Bridge Status ==="));
+        for (String line : bot.getStatusLines()) {
+            player.sendMessage(Message.raw(line));
+        }
+    }
+
+    private void backupPlayerData(PlayerRef player) {
+        BackupManager backups = DiscordIntegration.getInstance().getBackupManager();
+        if (backups == null) {
+            player.sendMessage(Message.raw("Backups are handled by the cluster hub."));
+            return;
+        }
+        
+        player.sendMessage(Message.raw("Backing up player data..."));
+        // Completes on an I/O thread; the reply goes back through the player's world
+        PluginExecutor executor = DiscordIntegration.getInstance().getExecutor();
+        backups.backupAsync().whenComplete((archive, error) -> {
+            if (error != null) {
+                executor.sendToPlayer(player, Message.raw("Backup failed: " + error.getMessage()));
+            } else {
+                executor.sendToPlayer(player, Message.raw("Backup written: " + archive.getName()));
+            }
+        });
+    }
+
+    private void restorePlayerData(PlayerRef player, String name) {
+        BackupManager backups = DiscordIntegration.getInstance().getBackupManager();
+        if (backups == null) {
+            player.sendMessage(Message.raw("Backups are handled by the cluster hub."));
+            return;
         }
+        
+        if (name == null || name.isEmpty()) {
+            List<String> available = backups.listBackups();
+            if (available.isEmpty()) {
+                player.sendMessage(Message.raw("No backups found."));
+                return;
+            }
+            player.sendMessage(Message.raw("=== Player Data Backups ==="));
+            for (int i = 0; i < Math.min(10, available.size()); i++) {
+                player.sendMessage(Message.raw(available.get(i)));
+            }
+            player.sendMessage(Message.raw("Use /discord restore <name> or /discord restore latest"));
+            return;
+        }
+        
+        player.sendMessage(Message.raw("Verifying and merging " + name + "..."));
+        PluginExecutor executor = DiscordIntegration.getInstance().getExecutor();
+        backups.restoreAsync(name).whenComplete((restored, error) -> {
+            if (error != null) {
+                executor.sendToPlayer(player, Message.raw("Restore failed: " + error.getMessage()));
+            } else {
+                DiscordIntegration.getInstance().getProfileService().invalidateAll();
+                executor.sendToPlayer(player, Message.raw("Merged " + restored + " player records; players added since the backup were kept. The previous data was backed up first."));
+            }
+        });
     }
 
     private Object getFieldValue(DiscordConfig config, String fieldName) throws Exception {
@@ -163,9 +245,4 @@ public class DiscordConfigCommand extends AbstractPlayerCommand {
                 throw new Exception("Unknown field: " + fieldName);
         }
     }
-
-    private void saveConfig(DiscordConfig config) {
-        File configFile = new File("mods/DiscordIntegration/config.json");
-        DiscordIntegration.getInstance().saveConfig(configFile);
-    }
 }
@@ -0,0 +1,108 @@
+package com.kozejin;
+
+/**
+ * Escapes player-controlled text on its way to Discord. Safe runs are copied
+ * into the output buffer in one append; only the characters that need
+ * neutralizing are handled one by one.
+ */
+public final class DiscordEscaper {
+    private static final char ZERO_WIDTH_SPACE = '\u200B';
+    private static final String INVITE_REPLACEMENT = "[invite removed]";
+    private static final String[] INVITE_PREFIXES = {
+        "discord.gg/",
+        "discord.com/invite/",
+        "discordapp.com/invite/"
+    };
+
+    private DiscordEscaper() {
+    }
+
+    public static String format(MessageTemplate template, String playerName, String worldName, String message,
+                                DiscordConfig.Escaping settings) {
+        StringBuilder out = new StringBuilder(template.getSource().length() + 32 + (message != null ? message.length() : 0));
+        int slots = template.getSlotCount();
+        for (int i = 0; i < slots; i++) {
+            out.append(template.getLiteral(i));
+            String value = MessageTemplate.value(template.getSlot(i), playerName, message, worldName, null);
+            if (value != null) {
+                appendEscaped(out, value, settings);
+            }
+        }
+        return out.append(template.getLiteral(slots)).toString();
+    }
+
+    public static String escape(String text, DiscordConfig.Escaping settings) {
+        StringBuilder out = new StringBuilder(text.length() + 8);
+        appendEscaped(out, text, settings);
+        return out.toString();
+    }
+
+    public static void appendEscaped(StringBuilder out, String text, DiscordConfig.Escaping settings) {
+        boolean markdown = settings.isEscapeMarkdown();
+        boolean mentions = settings.isNeutralizeMentions();
+        boolean invites = settings.isStripInvites();
+        int length = text.length();
+        int runStart = 0;
+
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '@':
+                    if (mentions) {
+                        // Breaks @everyone, @here, <@id> and <@&id> without changing what players read
+                        out.append(text, runStart, i + 1).append(ZERO_WIDTH_SPACE);
+                        runStart = i + 1;
+                    }
+                    break;
+                case '\\':
+                case '*':
+                case '_':
+                case '~':
+                case '`':
+                case '|':
+                case '>':
+                case '[':
+                case ']':
+                    if (markdown) {
+                        out.append(text, runStart, i).append('\\').append(c);
+                        runStart = i + 1;
+                    }
+                    break;
+                case '#':
+                case '-':
+                    if (markdown && (i == 0 || text.charAt(i - 1) == '\n')) {
+                        out.append(text, runStart, i).append('\\').append(c);
+                        runStart = i + 1;
+                    }
+                    break;
+                case 'd':
+                case 'D':
+                    if (invites) {
+                        int end = inviteEnd(text, i);
+                        if (end > i) {
+                            out.append(text, runStart, i).append(INVITE_REPLACEMENT);
+                            runStart = end;
+                            i = end - 1;
+                        }
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        out.append(text, runStart, length);
+    }
+
+    private static int inviteEnd(String text, int i) {
+        for (String prefix : INVITE_PREFIXES) {
+            if (text.regionMatches(true, i, prefix, 0, prefix.length())) {
+                int end = i + prefix.length();
+                while (end < text.length() && !Character.isWhitespace(text.charAt(end))) {
+                    end++;
+                }
+                return end;
+            }
+        }
+        return -1;
+    }
+}
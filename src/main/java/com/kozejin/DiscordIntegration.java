@@ -1,6 +1,5 @@
 package com.kozejin;
 
-import java.awt.Color;
 import com.hypixel.hytale.server.core.Message;
 import com.hypixel.hytale.event.EventPriority;
 import com.hypixel.hytale.server.core.event.events.player.PlayerChatEvent;
@@ -8,26 +7,54 @@ import com.hypixel.hytale.server.core.plugin.JavaPlugin;
 import com.hypixel.hytale.server.core.plugin.JavaPluginInit;
 import com.hypixel.hytale.server.core.universe.PlayerRef;
 import com.hypixel.hytale.server.core.universe.Universe;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import com.hypixel.hytale.server.core.universe.world.World;
 
 import javax.annotation.Nonnull;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
 
 public class DiscordIntegration extends JavaPlugin {
     
     private static DiscordIntegration instance;
     
-    public DiscordConfig config;
+    private ConfigManager configManager;
     DiscordBot discordBot;
     private MessageRelay messageRelay;
     private PlayerDataStorage playerDataStorage;
     private LinkCodeManager linkCodeManager;
-    private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+    private ProfileService profileService;
+    private BackupManager backupManager;
+    private ChatArchive chatArchive;
+    private OutboundSpool outboundSpool;
+    private StatusPublisher statusPublisher;
+    private RoleSyncEngine roleSync;
+    private ActivityStats activityStats;
+    private ConsoleRelay consoleRelay;
+    private final OnlineRoster onlineRoster = new OnlineRoster();
+    private ClusterHub clusterHub;
+    private ClusterNode clusterNode;
+    private final DiscordMarkdownRenderer markdownRenderer = new DiscordMarkdownRenderer();
+    private PluginExecutor executor;
+    // Join, leave and chat events; each sink sees them in the order they happened
+    private EventPipeline eventPipeline;
+    private Executor storageLane;
+    private final AtomicBoolean saveQueued = new AtomicBoolean();
+    private volatile boolean shuttingDown;
+    // Only touched on the player data sink's thread
+    private boolean pendingSave;
+    private boolean rosterChanged;
 
     public DiscordIntegration(@Nonnull JavaPluginInit init) {
         super(init);
@@ -40,25 +67,93 @@ public class DiscordIntegration extends JavaPlugin {
         System.out.println("[Discord Integration] Plugin loading...");
         System.out.println("[Discord Integration] Made by Kozejin");
 
-        loadConfig();
+        configManager = new ConfigManager(new File("mods/DiscordIntegration/config.json"));
+        configManager.load();
+        configManager.startWatching();
+        executor = new PluginExecutor(configManager);
+        storageLane = executor.lane();
         
+        DiscordConfig.Cluster cluster = configManager.get().getCluster();
         File dataFolder = new File("mods/DiscordIntegration");
-        playerDataStorage = new PlayerDataStorage(dataFolder);
+        playerDataStorage = openPlayerDataStorage(dataFolder, cluster, configManager.get().getStorage());
+        exportRecordingProfile(dataFolder);
+        if (!cluster.isNode()) {
+            backupManager = new BackupManager(playerDataStorage, configManager, executor, dataFolder);
+            backupManager.start();
+            if (configManager.get().getChatArchive().isEnabled()) {
+                chatArchive = new ChatArchive(dataFolder, configManager, executor.lane());
+            }
+            activityStats = new ActivityStats(dataFolder, executor, this::getTotalOnline);
+            activityStats.start();
+        }
         linkCodeManager = new LinkCodeManager();
+        profileService = new ProfileService(playerDataStorage);
+        // Seed the roster once with anyone already online when the plugin (re)loads
+        for (PlayerRef player : Universe.get().getPlayers()) {
+            onlineRoster.add(player);
+            PlayerData data = playerDataStorage.getPlayerData(player.getUuid());
+            if (data != null) {
+                onlineRoster.setMuted(player.getUuid(), data.isDiscordChatMuted());
+            }
+        }
         
-        messageRelay = new MessageRelay(config);
+        messageRelay = new MessageRelay(configManager, executor);
         
-        discordBot = new DiscordBot(config, this::handleDiscordMessage);
+        if (cluster.isNode()) {
+            System.out.println("[Discord Integration] Running as cluster node '" + cluster.getNodeId() + "', Discord is handled by the hub");
+            clusterNode = new ClusterNode(this, cluster);
+            clusterNode.start();
+        } else {
+            if (configManager.get().getSpool().isEnabled()) {
+                try {
+                    outboundSpool = new OutboundSpool(dataFolder, configManager, executor);
+                } catch (IOException e) {
+                    System.out.println("[Discord Integration] Could not open the outbound spool, messages sent during outages will be lost: " + e.getMessage());
+                }
+            }
+            discordBot = new DiscordBot(configManager, executor, outboundSpool, this::handleDiscordMessage);
+            if (outboundSpool != null) {
+                outboundSpool.start(discordBot::isConnected, discordBot::deliverSpooled);
+            }
+            if (configManager.get().getRoleSync().isEnabled()) {
+                roleSync = new RoleSyncEngine(configManager, playerDataStorage, onlineRoster, discordBot, executor, this::onRolesSynced);
+                roleSync.start();
+            }
+            if (configManager.get().getStatusEmbed().isEnabled()) {
+                statusPublisher = new StatusPublisher(this, configManager, discordBot, executor, dataFolder);
+                statusPublisher.start();
+            }
+            if (configManager.get().getConsoleRelay().isEnabled()) {
+                consoleRelay = new ConsoleRelay(configManager, discordBot, executor);
+                Logger.getLogger("").addHandler(consoleRelay);
+                consoleRelay.start();
+            }
 
-        discordBot.start().thenAccept(success -> {
-            if (success) {
-                System.out.println("[Discord Integration] Successfully connected to Discord!");
-                System.out.println("[Discord Integration] Two-way chat bridge is active");
-            } else {
-                System.out.println("[Discord Integration] Failed to connect to Discord");
-                System.out.println("[Discord Integration] Please check your configuration");
+            discordBot.start().thenAccept(success -> {
+                if (success) {
+                    System.out.println("[Discord Integration] Successfully connected to Discord!");
+                    System.out.println("[Discord Integration] Two-way chat bridge is active");
+                } else {
+                    System.out.println("[Discord Integration] Failed to connect to Discord");
+                    System.out.println("[Discord Integration] Please check your configuration");
+                }
+            });
+
+            if (cluster.isHub()) {
+                clusterHub = new ClusterHub(this, cluster);
+                try {
+                    clusterHub.start();
+                } catch (IOException e) {
+                    System.out.println("[Discord Integration] Failed to start cluster hub: " + e.getMessage());
+                    clusterHub = null;
+                }
             }
-        });
+        }
+
+        eventPipeline = new EventPipeline(configManager.get().getEventRingSize());
+        eventPipeline.addSink("PlayerData", this::updatePlayerData);
+        eventPipeline.addSink("Relay", this::relayEvent);
+        eventPipeline.start();
 
         System.out.println("[Discord Integration] Registering event listeners...");
         
@@ -82,6 +177,7 @@ public class DiscordIntegration extends JavaPlugin {
     }
 
     private void onPlayerChat(PlayerChatEvent event) {
+        if (shuttingDown) return;
         System.out.println("[Discord Integration] Chat event received!");
         System.out.println("[Discord Integration] Cancelled: " + event.isCancelled());
         
@@ -91,143 +187,449 @@ public class DiscordIntegration extends JavaPlugin {
         System.out.println("[Discord Integration] Processing chat: " + sender.getUsername() + ": " + message);
         
         PlayerData data = playerDataStorage.getPlayerData(sender.getUuid());
+        DiscordConfig config = configManager.get();
         
         if (data != null && data.getDiscordId() != null && config.isShowChatTag()) {
-            event.setFormatter((playerRef, msg) -> {
-                String tagText = config.getChatTagText();
-                DiscordConfig.ChatTagColors colors = config.getChatTagColors();
-                return Message.join(
-                    Message.raw("[").color(Color.decode(colors.getBracketColor())),
-                    Message.raw(tagText).color(Color.decode(colors.getTagColor())),
-                    Message.raw("] ").color(Color.decode(colors.getBracketColor())),
-                    Message.raw(playerRef.getUsername()).color(Color.decode(colors.getUsernameColor())),
-                    Message.raw(": ").color(Color.decode(colors.getMessageColor())),
-                    Message.raw(msg).color(Color.decode(colors.getMessageColor()))
-                );
-            });
+            String tagText = config.getChatTagText();
+            DiscordConfig.ChatTagColors colors = config.getChatTagColors();
+            event.setFormatter((playerRef, msg) -> Message.join(
+                Message.raw("[").color(colors.getBracket()),
+                Message.raw(tagText).color(colors.getTag()),
+                Message.raw("] ").color(colors.getBracket()),
+                Message.raw(playerRef.getUsername()).color(colors.getUsername()),
+                Message.raw(": ").color(colors.getMessage()),
+                Message.raw(msg).color(colors.getMessage())
+            ));
         }
         
-        handlePlayerChat(sender.getUsername(), message);
+        String username = sender.getUsername();
+        String worldName = worldNameOf(sender);
+        UUID uuid = sender.getUuid();
+        eventPipeline.publish(EventPipeline.CHAT, uuid, username, worldName, message);
+    }
+
+    /** Copies the Flight Recorder profile next to the config, so it can be passed to JFR.start as a plain file. */
+    private void exportRecordingProfile(File dataFolder) {
+        File profile = new File(dataFolder, "discord-integration.jfc");
+        if (profile.exists()) {
+            return;
+        }
+        try (InputStream in = DiscordIntegration.class.getResourceAsStream("/discord-integration.jfc")) {
+            if (in != null) {
+                Files.copy(in, profile.toPath());
+            }
+        } catch (IOException e) {
+            System.out.println("[Discord Integration] Could not write " + profile.getName() + ": " + e.getMessage());
+        }
     }
 
     public void onDisable() {
         System.out.println("[Discord Integration] Plugin disabling...");
+        shuttingDown = true;
+        long started = System.currentTimeMillis();
+        long deadline = started + (configManager != null ? configManager.get().getShutdownDeadlineMs() : 0);
+        
+        if (configManager != null) {
+            configManager.stopWatching();
+        }
+        
+        if (backupManager != null) {
+            backupManager.stop();
+        }
+        
+        if (statusPublisher != null) {
+            statusPublisher.stop();
+        }
+        
+        if (roleSync != null) {
+            roleSync.stop();
+        }
+        
+        if (consoleRelay != null) {
+            Logger.getLogger("").removeHandler(consoleRelay);
+            consoleRelay.close();
+        }
+        
+        // Let join, leave and chat work that was already accepted finish before sessions are closed under it
+        boolean eventsDrained = true;
+        if (eventPipeline != null) {
+            eventsDrained = eventPipeline.awaitDrained(deadline - System.currentTimeMillis());
+            eventPipeline.stop();
+        }
+        int sessions = closeOpenSessions();
+        if (executor != null) {
+            executor.awaitLane(storageLane, deadline - System.currentTimeMillis());
+        }
+        
+        if (clusterNode != null) {
+            clusterNode.flush(deadline - System.currentTimeMillis());
+            clusterNode.stop();
+        }
+        
+        if (clusterHub != null) {
+            clusterHub.stop();
+        }
         
+        if (chatArchive != null) {
+            chatArchive.close();
+        }
+        
+        if (messageRelay != null) {
+            messageRelay.stop();
+        }
+        
+        if (activityStats != null) {
+            activityStats.close();
+        }
+        
+        int abandoned = 0;
+        if (discordBot != null) {
+            abandoned = discordBot.awaitPendingSends(deadline - System.currentTimeMillis());
+        }
+        
+        int spooled = 0;
+        if (outboundSpool != null) {
+            outboundSpool.close(deadline - System.currentTimeMillis());
+            spooled = outboundSpool.getPending();
+        }
+        
+        if (executor != null) {
+            executor.shutdown(deadline - System.currentTimeMillis());
+        }
+        
+        // Storage is flushed whatever is left of the deadline; losing playtime is worse than a slow stop
         if (playerDataStorage != null) {
-            playerDataStorage.saveAllPlayers();
+            playerDataStorage.close();
         }
         
         if (discordBot != null) {
-            discordBot.shutdown();
+            discordBot.shutdown(deadline - System.currentTimeMillis());
         }
         
+        System.out.println("[Discord Integration] Shutdown took " + (System.currentTimeMillis() - started) + "ms: "
+            + sessions + " sessions closed" + (eventsDrained ? "" : ", some player events were still queued")
+            + ", " + abandoned + " Discord messages abandoned, " + spooled + " kept in the spool for the next start");
         System.out.println("[Discord Integration] Plugin disabled!");
     }
     
+    /** Ends every open session in one pass and saves once, rather than once per player. */
+    private int closeOpenSessions() {
+        if (playerDataStorage == null) {
+            return 0;
+        }
+        int closed = 0;
+        for (UUID uuid : onlineRoster.uuids()) {
+            PlayerData data = playerDataStorage.getPlayerData(uuid);
+            if (data == null) {
+                continue;
+            }
+            data.endSession();
+            if (clusterNode != null) {
+                clusterNode.sendPlayerData(data);
+            }
+            onlineRoster.remove(uuid);
+            closed++;
+        }
+        return closed;
+    }
+    
+    private static PlayerDataStorage openPlayerDataStorage(File dataFolder, DiscordConfig.Cluster cluster, DiscordConfig.Storage storage) {
+        // Nodes keep a read cache of the hub's player store instead of their own copy
+        if (cluster.isNode()) {
+            return new JsonPlayerDataStorage(new File(dataFolder, "cache"));
+        }
+        if (storage.isSqlite()) {
+            try {
+                return new SqlitePlayerDataStorage(dataFolder, storage);
+            } catch (SQLException e) {
+                System.out.println("[Discord Integration] Could not open SQLite storage, falling back to players.json: " + e.getMessage());
+            }
+        }
+        return new JsonPlayerDataStorage(dataFolder);
+    }
+    
     private void onPlayerJoin(com.hypixel.hytale.server.core.event.events.player.PlayerConnectEvent event) {
+        if (shuttingDown) return;
         PlayerRef playerRef = event.getPlayerRef();
-        PlayerData data = playerDataStorage.getOrCreatePlayerData(playerRef.getUuid(), playerRef.getUsername());
-        
-        data.setUsername(playerRef.getUsername());
-        data.startSession();
-        
-        System.out.println("[Discord Integration] Player joined: " + playerRef.getUsername() + " (Total playtime: " + data.getFormattedPlayTime() + ")");
-        
-        handlePlayerJoin(playerRef.getUsername());
-        updatePlayerCount();
+        UUID uuid = playerRef.getUuid();
+        String username = playerRef.getUsername();
+        onlineRoster.add(playerRef);
+        eventPipeline.publishOrQueue(EventPipeline.JOIN, uuid, username, null, null);
     }
     
     private void onPlayerLeave(com.hypixel.hytale.server.core.event.events.player.PlayerDisconnectEvent event) {
+        // Sessions still open at shutdown are closed together in onDisable
+        if (shuttingDown) return;
         PlayerRef playerRef = event.getPlayerRef();
-        PlayerData data = playerDataStorage.getPlayerData(playerRef.getUuid());
-        
-        if (data != null) {
-            data.endSession();
-            System.out.println("[Discord Integration] Player left: " + playerRef.getUsername() + " (Session time: " + (System.currentTimeMillis() - data.getLastLoginTime()) / 1000 + "s)");
-        }
-        
-        playerDataStorage.saveAllPlayers();
-        
-        handlePlayerLeave(playerRef.getUsername());
-        updatePlayerCount();
+        UUID uuid = playerRef.getUuid();
+        onlineRoster.remove(uuid);
+        eventPipeline.publishOrQueue(EventPipeline.LEAVE, uuid, playerRef.getUsername(), null, null);
     }
-
-    public void loadConfig() {
-        File configFile = new File("mods/DiscordIntegration/config.json");
-        
-        if (!configFile.exists()) {
-            configFile.getParentFile().mkdirs();
-            config = new DiscordConfig();
-            saveConfig(configFile);
-            System.out.println("[Discord Integration] Created default config at: " + configFile.getAbsolutePath());
-            System.out.println("[Discord Integration] Please configure your bot token and channel IDs!");
-        } else {
-            try (FileReader reader = new FileReader(configFile)) {
-                config = gson.fromJson(reader, DiscordConfig.class);
-                System.out.println("[Discord Integration] Config loaded successfully");
-            } catch (Exception e) {
-                System.out.println("[Discord Integration] Error loading config: " + e.getMessage());
-                config = new DiscordConfig();
-                saveConfig(configFile);
+    
+    /** Pipeline sink for sessions and player records. Record lookups may hit disk, so this never runs on a world thread. */
+    private void updatePlayerData(EventPipeline.Event event, boolean endOfBatch) {
+        UUID uuid = event.getUuid();
+        String username = event.getUsername();
+        if (event.getType() == EventPipeline.JOIN) {
+            PlayerData data = playerDataStorage.getOrCreatePlayerData(uuid, username);
+            
+            data.setUsername(username);
+            data.startSession();
+            onlineRoster.setMuted(uuid, data.isDiscordChatMuted());
+            
+            System.out.println("[Discord Integration] Player joined: " + username + " (Total playtime: " + data.getFormattedPlayTime() + ")");
+            
+            if (clusterHub != null) {
+                clusterHub.broadcastPlayerData(data, null);
+            }
+            rosterChanged = true;
+        } else if (event.getType() == EventPipeline.LEAVE) {
+            PlayerData data = playerDataStorage.getPlayerData(uuid);
+            
+            if (data != null) {
+                if (activityStats != null && data.getCurrentSessionStart() > 0) {
+                    activityStats.recordLeave(System.currentTimeMillis() - data.getCurrentSessionStart());
+                }
+                data.endSession();
+                checkPlaytimeRoles(data);
+                System.out.println("[Discord Integration] Player left: " + username + " (Session time: " + (System.currentTimeMillis() - data.getLastLoginTime()) / 1000 + "s)");
+                
+                if (clusterNode != null) {
+                    clusterNode.sendPlayerData(data);
+                } else if (clusterHub != null) {
+                    clusterHub.broadcastPlayerData(data, null);
+                }
+            }
+            // One save and one count update cover every join and leave in the batch
+            pendingSave = true;
+            rosterChanged = true;
+        }
+        if (endOfBatch) {
+            if (pendingSave) {
+                pendingSave = false;
+                storageLane.execute(playerDataStorage::saveAllPlayers);
+            }
+            if (rosterChanged) {
+                rosterChanged = false;
+                updatePlayerCount();
             }
         }
     }
-
-    public void saveConfig(File configFile) {
-        try (FileWriter writer = new FileWriter(configFile)) {
-            gson.toJson(config, writer);
-        } catch (IOException e) {
-            System.out.println("[Discord Integration] Error saving config: " + e.getMessage());
+    
+    /** Pipeline sink for what other servers and Discord see: join and leave messages and chat. */
+    private void relayEvent(EventPipeline.Event event, boolean endOfBatch) {
+        UUID uuid = event.getUuid();
+        String username = event.getUsername();
+        switch (event.getType()) {
+            case EventPipeline.JOIN:
+                if (clusterNode != null) {
+                    clusterNode.sendJoin(uuid, username);
+                } else {
+                    handlePlayerJoin(uuid, username);
+                }
+                break;
+            case EventPipeline.LEAVE:
+                if (clusterNode != null) {
+                    clusterNode.sendLeave(uuid, username);
+                } else {
+                    handlePlayerLeave(uuid, username);
+                }
+                break;
+            case EventPipeline.CHAT:
+                handlePlayerChat(uuid, username, event.getWorldName(), event.getMessage(), event.getTime());
+                break;
+            default:
+                break;
         }
     }
 
-    private void handlePlayerChat(String username, String message) {
-        if (messageRelay != null && config.isEnableInGameChat()) {
-            messageRelay.sendToDiscord(username, message);
+    void handlePlayerChat(UUID uuid, String username, String worldName, String message, long publishedAt) {
+        if (clusterNode != null) {
+            clusterNode.sendChat(uuid, username, worldName, message);
+            return;
+        }
+        if (activityStats != null) {
+            activityStats.recordChat();
+        }
+        if (chatArchive != null) {
+            chatArchive.append(ChatArchive.GAME, username, worldName, message);
+        }
+        if (messageRelay != null && configManager.get().isEnableInGameChat()) {
+            messageRelay.sendToDiscord(uuid, username, worldName, message, publishedAt);
         }
     }
 
-    private void handlePlayerJoin(String username) {
+    void handlePlayerJoin(UUID uuid, String username) {
+        if (activityStats != null) {
+            activityStats.recordJoin(uuid, getTotalOnline());
+        }
+        if (statusPublisher != null) {
+            statusPublisher.recordJoin(username);
+        }
         if (messageRelay != null) {
             messageRelay.sendJoinMessage(username);
         }
     }
 
-    private void handlePlayerLeave(String username) {
+    void handlePlayerLeave(UUID uuid, String username) {
         if (messageRelay != null) {
+            messageRelay.forgetPlayer(uuid);
             messageRelay.sendLeaveMessage(username);
         }
     }
 
-    private void handleDiscordMessage(String username, String message) {
+    private void handleDiscordMessage(DiscordConfig.Route route, String username, String message) {
+        if (shuttingDown) return;
         System.out.println("[Discord -> Server] Received message from " + username + ": " + message);
+        if (chatArchive != null) {
+            chatArchive.append(ChatArchive.DISCORD, username, route.getChannelId(), message);
+        }
         
-        String formattedMessage = config.getMessageFormat().getDiscordToServer()
-            .replace("{user}", username)
-            .replace("{message}", message);
+        MessageTemplate template = route.getDiscordToServer();
+        deliverDiscordMessage(template, username, message, route.getWorlds());
         
-        broadcastToServer(formattedMessage);
+        if (clusterHub != null) {
+            clusterHub.broadcastDiscordChat(template.getSource(), username, message, route.getWorlds());
+        }
     }
 
-    private void broadcastToServer(String message) {
-        System.out.println("[Discord -> Server] Broadcasting: " + message);
+    void deliverDiscordMessage(MessageTemplate template, String username, String message, List<String> worlds) {
+        broadcastToServer(markdownRenderer.renderTemplate(template, username, message), worlds);
+    }
+
+    private void broadcastToServer(Message msg, List<String> worlds) {
+        FlightEvents.Broadcast event = new FlightEvents.Broadcast();
+        event.begin();
+        // Muted players are already out of the recipient set; one pass groups the rest by world
+        Map<UUID, List<PlayerRef>> byWorld = new HashMap<>();
+        List<PlayerRef> worldless = new ArrayList<>();
+        onlineRoster.chatRecipients().forEach(player -> {
+            UUID worldUuid = player.getWorldUuid();
+            if (worldUuid != null) {
+                byWorld.computeIfAbsent(worldUuid, k -> new ArrayList<>()).add(player);
+            } else {
+                worldless.add(player);
+            }
+        });
         
-        Message msg = Message.raw(message);
+        // Players between worlds have no world thread to deliver on; reach them here unless the route is world-filtered
+        if (worlds == null || worlds.isEmpty()) {
+            for (PlayerRef player : worldless) {
+                player.sendMessage(msg);
+            }
+            event.recipients += worldless.size();
+        }
         
-        for (PlayerRef player : Universe.get().getPlayers()) {
-            player.sendMessage(msg);
+        // Each world delivers to its own players on its own thread
+        for (Map.Entry<UUID, List<PlayerRef>> entry : byWorld.entrySet()) {
+            World world = Universe.get().getWorld(entry.getKey());
+            if (world == null || (worlds != null && !worlds.isEmpty() && !worlds.contains(world.getName()))) {
+                continue;
+            }
+            deliverToWorld(world, entry.getValue(), msg);
+            if (event.isEnabled()) {
+                event.worlds++;
+                event.recipients += entry.getValue().size();
+            }
         }
+        event.commit();
+    }
+
+    private void deliverToWorld(World world, List<PlayerRef> players, Message msg) {
+        long dispatched = new FlightEvents.BroadcastDelivery().isEnabled() ? System.nanoTime() : 0;
+        executor.runOnWorld(world, () -> {
+            long started = dispatched != 0 ? System.nanoTime() : 0;
+            FlightEvents.BroadcastDelivery event = new FlightEvents.BroadcastDelivery();
+            event.begin();
+            for (PlayerRef player : players) {
+                player.sendMessage(msg);
+            }
+            event.end();
+            if (event.shouldCommit()) {
+                event.world = world.getName();
+                event.players = players.size();
+                event.scheduleDelay = started - dispatched;
+                event.commit();
+            }
+            System.out.println("[Discord -> Server] Broadcast complete to " + players.size() + " players in " + world.getName());
+        });
+    }
+
+    /** Queues a role update if the player's playtime crossed a role threshold. Cheap enough for every session end. */
+    void checkPlaytimeRoles(PlayerData data) {
+        if (roleSync != null) {
+            roleSync.check(data);
+        }
+    }
+
+    /** Queues a save on the storage lane unless one is already waiting, so a burst of changes costs one write. */
+    void requestSave() {
+        if (saveQueued.compareAndSet(false, true)) {
+            storageLane.execute(() -> {
+                // Cleared first, so a change made while this save runs queues another
+                saveQueued.set(false);
+                playerDataStorage.saveAllPlayers();
+            });
+        }
+    }
+
+    private void onRolesSynced(List<PlayerData> synced) {
+        if (clusterHub != null) {
+            for (PlayerData data : synced) {
+                clusterHub.broadcastPlayerData(data, null);
+            }
+        }
+        storageLane.execute(playerDataStorage::saveAllPlayers);
+    }
+
+    /** Flips whether a player receives relayed Discord chat; returns the new muted state. */
+    public boolean toggleDiscordChatMute(PlayerRef player) {
+        PlayerData data = playerDataStorage.getOrCreatePlayerData(player.getUuid(), player.getUsername());
+        boolean muted = !data.isDiscordChatMuted();
+        data.setDiscordChatMuted(muted);
+        onlineRoster.setMuted(player.getUuid(), muted);
         
-        System.out.println("[Discord -> Server] Broadcast complete to " + Universe.get().getPlayers().size() + " players");
+        if (clusterNode != null) {
+            clusterNode.sendPlayerData(data);
+        } else if (clusterHub != null) {
+            clusterHub.broadcastPlayerData(data, null);
+        }
+        storageLane.execute(playerDataStorage::saveAllPlayers);
+        return muted;
     }
 
-    private void updatePlayerCount() {
+    static String worldNameOf(PlayerRef player) {
+        UUID worldUuid = player.getWorldUuid();
+        if (worldUuid == null) {
+            return null;
+        }
+        World world = Universe.get().getWorld(worldUuid);
+        return world != null ? world.getName() : null;
+    }
+
+    void updatePlayerCount() {
+        if (clusterNode != null) {
+            clusterNode.sendPlayerCount(onlineRoster.size());
+            return;
+        }
         if (discordBot != null && discordBot.isConnected()) {
-            int online = Universe.get().getPlayerCount();
-            discordBot.updatePlayerCount(online, 0);
+            discordBot.updatePlayerCount(getTotalOnline(), 0);
         }
     }
 
+    /** Players on this server plus, on a hub, those reported by its nodes. */
+    public int getTotalOnline() {
+        return onlineRoster.size() + getRemotePlayerCount();
+    }
+
+    public int getRemotePlayerCount() {
+        return clusterHub != null ? clusterHub.getRemotePlayerCount() : 0;
+    }
+
+    public ConfigManager getConfigManager() {
+        return configManager;
+    }
+
     public static DiscordIntegration getInstance() {
         return instance;
     }
@@ -240,13 +642,89 @@ public class DiscordIntegration extends JavaPlugin {
         return linkCodeManager;
     }
     
+    public ProfileService getProfileService() {
+        return profileService;
+    }
+    
+    public OnlineRoster getOnlineRoster() {
+        return onlineRoster;
+    }
+    
+    public PluginExecutor getExecutor() {
+        return executor;
+    }
+    
+    public ChatArchive getChatArchive() {
+        return chatArchive;
+    }
+    
+    public ActivityStats getActivityStats() {
+        return activityStats;
+    }
+    
+    public RoleSyncEngine getRoleSync() {
+        return roleSync;
+    }
+    
+    public BackupManager getBackupManager() {
+        return backupManager;
+    }
+    
+    public ClusterNode getClusterNode() {
+        return clusterNode;
+    }
+    
+    public LinkCodeManager.LinkOutcome linkAccount(String code, UUID playerUuid, String playerUsername) {
+        FlightEvents.LinkCode event = new FlightEvents.LinkCode();
+        event.begin();
+        LinkCodeManager.LinkOutcome outcome = verifyLink(code, playerUuid, playerUsername);
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = "verify";
+            event.result = outcome.result.name();
+            event.commit();
+        }
+        return outcome;
+    }
+
+    private LinkCodeManager.LinkOutcome verifyLink(String code, UUID playerUuid, String playerUsername) {
+        LinkCodeManager.LinkRequest request = linkCodeManager.verifyCode(code, playerUuid, playerUsername);
+        if (request == null) {
+            return new LinkCodeManager.LinkOutcome(LinkCodeManager.LinkResult.INVALID_CODE, null);
+        }
+
+        PlayerData playerData = playerDataStorage.getPlayerData(playerUuid);
+        if (playerData == null) {
+            return new LinkCodeManager.LinkOutcome(LinkCodeManager.LinkResult.NO_PLAYER_DATA, request);
+        }
+
+        if (playerData.getDiscordId() != null) {
+            return new LinkCodeManager.LinkOutcome(LinkCodeManager.LinkResult.ALREADY_LINKED, request);
+        }
+
+        playerData.setDiscordId(request.discordId);
+        playerDataStorage.updatePlayerData(playerUuid, playerData);
+        profileService.invalidate(playerUuid);
+        storageLane.execute(playerDataStorage::saveAllPlayers);
+
+        if (clusterHub != null) {
+            clusterHub.broadcastPlayerData(playerData, null);
+        }
+
+        checkPlaytimeRoles(playerData);
+        notifyDiscordLink(request.discordId, playerUsername, true);
+
+        System.out.println("[Discord Integration] " + playerUsername + " linked to Discord: " + request.discordUsername);
+        return new LinkCodeManager.LinkOutcome(LinkCodeManager.LinkResult.LINKED, request);
+    }
+    
     public void notifyDiscordLink(String discordId, String minecraftUsername, boolean success) {
-        if (discordBot == null || !discordBot.isConnected()) return;
+        if (discordBot == null) return;
         
         if (success) {
-            discordBot.sendMessage("Successfully linked to **" + minecraftUsername + "**!");
+            discordBot.relay("Successfully linked to **" + DiscordEscaper.escape(minecraftUsername, configManager.get().getEscaping()) + "**!", OutboundSpool.Category.SYSTEM);
         } else {
-            discordBot.sendMessage("Failed to link account.");
+            discordBot.relay("Failed to link account.", OutboundSpool.Category.SYSTEM);
         }
     }
 }
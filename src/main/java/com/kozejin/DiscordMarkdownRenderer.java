@@ -0,0 +1,461 @@
+package com.kozejin;
+
+import com.hypixel.hytale.server.core.Message;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Turns Discord markdown into styled Message spans in one forward pass.
+ *
+ * Style markers are toggles. An opener is emitted as a hidden marker segment,
+ * so an opener that is never closed can be revealed at the end of the pass
+ * instead of re-scanning the input. Work is linear in the message length no
+ * matter how the markers are arranged.
+ *
+ * In-game messages have no underline or strikethrough, so __ and ~~ are kept
+ * as written rather than silently dropped.
+ */
+public class DiscordMarkdownRenderer {
+    private static final int BOLD = 1;
+    private static final int ITALIC = 1 << 1;
+    private static final int ITALIC_UNDERSCORE = 1 << 2;
+    private static final int SPOILER = 1 << 3;
+    private static final int CODE = 1 << 4;
+    private static final int MARKER = 1 << 5;
+    private static final int STYLE_COUNT = 5;
+
+    private static final int CACHE_SIZE = 256;
+    private static final int MAX_CACHED_LENGTH = 2000;
+    private static final int MAX_URL_LENGTH = 512;
+    private static final int MAX_EMOJI_NAME_LENGTH = 32;
+    private static final int MAX_EMOJI_ID_LENGTH = 20;
+    private static final Color LINK_COLOR = new Color(0x00AFF4);
+    private static final Color CODE_COLOR = new Color(0xC0C0C0);
+    private static final Color SPOILER_COLOR = new Color(0x808080);
+
+    private final Map<String, Message> cache = new LinkedHashMap<String, Message>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Message> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    public Message renderTemplate(MessageTemplate template, String username, String content) {
+        int slots = template.getSlotCount();
+        List<Message> parts = new ArrayList<>(slots * 2 + 1);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i <= slots; i++) {
+            text.append(template.getLiteral(i));
+            if (i == slots) {
+                break;
+            }
+            int slot = template.getSlot(i);
+            if (slot == MessageTemplate.MESSAGE) {
+                if (text.length() > 0) {
+                    parts.add(Message.raw(text.toString()));
+                    text.setLength(0);
+                }
+                parts.add(render(content));
+            } else if (slot == MessageTemplate.USER) {
+                // Usernames stay literal so names like some_user_name are not styled
+                text.append(username);
+            }
+        }
+        if (text.length() > 0) {
+            parts.add(Message.raw(text.toString()));
+        }
+
+        if (parts.size() == 1) {
+            return parts.get(0);
+        }
+        return Message.join(parts.toArray(new Message[0]));
+    }
+
+    public Message render(String content) {
+        if (content.length() > MAX_CACHED_LENGTH) {
+            return new Parser(content).parse();
+        }
+
+        synchronized (cache) {
+            Message cached = cache.get(content);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        Message rendered = new Parser(content).parse();
+        synchronized (cache) {
+            cache.put(content, rendered);
+        }
+        return rendered;
+    }
+
+    private static final class Parser {
+        private final String src;
+        private final int length;
+        private final StringBuilder out;
+        private int[] starts = new int[16];
+        private int[] segmentFlags = new int[16];
+        private int[] segmentLinks = new int[16];
+        private int count;
+        private final List<String> links = new ArrayList<>(2);
+        private final int[] openers = new int[STYLE_COUNT];
+        private int flags;
+        private int linkOpener = -1;
+        private int codeMarkerLength;
+
+        Parser(String src) {
+            this.src = src;
+            this.length = src.length();
+            this.out = new StringBuilder(length);
+            Arrays.fill(openers, -1);
+            segment(0);
+        }
+
+        Message parse() {
+            int i = 0;
+            while (i < length) {
+                char c = src.charAt(i);
+
+                if ((flags & CODE) != 0) {
+                    int run = run(i, '`');
+                    if (run == codeMarkerLength) {
+                        toggle(CODE, null);
+                    } else {
+                        out.append(src, i, i + Math.max(run, 1));
+                    }
+                    i += Math.max(run, 1);
+                    continue;
+                }
+
+                switch (c) {
+                    case '\\':
+                        if (i + 1 < length && isMarkdownChar(src.charAt(i + 1))) {
+                            out.append(src.charAt(i + 1));
+                            i += 2;
+                        } else {
+                            out.append(c);
+                            i++;
+                        }
+                        break;
+                    case '`': {
+                        int run = Math.min(run(i, '`'), 3);
+                        codeMarkerLength = run;
+                        toggle(CODE, src.substring(i, i + run));
+                        i += run;
+                        break;
+                    }
+                    case '*':
+                        if (peek(i + 1) == '*') {
+                            toggle(BOLD, "**");
+                            i += 2;
+                        } else if ((flags & ITALIC) != 0 || !isWhitespace(peek(i + 1))) {
+                            toggle(ITALIC, "*");
+                            i++;
+                        } else {
+                            out.append(c);
+                            i++;
+                        }
+                        break;
+                    case '_':
+                        if (peek(i + 1) == '_') {
+                            out.append("__");
+                            i += 2;
+                        } else if ((flags & ITALIC_UNDERSCORE) != 0
+                                ? !Character.isLetterOrDigit(peek(i + 1))
+                                : !Character.isLetterOrDigit(peek(i - 1)) && !isWhitespace(peek(i + 1))) {
+                            // Underscore italics only apply at word boundaries, so snake_case stays literal
+                            toggle(ITALIC_UNDERSCORE, "_");
+                            i++;
+                        } else {
+                            out.append(c);
+                            i++;
+                        }
+                        break;
+                    case '|':
+                        if (peek(i + 1) == '|') {
+                            toggle(SPOILER, "||");
+                            i += 2;
+                        } else {
+                            out.append(c);
+                            i++;
+                        }
+                        break;
+                    case '[':
+                        if (linkOpener < 0) {
+                            segment(flags | MARKER);
+                            out.append(c);
+                            linkOpener = count - 1;
+                            segment(flags);
+                        } else {
+                            out.append(c);
+                        }
+                        i++;
+                        break;
+                    case ']':
+                        i = closeLink(i);
+                        break;
+                    case '<':
+                        i = emoji(i);
+                        break;
+                    case 'h':
+                        i = bareUrl(i);
+                        break;
+                    default:
+                        out.append(c);
+                        i++;
+                        break;
+                }
+            }
+
+            finish();
+            return build();
+        }
+
+        private void toggle(int bit, String marker) {
+            int style = Integer.numberOfTrailingZeros(bit);
+            if ((flags & bit) != 0) {
+                flags &= ~bit;
+                openers[style] = -1;
+                segment(flags);
+            } else {
+                segment(flags | MARKER);
+                out.append(marker);
+                openers[style] = count - 1;
+                flags |= bit;
+                segment(flags);
+            }
+        }
+
+        private int closeLink(int i) {
+            if (linkOpener < 0 || peek(i + 1) != '(') {
+                out.append(']');
+                return i + 1;
+            }
+
+            int urlStart = i + 2;
+            int j = urlStart;
+            if (src.startsWith("https://", j) || src.startsWith("http://", j)) {
+                int limit = Math.min(length, urlStart + MAX_URL_LENGTH);
+                while (j < limit) {
+                    char c = src.charAt(j);
+                    if (c == ')' || isWhitespace(c)) {
+                        break;
+                    }
+                    j++;
+                }
+                if (j < length && src.charAt(j) == ')') {
+                    int link = links.size();
+                    links.add(src.substring(urlStart, j));
+                    segment(flags);
+                    for (int s = linkOpener + 1; s < count; s++) {
+                        segmentLinks[s] = link;
+                    }
+                    linkOpener = -1;
+                    segment(flags);
+                    return j + 1;
+                }
+            }
+
+            // Not a masked link after all: show the bracket that opened it
+            segmentFlags[linkOpener] &= ~MARKER;
+            linkOpener = -1;
+            out.append(']');
+            return i + 1;
+        }
+
+        private int emoji(int i) {
+            // <:name:id> and <a:name:id>, rendered as :name:
+            int j = i + 1;
+            if (peek(j) == 'a') {
+                j++;
+            }
+            if (peek(j) != ':') {
+                out.append('<');
+                return i + 1;
+            }
+            int nameStart = ++j;
+            while (j < length && j - nameStart < MAX_EMOJI_NAME_LENGTH && isEmojiNameChar(src.charAt(j))) {
+                j++;
+            }
+            int nameEnd = j;
+            if (nameEnd == nameStart || peek(j) != ':') {
+                out.append('<');
+                return i + 1;
+            }
+            int idStart = ++j;
+            while (j < length && j - idStart < MAX_EMOJI_ID_LENGTH && Character.isDigit(src.charAt(j))) {
+                j++;
+            }
+            if (j == idStart || peek(j) != '>') {
+                out.append('<');
+                return i + 1;
+            }
+            out.append(':').append(src, nameStart, nameEnd).append(':');
+            return j + 1;
+        }
+
+        private int bareUrl(int i) {
+            if (linkOpener >= 0 || Character.isLetterOrDigit(peek(i - 1))
+                    || !(src.startsWith("https://", i) || src.startsWith("http://", i))) {
+                out.append('h');
+                return i + 1;
+            }
+
+            int j = i;
+            int limit = Math.min(length, i + MAX_URL_LENGTH);
+            while (j < limit && !isWhitespace(src.charAt(j)) && src.charAt(j) != '>') {
+                j++;
+            }
+            while (j > i && isTrailingPunctuation(src.charAt(j - 1))) {
+                j--;
+            }
+
+            int link = links.size();
+            links.add(src.substring(i, j));
+            segment(flags);
+            out.append(src, i, j);
+            segmentLinks[count - 1] = link;
+            segment(flags);
+            return j;
+        }
+
+        private void finish() {
+            for (int style = 0; style < STYLE_COUNT; style++) {
+                int opener = openers[style];
+                if (opener < 0) {
+                    continue;
+                }
+                int bit = 1 << style;
+                segmentFlags[opener] &= ~MARKER;
+                for (int s = opener + 1; s < count; s++) {
+                    segmentFlags[s] &= ~bit;
+                }
+            }
+            if (linkOpener >= 0) {
+                segmentFlags[linkOpener] &= ~MARKER;
+            }
+        }
+
+        private Message build() {
+            List<Message> spans = new ArrayList<>();
+            StringBuilder text = new StringBuilder();
+            int spanFlags = 0;
+            int spanLink = -1;
+
+            for (int s = 0; s < count; s++) {
+                int f = segmentFlags[s];
+                int start = starts[s];
+                int end = s + 1 < count ? starts[s + 1] : out.length();
+                if ((f & MARKER) != 0) {
+                    // A marker outside any spoiler may open the next one, so adjacent spoilers keep a label each
+                    if ((f & SPOILER) == 0 && (spanFlags & SPOILER) != 0 && text.length() > 0) {
+                        spans.add(span(text, spanFlags, spanLink));
+                        text.setLength(0);
+                    }
+                    continue;
+                }
+                if (start == end) {
+                    continue;
+                }
+                int link = segmentLinks[s];
+                if ((f & SPOILER) != 0) {
+                    // Styles inside a spoiler are hidden with it; one label covers the whole spoiler
+                    f = SPOILER;
+                    link = -1;
+                }
+                if (text.length() > 0 && (f != spanFlags || link != spanLink)) {
+                    spans.add(span(text, spanFlags, spanLink));
+                    text.setLength(0);
+                }
+                spanFlags = f;
+                spanLink = link;
+                text.append(out, start, end);
+            }
+            if (text.length() > 0) {
+                spans.add(span(text, spanFlags, spanLink));
+            }
+
+            if (spans.isEmpty()) {
+                return Message.raw("");
+            }
+            if (spans.size() == 1) {
+                return spans.get(0);
+            }
+            return Message.join(spans.toArray(new Message[0]));
+        }
+
+        private Message span(StringBuilder text, int f, int link) {
+            if ((f & SPOILER) != 0) {
+                return Message.raw("[spoiler]").color(SPOILER_COLOR).italic(true);
+            }
+            Message message = Message.raw(text.toString());
+            if ((f & BOLD) != 0) {
+                message.bold(true);
+            }
+            if ((f & (ITALIC | ITALIC_UNDERSCORE)) != 0) {
+                message.italic(true);
+            }
+            if ((f & CODE) != 0) {
+                message.monospace(true).color(CODE_COLOR);
+            }
+            if (link >= 0) {
+                message.link(links.get(link)).color(LINK_COLOR);
+            }
+            return message;
+        }
+
+        private void segment(int f) {
+            if (count > 0 && starts[count - 1] == out.length()) {
+                // Previous segment never received text, reuse it
+                segmentFlags[count - 1] = f;
+                segmentLinks[count - 1] = -1;
+                return;
+            }
+            if (count == starts.length) {
+                int capacity = count * 2;
+                starts = Arrays.copyOf(starts, capacity);
+                segmentFlags = Arrays.copyOf(segmentFlags, capacity);
+                segmentLinks = Arrays.copyOf(segmentLinks, capacity);
+            }
+            starts[count] = out.length();
+            segmentFlags[count] = f;
+            segmentLinks[count] = -1;
+            count++;
+        }
+
+        private int run(int i, char c) {
+            int j = i;
+            while (j < length && src.charAt(j) == c) {
+                j++;
+            }
+            return j - i;
+        }
+
+        private char peek(int i) {
+            return i >= 0 && i < length ? src.charAt(i) : ' ';
+        }
+    }
+
+    private static boolean isWhitespace(char c) {
+        return Character.isWhitespace(c);
+    }
+
+    private static boolean isMarkdownChar(char c) {
+        return c == '*' || c == '_' || c == '~' || c == '|' || c == '`' || c == '\\'
+            || c == '[' || c == ']' || c == '(' || c == ')' || c == '<' || c == '>' || c == '#' || c == '-';
+    }
+
+    private static boolean isEmojiNameChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    private static boolean isTrailingPunctuation(char c) {
+        return c == '.' || c == ',' || c == '!' || c == '?' || c == ')' || c == ':' || c == ';';
+    }
+}
@@ -0,0 +1,287 @@
+package com.kozejin;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Carries player events from game threads to the plugin's consumers. Events
+ * are written into preallocated slots of a ring, and every sink reads every
+ * event on its own thread, in order, taking whatever has been published since
+ * its last pass as one batch. Publishing claims a slot with one CAS and
+ * never waits: if the slowest sink is a whole ring behind, the event is
+ * dropped and counted instead. Events that must not be lost go through
+ * {@link #publishOrQueue}, which falls back to a queue per sink and keeps
+ * them in order with the ring.
+ */
+public class EventPipeline {
+    public static final int JOIN = 1;
+    public static final int LEAVE = 2;
+    public static final int CHAT = 3;
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    /** One slot of the ring. Sinks must copy out what they keep; the slot is reused. */
+    public static final class Event {
+        private int type;
+        private UUID uuid;
+        private String username;
+        private String worldName;
+        private String message;
+        private long time;
+
+        public int getType() { return type; }
+        public UUID getUuid() { return uuid; }
+        public String getUsername() { return username; }
+        public String getWorldName() { return worldName; }
+        public String getMessage() { return message; }
+        public long getTime() { return time; }
+    }
+
+    public interface Sink {
+        void onEvent(Event event, boolean endOfBatch);
+    }
+
+    private final Event[] ring;
+    private final int mask;
+    // Sequence last written into each slot; a slot is readable once it holds the sequence being read
+    private final AtomicLongArray published;
+    private final AtomicLong claimed = new AtomicLong(-1);
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong queued = new AtomicLong();
+    // Keeps overflow marks in the same order in every sink's queue
+    private final Object overflowLock = new Object();
+    private final List<SinkThread> sinks = new ArrayList<>();
+    private volatile SinkThread[] sinkArray = new SinkThread[0];
+    // Lowest sink position seen by a producer; refreshed only when the ring looks full
+    private volatile long gate = -1;
+
+    public EventPipeline(int size) {
+        if (Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("Ring size must be a power of two: " + size);
+        }
+        ring = new Event[size];
+        for (int i = 0; i < size; i++) {
+            ring[i] = new Event();
+        }
+        mask = size - 1;
+        published = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            published.set(i, -1);
+        }
+    }
+
+    /** Adds a sink; all sinks must be added before {@link #start()}. */
+    public void addSink(String name, Sink sink) {
+        sinks.add(new SinkThread(name, sink));
+    }
+
+    public void start() {
+        sinkArray = sinks.toArray(new SinkThread[0]);
+        for (SinkThread sink : sinkArray) {
+            sink.start();
+        }
+    }
+
+    /** Publishes through the ring, dropping the event if the ring is full. */
+    public boolean publish(int type, UUID uuid, String username, String worldName, String message) {
+        if (tryPublish(type, uuid, username, worldName, message)) {
+            return true;
+        }
+        long count = dropped.incrementAndGet();
+        if (count == 1 || count % 1000 == 0) {
+            System.out.println("[Discord Integration] Event pipeline full, " + count + " player events dropped so far");
+        }
+        return false;
+    }
+
+    /**
+     * Publishes through the ring, or if it is full, queues the event for each
+     * sink behind everything already claimed. For joins and leaves, which
+     * are rare and lose playtime if dropped.
+     */
+    public void publishOrQueue(int type, UUID uuid, String username, String worldName, String message) {
+        if (tryPublish(type, uuid, username, worldName, message)) {
+            return;
+        }
+        Event event = new Event();
+        fill(event, type, uuid, username, worldName, message);
+        synchronized (overflowLock) {
+            // Later ring events get higher sequences, so sinks deliver this one between the two
+            long mark = claimed.get();
+            for (SinkThread sink : sinkArray) {
+                sink.overflow.add(new Queued(mark, event));
+            }
+        }
+        long count = queued.incrementAndGet();
+        if (count == 1 || count % 100 == 0) {
+            System.out.println("[Discord Integration] Event pipeline full, " + count + " join and leave events queued beside it so far");
+        }
+        wakeSinks();
+    }
+
+    private boolean tryPublish(int type, UUID uuid, String username, String worldName, String message) {
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (sequence + 1 - ring.length > gate && sequence + 1 - ring.length > (gate = minimumSinkSequence())) {
+                return false;
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+        sequence++;
+
+        fill(ring[(int) sequence & mask], type, uuid, username, worldName, message);
+        published.set((int) sequence & mask, sequence);
+        wakeSinks();
+        return true;
+    }
+
+    private static void fill(Event event, int type, UUID uuid, String username, String worldName, String message) {
+        event.type = type;
+        event.uuid = uuid;
+        event.username = username;
+        event.worldName = worldName;
+        event.message = message;
+        event.time = System.currentTimeMillis();
+    }
+
+    private void wakeSinks() {
+        for (SinkThread sink : sinkArray) {
+            if (sink.sleeping) {
+                LockSupport.unpark(sink);
+            }
+        }
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /** Waits until every sink has handled everything published so far, or the timeout passes. */
+    public boolean awaitDrained(long timeoutMs) {
+        long target = claimed.get();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, timeoutMs));
+        while (minimumSinkSequence() < target || overflowPending()) {
+            if (System.nanoTime() - deadline > 0) {
+                return false;
+            }
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        return true;
+    }
+
+    public void stop() {
+        for (SinkThread sink : sinkArray) {
+            sink.running = false;
+            LockSupport.unpark(sink);
+        }
+        for (SinkThread sink : sinkArray) {
+            try {
+                sink.join(TimeUnit.SECONDS.toMillis(1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private boolean overflowPending() {
+        for (SinkThread sink : sinkArray) {
+            if (!sink.overflow.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private long minimumSinkSequence() {
+        long minimum = claimed.get();
+        for (SinkThread sink : sinkArray) {
+            minimum = Math.min(minimum, sink.sequence);
+        }
+        return minimum;
+    }
+
+    private static final class Queued {
+        final long mark;
+        final Event event;
+
+        Queued(long mark, Event event) {
+            this.mark = mark;
+            this.event = event;
+        }
+    }
+
+    private final class SinkThread extends Thread {
+        private final Sink sink;
+        // Events that found the ring full, each delivered once the ring events claimed before it are done
+        private final Queue<Queued> overflow = new ConcurrentLinkedQueue<>();
+        private volatile long sequence = -1;
+        private volatile boolean sleeping;
+        private volatile boolean running = true;
+
+        SinkThread(String name, Sink sink) {
+            super("DiscordIntegration-Sink-" + name);
+            this.sink = sink;
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            long next = sequence + 1;
+            while (running) {
+                long available = next - 1;
+                while (published.get((int) (available + 1) & mask) == available + 1) {
+                    available++;
+                }
+                if (available < next) {
+                    if (overflowDue(available)) {
+                        deliverOverflow(available, true);
+                        continue;
+                    }
+                    sleeping = true;
+                    // Re-check after advertising, so a publish racing the flag is never missed
+                    if (published.get((int) next & mask) != next && !overflowDue(available) && running) {
+                        LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                    }
+                    sleeping = false;
+                    continue;
+                }
+                for (long s = next; s <= available; s++) {
+                    deliverOverflow(s - 1, false);
+                    deliver(ring[(int) s & mask], s == available && !overflowDue(available));
+                }
+                deliverOverflow(available, true);
+                sequence = available;
+                next = available + 1;
+            }
+        }
+
+        private boolean overflowDue(long upTo) {
+            Queued head = overflow.peek();
+            return head != null && head.mark <= upTo;
+        }
+
+        /** Delivers queued events whose mark is at or before {@code upTo}; the last may close the batch. */
+        private void deliverOverflow(long upTo, boolean closesBatch) {
+            while (overflowDue(upTo)) {
+                Queued queued = overflow.poll();
+                deliver(queued.event, closesBatch && !overflowDue(upTo));
+            }
+        }
+
+        private void deliver(Event event, boolean endOfBatch) {
+            try {
+                sink.onEvent(event, endOfBatch);
+            } catch (RuntimeException e) {
+                System.out.println("[Discord Integration] " + getName() + " failed on an event: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.kozejin;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+import jdk.jfr.Timestamp;
+
+/**
+ * JDK Flight Recorder events for the relay and persistence paths, enabled by
+ * the discord-integration.jfc profile. Callers set fields only after
+ * {@code shouldCommit()}, and take extra clock readings only when
+ * {@code isEnabled()}, so a disabled event is just an allocation the JIT
+ * removes. Events handed to a callback use a static {@code start} that
+ * returns null while disabled.
+ */
+final class FlightEvents {
+    private FlightEvents() {
+    }
+
+    @Name("com.kozejin.ChatRelay")
+    @Label("Chat Relay")
+    @Category({"Discord Integration", "Relay"})
+    @Description("One in-game chat line on its way to Discord; the duration covers limiting, formatting and queueing")
+    @StackTrace(false)
+    static final class ChatRelay extends Event {
+        @Label("Player")
+        String player;
+
+        @Label("World")
+        String world;
+
+        @Label("Length")
+        int length;
+
+        @Label("Verdict")
+        @Description("What the relay limiter decided")
+        String verdict;
+
+        @Label("Routes")
+        int routes;
+
+        @Label("Published")
+        @Description("When the game thread (or for cluster chat, the hub) handed the line off")
+        @Timestamp(Timestamp.MILLISECONDS_SINCE_EPOCH)
+        long published;
+
+        @Label("Pipeline Delay")
+        @Description("From the hand-off until the relay thread picked the line up")
+        @Timespan(Timespan.MILLISECONDS)
+        long pipelineDelay;
+
+        @Label("Format Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long formatTime;
+
+        @Label("Queue Time")
+        @Description("Time spent handing the formatted lines to JDA or the outage spool")
+        @Timespan(Timespan.NANOSECONDS)
+        long queueTime;
+    }
+
+    @Name("com.kozejin.DiscordSend")
+    @Label("Discord Send")
+    @Category({"Discord Integration", "Relay"})
+    @Description("A message from being queued in JDA until Discord answered, including rate limit waits")
+    @StackTrace(false)
+    static final class DiscordSend extends Event {
+        @Label("Channel")
+        long channelId;
+
+        @Label("Length")
+        int length;
+
+        @Label("Pending Sends")
+        @Description("Sends already waiting on Discord when this one was queued")
+        int pending;
+
+        @Label("Success")
+        boolean success;
+
+        /** A begun event, or null while the event is disabled. */
+        static DiscordSend start(long channelId, int length, int pending) {
+            if (!new DiscordSend().isEnabled()) {
+                return null;
+            }
+            DiscordSend event = new DiscordSend();
+            event.channelId = channelId;
+            event.length = length;
+            event.pending = pending;
+            event.begin();
+            return event;
+        }
+
+        void finish(boolean success) {
+            end();
+            if (shouldCommit()) {
+                this.success = success;
+                commit();
+            }
+        }
+    }
+
+    @Name("com.kozejin.Broadcast")
+    @Label("Broadcast")
+    @Category({"Discord Integration", "Relay"})
+    @Description("Fan-out of one Discord message to the in-game recipients, up to handing each world its batch")
+    @StackTrace(false)
+    static final class Broadcast extends Event {
+        @Label("Worlds")
+        int worlds;
+
+        @Label("Recipients")
+        int recipients;
+    }
+
+    @Name("com.kozejin.BroadcastDelivery")
+    @Label("Broadcast Delivery")
+    @Category({"Discord Integration", "Relay"})
+    @Description("Delivery of a broadcast to the players of one world, on that world's thread")
+    @StackTrace(false)
+    static final class BroadcastDelivery extends Event {
+        @Label("World")
+        String world;
+
+        @Label("Players")
+        int players;
+
+        @Label("Schedule Delay")
+        @Description("From the fan-out until the world thread ran the delivery")
+        @Timespan(Timespan.NANOSECONDS)
+        long scheduleDelay;
+    }
+
+    @Name("com.kozejin.LinkCode")
+    @Label("Link Code")
+    @Category({"Discord Integration", "Linking"})
+    @Description("Generation of a link code on Discord or its verification in game")
+    @StackTrace(false)
+    static final class LinkCode extends Event {
+        @Label("Operation")
+        String operation;
+
+        @Label("Result")
+        String result;
+    }
+
+    @Name("com.kozejin.StorageLoad")
+    @Label("Storage Load")
+    @Category({"Discord Integration", "Storage"})
+    @StackTrace(false)
+    static final class StorageLoad extends Event {
+        @Label("Backend")
+        String backend;
+
+        @Label("Records")
+        int records;
+
+        @Label("Bytes Read")
+        @DataAmount
+        long bytes;
+    }
+
+    @Name("com.kozejin.StorageSave")
+    @Label("Storage Save")
+    @Category({"Discord Integration", "Storage"})
+    @Description("One save of player records; for SQLite, one write transaction")
+    @StackTrace(false)
+    static final class StorageSave extends Event {
+        @Label("Backend")
+        String backend;
+
+        @Label("Records")
+        int records;
+
+        @Label("Bytes Written")
+        @Description("For SQLite, the bytes of column data bound")
+        @DataAmount
+        long bytes;
+    }
+}
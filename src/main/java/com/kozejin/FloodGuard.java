@@ -0,0 +1,174 @@
+package com.kozejin;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+public class FloodGuard {
+    private static final long SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    private final Map<Long, AuthorState> authors = new ConcurrentHashMap<>();
+    private double globalTokens;
+    private long globalRefillTime;
+    private volatile long lastSweep;
+
+    public enum Verdict {
+        ALLOWED,
+        RATE_LIMITED,
+        REPEATED,
+        COOLING_DOWN,
+        GLOBAL_LIMIT
+    }
+
+    public FloodGuard(DiscordConfig.FloodProtection settings) {
+        this.globalTokens = settings.getGlobalBurst();
+        this.globalRefillTime = System.nanoTime();
+        this.lastSweep = globalRefillTime;
+    }
+
+    public Verdict check(DiscordConfig.FloodProtection settings, long authorId, String content) {
+        if (!settings.isEnabled()) {
+            return Verdict.ALLOWED;
+        }
+
+        long now = System.nanoTime();
+        if (now - lastSweep > SWEEP_INTERVAL_NANOS) {
+            evictIdle(settings, now);
+        }
+
+        AuthorState state = authors.get(authorId);
+        if (state == null) {
+            if (authors.size() >= settings.getMaxTrackedAuthors()) {
+                evictIdle(settings, now);
+                if (authors.size() >= settings.getMaxTrackedAuthors()) {
+                    // Still full after eviction: a raid is in progress, refuse untracked authors
+                    return Verdict.GLOBAL_LIMIT;
+                }
+            }
+            state = authors.computeIfAbsent(authorId, id -> new AuthorState(settings, now));
+        }
+
+        Verdict verdict;
+        synchronized (state) {
+            verdict = state.check(settings, content, now);
+        }
+        if (verdict != Verdict.ALLOWED) {
+            return verdict;
+        }
+        return takeGlobalToken(settings, now) ? Verdict.ALLOWED : Verdict.GLOBAL_LIMIT;
+    }
+
+    public int getTrackedAuthors() {
+        return authors.size();
+    }
+
+    private synchronized boolean takeGlobalToken(DiscordConfig.FloodProtection settings, long now) {
+        double elapsed = (now - globalRefillTime) / 1_000_000_000.0;
+        globalRefillTime = now;
+        globalTokens = Math.min(settings.getGlobalBurst(), globalTokens + elapsed * settings.getGlobalPerSecond());
+        if (globalTokens < 1.0) {
+            return false;
+        }
+        globalTokens -= 1.0;
+        return true;
+    }
+
+    private void evictIdle(DiscordConfig.FloodProtection settings, long now) {
+        lastSweep = now;
+        long idleNanos = TimeUnit.SECONDS.toNanos(settings.getIdleEvictSeconds());
+        Iterator<AuthorState> it = authors.values().iterator();
+        while (it.hasNext()) {
+            AuthorState state = it.next();
+            if (state.isIdle(now, idleNanos)) {
+                it.remove();
+            }
+        }
+    }
+
+    static int contentHash(String content) {
+        // Case and whitespace-insensitive so "spam", "SPAM" and "s p a m" collide
+        int h = 0;
+        for (int i = 0, n = content.length(); i < n; i++) {
+            char c = content.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                h = 31 * h + Character.toLowerCase(c);
+            }
+        }
+        return h;
+    }
+
+    private static final class AuthorState {
+        private double tokens;
+        private long refillTime;
+        private long lastSeen;
+        private long cooldownUntil;
+        private long lastStrike;
+        private int strikes;
+        private final int[] recentHashes;
+        private int recentCount;
+        private int recentIndex;
+
+        AuthorState(DiscordConfig.FloodProtection settings, long now) {
+            this.tokens = settings.getBurst();
+            this.refillTime = now;
+            this.lastSeen = now;
+            this.recentHashes = new int[Math.max(1, settings.getRepeatWindow())];
+        }
+
+        Verdict check(DiscordConfig.FloodProtection settings, String content, long now) {
+            lastSeen = now;
+
+            if (strikes > 0 && now - lastStrike > TimeUnit.SECONDS.toNanos(settings.getStrikeDecaySeconds())) {
+                strikes = 0;
+            }
+            if (now - cooldownUntil < 0) {
+                return Verdict.COOLING_DOWN;
+            }
+
+            double elapsed = (now - refillTime) / 1_000_000_000.0;
+            refillTime = now;
+            tokens = Math.min(settings.getBurst(), tokens + elapsed * settings.getRefillPerSecond());
+
+            // Attachment- or embed-only messages have no text to compare; the rate limit still applies
+            if (!content.isBlank() && recordRepeat(contentHash(content)) >= settings.getRepeatThreshold()) {
+                strike(settings, now);
+                return Verdict.REPEATED;
+            }
+            if (tokens < 1.0) {
+                strike(settings, now);
+                return Verdict.RATE_LIMITED;
+            }
+            tokens -= 1.0;
+            return Verdict.ALLOWED;
+        }
+
+        /** Remembers {@code hash} and returns how many of the recent messages, this one included, share it. */
+        private int recordRepeat(int hash) {
+            int repeats = 1;
+            for (int i = 0; i < recentCount; i++) {
+                if (recentHashes[i] == hash) {
+                    repeats++;
+                }
+            }
+            recentHashes[recentIndex] = hash;
+            recentIndex = (recentIndex + 1) % recentHashes.length;
+            if (recentCount < recentHashes.length) {
+                recentCount++;
+            }
+            return repeats;
+        }
+
+        private void strike(DiscordConfig.FloodProtection settings, long now) {
+            strikes++;
+            lastStrike = now;
+            long cooldownSeconds = Math.min(settings.getMaxCooldownSeconds(),
+                (long) settings.getBaseCooldownSeconds() << Math.min(strikes - 1, 20));
+            cooldownUntil = now + TimeUnit.SECONDS.toNanos(cooldownSeconds);
+        }
+
+        synchronized boolean isIdle(long now, long idleNanos) {
+            return now - lastSeen > idleNanos && now - cooldownUntil > 0;
+        }
+    }
+}
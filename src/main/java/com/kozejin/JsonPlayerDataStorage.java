@@ -0,0 +1,499 @@
+package com.kozejin;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Player records keyed by UUID and kept in players.json. The file is
+ * streamed in on a background thread, inserting each record as it is parsed;
+ * until that finishes, lookups for a specific player fetch that one record
+ * straight from the file so joins never wait for the full load. A player not
+ * in the file is scanned for once, not on every lookup.
+ *
+ * <p>Records at rest live in a {@link CompactPlayerTable}. A {@link PlayerData}
+ * is only built when a record is asked for, and stays live in
+ * {@code playerDataCache} until it has no open session and has gone a whole
+ * save without changing, at which point it is folded back into its row.
+ */
+public class JsonPlayerDataStorage implements PlayerDataStorage {
+    private static final int WALK_CHUNK = 4096;
+
+    private final File dataFolder;
+    private final File playerDataFile;
+    private final File partialFile;
+    private final Gson gson;
+    // Live records; everything that touches the table, or moves records between it and this map, holds the table's lock
+    private final Map<UUID, PlayerData> playerDataCache;
+    private final CompactPlayerTable table = new CompactPlayerTable();
+    private final Map<UUID, Long> idleVersions = new ConcurrentHashMap<>();
+    // Players a fetch-ahead scan did not find; only used until the load finishes
+    private final Set<UUID> fetchMisses = ConcurrentHashMap.newKeySet();
+    private volatile Consumer<UUID> foldListener = uuid -> { };
+    private final CountDownLatch loaded = new CountDownLatch(1);
+    private volatile boolean ready;
+    // Set when players.json could not be read in full; saves then go to a side file instead
+    private volatile boolean loadFailed;
+    private int walkers;
+
+    public JsonPlayerDataStorage(File dataFolder) {
+        this.dataFolder = dataFolder;
+        this.playerDataFile = new File(dataFolder, "players.json");
+        this.partialFile = new File(dataFolder, "players.json.partial");
+        this.gson = new GsonBuilder().setPrettyPrinting().create();
+        this.playerDataCache = new ConcurrentHashMap<>();
+        
+        loadAllPlayers();
+    }
+
+    private void loadAllPlayers() {
+        if (!dataFolder.exists()) {
+            dataFolder.mkdirs();
+        }
+        
+        if (!playerDataFile.exists()) {
+            System.out.println("[Discord Integration] No player data file found, creating new one");
+            markReady();
+            try {
+                playerDataFile.createNewFile();
+                saveAllPlayers();
+                System.out.println("[Discord Integration] Created player data file at: " + playerDataFile.getAbsolutePath());
+            } catch (IOException e) {
+                System.err.println("[Discord Integration] Error creating player data file: " + e.getMessage());
+                e.printStackTrace();
+            }
+            return;
+        }
+
+        Thread loader = new Thread(this::streamAllPlayers, "DiscordIntegration-PlayerLoader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    private void streamAllPlayers() {
+        long start = System.currentTimeMillis();
+        FlightEvents.StorageLoad event = new FlightEvents.StorageLoad();
+        event.begin();
+        try {
+            // A record fetched ahead for a joining player may already be live; keep that one
+            int count = forEachRecord(playerDataFile, gson, this::insertLoaded);
+            event.end();
+            if (event.shouldCommit()) {
+                event.backend = "json";
+                event.records = count;
+                event.bytes = playerDataFile.length();
+                event.commit();
+            }
+            System.out.println("[Discord Integration] Loaded " + count + " player records in " + (System.currentTimeMillis() - start) + "ms");
+        } catch (EOFException e) {
+            System.out.println("[Discord Integration] Player data file is empty");
+        } catch (IOException | RuntimeException e) {
+            loadFailed = true;
+            System.err.println("[Discord Integration] FAILED TO LOAD players.json, only part of the player data is loaded: " + e.getMessage());
+            System.err.println("[Discord Integration] players.json will not be overwritten; saves go to " + partialFile.getName()
+                + " until it is repaired and the server restarted");
+            e.printStackTrace();
+        } finally {
+            markReady();
+        }
+    }
+
+    /** Scans players.json for a single record without materializing any other. */
+    private PlayerData fetchAhead(UUID uuid) {
+        PluginExecutor.checkBlocking("player data fetch");
+        String key = uuid.toString();
+        try (JsonReader reader = openReader(playerDataFile)) {
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                return null;
+            }
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (!key.equalsIgnoreCase(reader.nextName())) {
+                    reader.skipValue();
+                    continue;
+                }
+                PlayerData data = gson.fromJson(reader, PlayerData.class);
+                if (data == null) {
+                    return null;
+                }
+                return adopt(uuid, data);
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("[Discord Integration] Error fetching player data for " + key + ": " + e.getMessage());
+        }
+        return null;
+    }
+
+    /** Streams every record in a players.json file to {@code consumer}, returning how many were read. */
+    static int forEachRecord(File file, Gson gson, BiConsumer<UUID, PlayerData> consumer) throws IOException {
+        try (JsonReader reader = openReader(file)) {
+            return forEachRecord(reader, gson, consumer);
+        }
+    }
+
+    static int forEachRecord(JsonReader reader, Gson gson, BiConsumer<UUID, PlayerData> consumer) throws IOException {
+        int count = 0;
+        if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                UUID uuid = UUID.fromString(reader.nextName());
+                PlayerData data = gson.fromJson(reader, PlayerData.class);
+                if (data != null) {
+                    consumer.accept(uuid, data);
+                    count++;
+                }
+            }
+            reader.endObject();
+        }
+        return count;
+    }
+
+    private void insertLoaded(UUID uuid, PlayerData data) {
+        data.setUuid(uuid);
+        synchronized (table) {
+            if (playerDataCache.containsKey(uuid) || table.find(uuid) >= 0) {
+                return;
+            }
+            if (CompactPlayerTable.fits(data)) {
+                table.put(data);
+            } else {
+                // An open session from an unclean stop, or an ID the table cannot hold
+                playerDataCache.put(uuid, data);
+            }
+        }
+    }
+
+    /** Makes {@code data} the live record unless one exists already, returning whichever is live. */
+    private PlayerData adopt(UUID uuid, PlayerData data) {
+        synchronized (table) {
+            PlayerData existing = checkOut(uuid);
+            if (existing != null) {
+                return existing;
+            }
+            playerDataCache.put(uuid, data);
+            return data;
+        }
+    }
+
+    /** The live record for {@code uuid}, building it from its row if needed; caller holds the table lock. */
+    private PlayerData checkOut(UUID uuid) {
+        // Being asked for restarts the idle wait, so the record is not folded while the caller uses it
+        idleVersions.remove(uuid);
+        PlayerData data = playerDataCache.get(uuid);
+        if (data != null) {
+            return data;
+        }
+        int row = table.find(uuid);
+        if (row < 0) {
+            return null;
+        }
+        data = table.read(row);
+        table.setCheckedOut(row);
+        playerDataCache.put(uuid, data);
+        return data;
+    }
+
+    /**
+     * A cache hit handed to a caller. A record is only folded by a sweep that
+     * finds the mark an earlier sweep left, so an unmarked record is returned
+     * as is; a marked one has its mark cleared under the lock, where no sweep
+     * can be folding it.
+     */
+    private PlayerData touch(PlayerData data) {
+        if (!idleVersions.containsKey(data.getUuid())) {
+            return data;
+        }
+        synchronized (table) {
+            return checkOut(data.getUuid());
+        }
+    }
+
+    /**
+     * Folds live records back into the table once they have no open session
+     * and have been neither changed nor looked up since the previous sweep.
+     */
+    private int sweep() {
+        int folded = 0;
+        synchronized (table) {
+            if (walkers > 0) {
+                return 0;
+            }
+            for (PlayerData data : playerDataCache.values()) {
+                UUID uuid = data.getUuid();
+                Long seen = idleVersions.put(uuid, data.getVersion());
+                if (seen == null || seen != data.getVersion() || !CompactPlayerTable.fits(data)) {
+                    continue;
+                }
+                table.put(data);
+                playerDataCache.remove(uuid);
+                idleVersions.remove(uuid);
+                foldListener.accept(uuid);
+                folded++;
+            }
+        }
+        return folded;
+    }
+
+    @Override
+    public void setFoldListener(Consumer<UUID> listener) {
+        foldListener = listener;
+    }
+
+    private static JsonReader openReader(File file) throws IOException {
+        return new JsonReader(new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)));
+    }
+
+    private void markReady() {
+        ready = true;
+        fetchMisses.clear();
+        loaded.countDown();
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /** Blocks until the background load has finished; whole-store operations must not see a partial cache. */
+    public void awaitReady() {
+        if (ready) {
+            return;
+        }
+        PluginExecutor.checkBlocking("player data load wait");
+        try {
+            loaded.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void saveAllPlayers() {
+        // Writing before the load completes would truncate players.json to the partial cache
+        awaitReady();
+        PluginExecutor.checkBlocking("players.json save");
+        sweep();
+        FlightEvents.StorageSave event = new FlightEvents.StorageSave();
+        event.begin();
+        try {
+            if (!dataFolder.exists()) {
+                dataFolder.mkdirs();
+            }
+
+            // After a failed load the table is partial; replacing players.json with it would lose everyone not loaded
+            File target = loadFailed ? partialFile : playerDataFile;
+            if (loadFailed) {
+                System.err.println("[Discord Integration] players.json failed to load; saving to " + partialFile.getName() + " instead");
+            }
+
+            // Write beside the file and swap it in, so a failed write never costs the previous copy
+            File temp = new File(dataFolder, target.getName() + ".tmp");
+            FileOutputStream out = new FileOutputStream(temp);
+            int[] count = {0};
+            try (JsonWriter writer = new JsonWriter(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)))) {
+                writer.setIndent("  ");
+                writer.beginObject();
+                forEachPlayer(data -> {
+                    try {
+                        writer.name(data.getUuid().toString());
+                        gson.toJson(data, PlayerData.class, writer);
+                        count[0]++;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                writer.endObject();
+                writer.flush();
+                // On disk before the rename makes it the only copy
+                out.getFD().sync();
+                if (event.isEnabled()) {
+                    event.bytes = out.getChannel().position();
+                }
+            }
+            try {
+                Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            
+            event.end();
+            if (event.shouldCommit()) {
+                event.backend = "json";
+                event.records = count[0];
+                event.commit();
+            }
+            System.out.println("[Discord Integration] Saved " + count[0] + " player records" + (loadFailed ? " to " + target.getName() : ""));
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("[Discord Integration] Error saving player data: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public PlayerData getPlayerData(UUID uuid) {
+        PlayerData data = playerDataCache.get(uuid);
+        if (data != null) {
+            return touch(data);
+        }
+        synchronized (table) {
+            data = checkOut(uuid);
+        }
+        if (data == null && !ready && !fetchMisses.contains(uuid)) {
+            data = fetchAhead(uuid);
+            if (data == null && !ready) {
+                fetchMisses.add(uuid);
+            }
+        }
+        return data;
+    }
+
+    @Override
+    public PlayerData getOrCreatePlayerData(UUID uuid, String username) {
+        PlayerData data = getPlayerData(uuid);
+        if (data != null) {
+            return data;
+        }
+        synchronized (table) {
+            data = checkOut(uuid);
+            if (data == null) {
+                System.out.println("[Discord Integration] Creating new player data for " + username);
+                data = new PlayerData(uuid, username);
+                playerDataCache.put(uuid, data);
+            }
+            return data;
+        }
+    }
+
+    @Override
+    public void updatePlayerData(UUID uuid, PlayerData data) {
+        synchronized (table) {
+            int row = table.find(uuid);
+            if (row >= 0) {
+                table.setCheckedOut(row);
+            }
+            playerDataCache.put(uuid, data);
+        }
+    }
+
+    @Override
+    public PlayerData mergePlayerData(PlayerData incoming) {
+        PlayerData existing = adopt(incoming.getUuid(), incoming);
+        if (existing != incoming) {
+            existing.copyFrom(incoming);
+        }
+        return existing;
+    }
+
+    @Override
+    public PlayerData getPlayerByUsername(String username) {
+        awaitReady();
+        for (PlayerData data : playerDataCache.values()) {
+            if (username.equalsIgnoreCase(data.getUsername())) {
+                return touch(data);
+            }
+        }
+        synchronized (table) {
+            int row = table.findByUsername(username);
+            return row >= 0 ? checkOut(table.uuidAt(row)) : null;
+        }
+    }
+
+    @Override
+    public PlayerData getPlayerByDiscordId(String discordId) {
+        awaitReady();
+        for (PlayerData data : playerDataCache.values()) {
+            if (discordId.equals(data.getDiscordId())) {
+                return touch(data);
+            }
+        }
+        synchronized (table) {
+            int row = table.findByDiscordId(ChannelRouteTable.parseSnowflake(discordId));
+            // A checked-out row may be stale; the live copy was already searched above
+            return row >= 0 && !table.isCheckedOut(row) ? checkOut(table.uuidAt(row)) : null;
+        }
+    }
+
+    @Override
+    public void linkDiscordAccount(UUID uuid, String discordId) {
+        PlayerData data = getPlayerData(uuid);
+        if (data != null) {
+            data.setDiscordId(discordId);
+            System.out.println("[Discord Integration] Linked " + data.getUsername() + " to Discord ID: " + discordId);
+        }
+    }
+
+    @Override
+    public void forEachPlayer(Consumer<PlayerData> action) {
+        awaitReady();
+        PlayerData scratch = new PlayerData(null, null);
+        synchronized (table) {
+            // No folding mid-walk, or a record could move into rows already passed
+            walkers++;
+        }
+        try {
+            for (int start = 0; ; start += WALK_CHUNK) {
+                synchronized (table) {
+                    if (start >= table.size()) {
+                        break;
+                    }
+                    table.forEach(start, Math.min(start + WALK_CHUNK, table.size()), scratch, action,
+                        row -> action.accept(playerDataCache.get(table.uuidAt(row))));
+                }
+            }
+            for (PlayerData data : playerDataCache.values()) {
+                boolean inTable;
+                synchronized (table) {
+                    inTable = table.find(data.getUuid()) >= 0;
+                }
+                if (!inTable) {
+                    action.accept(data);
+                }
+            }
+        } finally {
+            synchronized (table) {
+                walkers--;
+            }
+        }
+    }
+
+    /** Copies of every record; records not currently live are detached, so changes to them are not kept. */
+    @Override
+    public Map<UUID, PlayerData> getAllPlayers() {
+        awaitReady();
+        Map<UUID, PlayerData> all = new HashMap<>();
+        forEachPlayer(data -> {
+            if (playerDataCache.get(data.getUuid()) == data) {
+                all.put(data.getUuid(), data);
+            } else {
+                PlayerData copy = new PlayerData(data.getUuid(), data.getUsername());
+                copy.copyFrom(data);
+                all.put(copy.getUuid(), copy);
+            }
+        });
+        return all;
+    }
+}
@@ -48,6 +48,23 @@ public class LinkCodeManager {
         );
     }
 
+    public enum LinkResult {
+        LINKED,
+        INVALID_CODE,
+        NO_PLAYER_DATA,
+        ALREADY_LINKED
+    }
+
+    public static class LinkOutcome {
+        public final LinkResult result;
+        public final LinkRequest request;
+
+        public LinkOutcome(LinkResult result, LinkRequest request) {
+            this.result = result;
+            this.request = request;
+        }
+    }
+
     public static class LinkRequest {
         public final String discordId;
         public final String discordUsername;
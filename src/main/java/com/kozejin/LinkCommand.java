@@ -42,35 +42,36 @@ public class LinkCommand extends AbstractPlayerCommand {
 
         String code = parts[1];
         DiscordIntegration plugin = DiscordIntegration.getInstance();
-        LinkCodeManager.LinkRequest request = plugin.getLinkCodeManager().verifyCode(code, player.getUuid(), player.getUsername());
 
-        if (request == null) {
-            player.sendMessage(Message.raw("Invalid or expired link code!"));
-            player.sendMessage(Message.raw("Codes expire after 5 minutes. Get a new code from Discord."));
+        if (plugin.getClusterNode() != null) {
+            plugin.getClusterNode().requestLink(code, player.getUuid(), player.getUsername());
+            player.sendMessage(Message.raw("Verifying link code..."));
             return;
         }
 
-        PlayerData playerData = plugin.getPlayerDataStorage().getPlayerData(player.getUuid());
-        if (playerData == null) {
-            player.sendMessage(Message.raw("Error: Player data not found!"));
-            return;
-        }
+        LinkCodeManager.LinkOutcome outcome = plugin.linkAccount(code, player.getUuid(), player.getUsername());
+        sendLinkResult(player, outcome.result, outcome.request != null ? outcome.request.discordUsername : null);
+    }
 
-        if (playerData.getDiscordId() != null) {
-            player.sendMessage(Message.raw("Your account is already linked to Discord!"));
-            player.sendMessage(Message.raw("Linked to: " + request.discordUsername));
-            return;
+    /** Tells the player how linking went; callable from any thread, as cluster results arrive on the hub connection's. */
+    static void sendLinkResult(PlayerRef player, LinkCodeManager.LinkResult result, String discordUsername) {
+        PluginExecutor executor = DiscordIntegration.getInstance().getExecutor();
+        switch (result) {
+            case INVALID_CODE:
+                executor.sendToPlayer(player, Message.raw("Invalid or expired link code!"),
+                    Message.raw("Codes expire after 5 minutes. Get a new code from Discord."));
+                break;
+            case NO_PLAYER_DATA:
+                executor.sendToPlayer(player, Message.raw("Error: Player data not found!"));
+                break;
+            case ALREADY_LINKED:
+                executor.sendToPlayer(player, Message.raw("Your account is already linked to Discord!"),
+                    Message.raw("Linked to: " + discordUsername));
+                break;
+            case LINKED:
+                executor.sendToPlayer(player, Message.raw("Successfully linked your account to Discord!"),
+                    Message.raw("Discord: " + discordUsername));
+                break;
         }
-
-        playerData.setDiscordId(request.discordId);
-        plugin.getPlayerDataStorage().updatePlayerData(player.getUuid(), playerData);
-        plugin.getPlayerDataStorage().saveAllPlayers();
-
-        player.sendMessage(Message.raw("Successfully linked your account to Discord!"));
-        player.sendMessage(Message.raw("Discord: " + request.discordUsername));
-
-        plugin.notifyDiscordLink(request.discordId, player.getUsername(), true);
-
-        System.out.println("[Discord Integration] " + player.getUsername() + " linked to Discord: " + request.discordUsername);
     }
 }
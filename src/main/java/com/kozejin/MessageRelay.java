@@ -1,45 +1,110 @@
 package com.kozejin;
 
+import java.util.UUID;
+
 public class MessageRelay {
-    private final DiscordConfig config;
+    private final ConfigManager configManager;
+    private final RelayLimiter limiter;
 
-    public MessageRelay(DiscordConfig config) {
-        this.config = config;
+    public MessageRelay(ConfigManager configManager, PluginExecutor executor) {
+        this.configManager = configManager;
+        this.limiter = new RelayLimiter(configManager, executor, this::sendCollapsed);
+        limiter.start();
     }
 
-    public void sendToDiscord(String playerName, String message) {
+    /** Relays a chat line; {@code publishedAt} is when it was handed off the game thread, for the flight recorder. */
+    public void sendToDiscord(UUID uuid, String playerName, String worldName, String message, long publishedAt) {
         System.out.println("[Discord Integration] MessageRelay.sendToDiscord called for: " + playerName);
         DiscordBot bot = DiscordIntegration.getInstance().discordBot;
         if (bot == null) {
             System.out.println("[Discord Integration] Bot is null!");
             return;
         }
-        if (!bot.isConnected()) {
-            System.out.println("[Discord Integration] Bot is not connected!");
-            return;
+        FlightEvents.ChatRelay event = new FlightEvents.ChatRelay();
+        // Read before any relay work, so the delay stops where this thread picked the line up
+        long pickedUp = event.isEnabled() ? System.currentTimeMillis() : 0;
+        event.begin();
+        RelayLimiter.Verdict verdict = limiter.check(uuid, playerName, worldName, message);
+        int routes = 0;
+        if (verdict == RelayLimiter.Verdict.RELAY) {
+            routes = relay(bot, playerName, worldName, message, event);
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.player = playerName;
+            event.world = worldName;
+            event.length = message.length();
+            event.verdict = verdict.name();
+            event.routes = routes;
+            event.published = publishedAt;
+            event.pipelineDelay = pickedUp - publishedAt;
+            event.commit();
+        }
+    }
+
+    private void sendCollapsed(String playerName, String worldName, String message, int count) {
+        DiscordBot bot = DiscordIntegration.getInstance().discordBot;
+        if (bot != null) {
+            relay(bot, playerName, worldName, message + " (x" + count + ")", null);
         }
-        String formatted = config.getMessageFormat().getServerToDiscord()
-            .replace("{player}", playerName)
-            .replace("{message}", message);
-        System.out.println("[Discord Integration] Sending to Discord: " + formatted);
-        bot.sendMessage(formatted);
+    }
+
+    /** Sends to every matching route, adding stage times to {@code event} if it is being recorded. */
+    private int relay(DiscordBot bot, String playerName, String worldName, String message, FlightEvents.ChatRelay event) {
+        boolean timed = event != null && event.isEnabled();
+        DiscordConfig config = configManager.get();
+        int routes = 0;
+        for (DiscordConfig.Route route : config.getRouteTable().getRoutes()) {
+            if (!route.isOutbound() || !route.includesWorld(worldName)) {
+                continue;
+            }
+            long started = timed ? System.nanoTime() : 0;
+            String formatted = DiscordEscaper.format(route.getServerToDiscord(), playerName, worldName, message, config.getEscaping());
+            long formattedAt = timed ? System.nanoTime() : 0;
+            bot.relay(route.getChannelIdLong(), formatted, OutboundSpool.Category.CHAT);
+            if (timed) {
+                long queued = System.nanoTime();
+                event.formatTime += formattedAt - started;
+                event.queueTime += queued - formattedAt;
+            }
+            System.out.println("[Discord Integration] Sending to Discord: " + formatted);
+            routes++;
+        }
+        return routes;
+    }
+
+    /** Forgets a player's relay limits, posting any repeats still being collapsed. */
+    public void forgetPlayer(UUID uuid) {
+        limiter.forget(uuid);
+    }
+
+    public void stop() {
+        limiter.stop();
     }
 
     public void sendJoinMessage(String playerName) {
         DiscordBot bot = DiscordIntegration.getInstance().discordBot;
-        if (bot != null && bot.isConnected()) {
-            String formatted = config.getMessageFormat().getJoinMessage()
-                .replace("{player}", playerName);
-            bot.sendMessage(formatted);
+        if (bot != null) {
+            DiscordConfig config = configManager.get();
+            for (DiscordConfig.Route route : config.getRouteTable().getRoutes()) {
+                if (route.isOutbound() && route.isJoinLeave()) {
+                    String formatted = DiscordEscaper.format(route.getJoinMessage(), playerName, null, null, config.getEscaping());
+                    bot.relay(route.getChannelIdLong(), formatted, OutboundSpool.Category.JOIN_LEAVE);
+                }
+            }
         }
     }
 
     public void sendLeaveMessage(String playerName) {
         DiscordBot bot = DiscordIntegration.getInstance().discordBot;
-        if (bot != null && bot.isConnected()) {
-            String formatted = config.getMessageFormat().getLeaveMessage()
-                .replace("{player}", playerName);
-            bot.sendMessage(formatted);
+        if (bot != null) {
+            DiscordConfig config = configManager.get();
+            for (DiscordConfig.Route route : config.getRouteTable().getRoutes()) {
+                if (route.isOutbound() && route.isJoinLeave()) {
+                    String formatted = DiscordEscaper.format(route.getLeaveMessage(), playerName, null, null, config.getEscaping());
+                    bot.relay(route.getChannelIdLong(), formatted, OutboundSpool.Category.JOIN_LEAVE);
+                }
+            }
         }
     }
 }
@@ -0,0 +1,97 @@
+package com.kozejin;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A message format split once into literal text and placeholder slots, so
+ * formatting a message never searches the template again.
+ */
+public final class MessageTemplate {
+    public static final int PLAYER = 0;
+    public static final int MESSAGE = 1;
+    public static final int WORLD = 2;
+    public static final int USER = 3;
+
+    private static final String[] PLACEHOLDERS = {"{player}", "{message}", "{world}", "{user}"};
+
+    private final String source;
+    private final String[] literals;
+    private final int[] slots;
+
+    private MessageTemplate(String source, String[] literals, int[] slots) {
+        this.source = source;
+        this.literals = literals;
+        this.slots = slots;
+    }
+
+    public static MessageTemplate compile(String template) {
+        String source = template != null ? template : "";
+        List<String> literals = new ArrayList<>();
+        List<Integer> slots = new ArrayList<>();
+        int runStart = 0;
+        for (int i = 0; i < source.length(); i++) {
+            if (source.charAt(i) != '{') {
+                continue;
+            }
+            for (int slot = 0; slot < PLACEHOLDERS.length; slot++) {
+                if (source.startsWith(PLACEHOLDERS[slot], i)) {
+                    literals.add(source.substring(runStart, i));
+                    slots.add(slot);
+                    runStart = i + PLACEHOLDERS[slot].length();
+                    i = runStart - 1;
+                    break;
+                }
+            }
+        }
+        literals.add(source.substring(runStart));
+
+        int[] slotArray = new int[slots.size()];
+        for (int i = 0; i < slotArray.length; i++) {
+            slotArray[i] = slots.get(i);
+        }
+        return new MessageTemplate(source, literals.toArray(new String[0]), slotArray);
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public int getSlotCount() {
+        return slots.length;
+    }
+
+    public int getSlot(int index) {
+        return slots[index];
+    }
+
+    /** Literal text before slot {@code index}; index {@code getSlotCount()} is the trailing text. */
+    public String getLiteral(int index) {
+        return literals[index];
+    }
+
+    public String format(String player, String message, String world, String user) {
+        StringBuilder out = new StringBuilder(source.length() + 32);
+        for (int i = 0; i < slots.length; i++) {
+            out.append(literals[i]);
+            String value = value(slots[i], player, message, world, user);
+            if (value != null) {
+                out.append(value);
+            }
+        }
+        return out.append(literals[slots.length]).toString();
+    }
+
+    static String value(int slot, String player, String message, String world, String user) {
+        switch (slot) {
+            case PLAYER:
+                return player;
+            case MESSAGE:
+                return message;
+            case WORLD:
+                return world;
+            default:
+                return user;
+        }
+    }
+}
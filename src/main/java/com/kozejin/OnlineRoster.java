@@ -0,0 +1,223 @@
+package com.kozejin;
+
+import com.hypixel.hytale.server.core.universe.PlayerRef;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Online players kept in name order, updated from connect and disconnect
+ * events instead of walking the universe on every request. Readers take a
+ * {@link Snapshot}, which is rebuilt at most once per roster change and
+ * caches the page slices rendered from it.
+ *
+ * <p>Each online player also holds a session slot. Preferences that filter
+ * deliveries are kept as bitsets over those slots, so a broadcast's
+ * recipients are one word-wise pass rather than a lookup per player.
+ */
+public class OnlineRoster {
+    public static final int PAGE_SIZE = 15;
+
+    private static final Comparator<Entry> ORDER = (a, b) -> {
+        int byName = String.CASE_INSENSITIVE_ORDER.compare(a.username, b.username);
+        return byName != 0 ? byName : a.uuid.compareTo(b.uuid);
+    };
+
+    private final List<Entry> sorted = new ArrayList<>();
+    private final Map<UUID, Entry> byUuid = new HashMap<>();
+    private final BitSet usedSlots = new BitSet();
+    private final BitSet mutedSlots = new BitSet();
+    private PlayerRef[] slotPlayers = new PlayerRef[64];
+    private volatile long version;
+    private volatile int size;
+    private volatile Snapshot snapshot = new Snapshot(0, new String[0]);
+    private volatile Recipients recipients;
+
+    public synchronized void add(PlayerRef player) {
+        UUID uuid = player.getUuid();
+        String username = player.getUsername();
+        Entry previous = byUuid.get(uuid);
+        boolean muted = false;
+        if (previous != null) {
+            if (previous.username.equals(username) && previous.player == player) {
+                return;
+            }
+            muted = mutedSlots.get(previous.slot);
+            removeEntry(previous);
+        }
+        int slot = usedSlots.nextClearBit(0);
+        if (slot >= slotPlayers.length) {
+            slotPlayers = Arrays.copyOf(slotPlayers, slotPlayers.length * 2);
+        }
+        usedSlots.set(slot);
+        mutedSlots.set(slot, muted);
+        slotPlayers[slot] = player;
+        Entry entry = new Entry(uuid, username, player, slot);
+        int index = Collections.binarySearch(sorted, entry, ORDER);
+        sorted.add(-index - 1, entry);
+        byUuid.put(uuid, entry);
+        changed();
+    }
+
+    public synchronized void remove(UUID uuid) {
+        Entry entry = byUuid.get(uuid);
+        if (entry != null) {
+            removeEntry(entry);
+            changed();
+        }
+    }
+
+    /** Excludes (or re-includes) an online player from relayed Discord chat. Offline players are ignored. */
+    public synchronized void setMuted(UUID uuid, boolean muted) {
+        Entry entry = byUuid.get(uuid);
+        if (entry != null && mutedSlots.get(entry.slot) != muted) {
+            mutedSlots.set(entry.slot, muted);
+            recipients = null;
+        }
+    }
+
+    /** Online players who take relayed Discord chat, rebuilt only after a join, leave or mute change. */
+    public Recipients chatRecipients() {
+        Recipients current = recipients;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (recipients == null) {
+                BitSet bits = (BitSet) usedSlots.clone();
+                bits.andNot(mutedSlots);
+                recipients = new Recipients(bits, Arrays.copyOf(slotPlayers, slotPlayers.length));
+            }
+            return recipients;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public synchronized List<UUID> uuids() {
+        return new ArrayList<>(byUuid.keySet());
+    }
+
+    public Snapshot snapshot() {
+        Snapshot current = snapshot;
+        if (current.version == version) {
+            return current;
+        }
+        synchronized (this) {
+            if (snapshot.version != version) {
+                String[] names = new String[sorted.size()];
+                for (int i = 0; i < names.length; i++) {
+                    names[i] = sorted.get(i).username;
+                }
+                snapshot = new Snapshot(version, names);
+            }
+            return snapshot;
+        }
+    }
+
+    private void removeEntry(Entry entry) {
+        int index = Collections.binarySearch(sorted, entry, ORDER);
+        if (index >= 0) {
+            sorted.remove(index);
+        }
+        byUuid.remove(entry.uuid);
+        usedSlots.clear(entry.slot);
+        mutedSlots.clear(entry.slot);
+        slotPlayers[entry.slot] = null;
+    }
+
+    private void changed() {
+        version++;
+        size = sorted.size();
+        recipients = null;
+    }
+
+    public static final class Recipients {
+        private final BitSet slots;
+        private final PlayerRef[] players;
+
+        private Recipients(BitSet slots, PlayerRef[] players) {
+            this.slots = slots;
+            this.players = players;
+        }
+
+        public int size() {
+            return slots.cardinality();
+        }
+
+        public void forEach(Consumer<PlayerRef> action) {
+            for (int slot = slots.nextSetBit(0); slot >= 0; slot = slots.nextSetBit(slot + 1)) {
+                action.accept(players[slot]);
+            }
+        }
+    }
+
+    public static final class Snapshot {
+        private final long version;
+        private final String[] names;
+        private final String[] pages;
+
+        private Snapshot(long version, String[] names) {
+            this.version = version;
+            this.names = names;
+            this.pages = new String[Math.max(1, (names.length + PAGE_SIZE - 1) / PAGE_SIZE)];
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public int size() {
+            return names.length;
+        }
+
+        public int getPageCount() {
+            return pages.length;
+        }
+
+        /** Bullet list for a 1-based page, clamped to the valid range. */
+        public String getPage(int page) {
+            int index = clampPage(page) - 1;
+            String cached = pages[index];
+            if (cached == null) {
+                StringBuilder out = new StringBuilder(PAGE_SIZE * 20);
+                int end = Math.min(names.length, (index + 1) * PAGE_SIZE);
+                for (int i = index * PAGE_SIZE; i < end; i++) {
+                    out.append("• ").append(names[i]).append('\n');
+                }
+                cached = out.toString();
+                // Racing builders produce identical strings, so a lost write is harmless
+                pages[index] = cached;
+            }
+            return cached;
+        }
+
+        public int clampPage(int page) {
+            return Math.max(1, Math.min(page, pages.length));
+        }
+    }
+
+    private static final class Entry {
+        private final UUID uuid;
+        private final String username;
+        private final PlayerRef player;
+        private final int slot;
+
+        private Entry(UUID uuid, String username, PlayerRef player, int slot) {
+            this.uuid = uuid;
+            this.username = username;
+            this.player = player;
+            this.slot = slot;
+        }
+    }
+}
@@ -0,0 +1,428 @@
+package com.kozejin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Holds outbound Discord messages while the gateway is down or REST sends
+ * are backed up. Messages are appended to fixed-size memory-mapped segment
+ * files, so they survive a restart, and replayed in order once Discord is
+ * reachable again, with consecutive lines for the same channel joined into
+ * one message. Each segment keeps its own read position in its header.
+ */
+public class OutboundSpool {
+    public enum Category { CHAT, JOIN_LEAVE, SYSTEM }
+
+    /** What happens to a message of a category when it cannot be sent right away. */
+    enum Policy {
+        // Spool it; when the spool is full, the oldest segment makes room
+        KEEP,
+        // Spool it while there is room, otherwise drop it
+        DROP_WHEN_FULL,
+        // Never spool it
+        DROP;
+
+        static Policy parse(String value) {
+            return value == null ? null : switch (value.toLowerCase(Locale.ROOT)) {
+                case "keep" -> KEEP;
+                case "drop_when_full" -> DROP_WHEN_FULL;
+                case "drop" -> DROP;
+                default -> null;
+            };
+        }
+    }
+
+    public interface Sender {
+        /** Sends and waits for Discord to answer; false leaves it spooled for a later retry, true consumes it, even if Discord refused it for good. */
+        boolean send(long channelId, String message);
+    }
+
+    private static final String PREFIX = "spool-";
+    private static final String SUFFIX = ".dat";
+    private static final int MAGIC = 0x53504F31;
+    private static final int HEADER = 8;
+    private static final int READ_POS = 4;
+    // len, timestamp, category, channel id
+    private static final int RECORD_HEADER = 4 + 8 + 1 + 8;
+    private static final int MAX_BATCH_CHARS = 2000;
+
+    private final File folder;
+    private final ConfigManager configManager;
+    private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+    private long nextSeq;
+    private volatile int pending;
+    private final int[] dropped = new int[Category.values().length];
+    private int expired;
+    private final PluginExecutor executor;
+    // Replays block on Discord, so they run on the I/O threads, one at a time
+    private final Executor lane;
+    private PluginExecutor.Repeating scheduled;
+
+    public OutboundSpool(File dataFolder, ConfigManager configManager, PluginExecutor executor) throws IOException {
+        this.folder = new File(dataFolder, "spool");
+        this.configManager = configManager;
+        this.executor = executor;
+        this.lane = executor.lane();
+        folder.mkdirs();
+        recover();
+    }
+
+    public void start(BooleanSupplier ready, Sender sender) {
+        scheduled = executor.scheduleWithFixedDelay(lane, () -> {
+            try {
+                drain(ready, sender);
+            } catch (RuntimeException e) {
+                System.out.println("[Discord Integration] Spool replay failed: " + e.getMessage());
+            }
+        }, 1, 1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops replaying and closes the segments, first waiting up to {@code timeoutMs}
+     * for a replay already underway so the batch it delivered is committed.
+     */
+    public void close(long timeoutMs) {
+        if (scheduled != null) {
+            scheduled.cancel();
+        }
+        if (!executor.awaitLane(lane, timeoutMs)) {
+            System.out.println("[Discord Integration] Spool replay still running at shutdown, its batch will be sent again on the next start");
+        }
+        synchronized (this) {
+            for (Segment segment : segments) {
+                segment.close();
+            }
+            segments.clear();
+        }
+    }
+
+    public boolean hasBacklog() {
+        return pending > 0;
+    }
+
+    public int getPending() {
+        return pending;
+    }
+
+    /** Stores a message for later delivery; false if the category's policy dropped it. */
+    public synchronized boolean append(long channelId, Category category, String message) {
+        if (message.length() <= MAX_BATCH_CHARS) {
+            return appendRecord(channelId, category, message);
+        }
+        // Discord refuses anything longer, and a refused record would stall the replay, so spool it in pieces
+        boolean stored = true;
+        for (int start = 0; start < message.length(); ) {
+            int end = Math.min(start + MAX_BATCH_CHARS, message.length());
+            if (end < message.length() && Character.isHighSurrogate(message.charAt(end - 1))) {
+                end--;
+            }
+            stored &= appendRecord(channelId, category, message.substring(start, end));
+            start = end;
+        }
+        return stored;
+    }
+
+    private boolean appendRecord(long channelId, Category category, String message) {
+        Policy policy = policyFor(category);
+        byte[] text = message.getBytes(StandardCharsets.UTF_8);
+        int size = RECORD_HEADER + text.length;
+        int capacity = segmentBytes();
+        if (policy == Policy.DROP || size > capacity - HEADER) {
+            dropped[category.ordinal()]++;
+            return false;
+        }
+
+        Segment tail = segments.peekLast();
+        if (tail == null || tail.writePos + size > tail.buffer.capacity()) {
+            if (segments.size() >= maxSegments(capacity)) {
+                if (policy == Policy.DROP_WHEN_FULL) {
+                    dropped[category.ordinal()]++;
+                    return false;
+                }
+                evictOldest();
+            }
+            try {
+                tail = openSegment(nextSeq++, capacity);
+            } catch (IOException e) {
+                System.out.println("[Discord Integration] Could not open spool segment: " + e.getMessage());
+                dropped[category.ordinal()]++;
+                return false;
+            }
+            segments.addLast(tail);
+        }
+
+        MappedByteBuffer buffer = tail.buffer;
+        int pos = tail.writePos;
+        buffer.putLong(pos + 4, System.currentTimeMillis());
+        buffer.put(pos + 12, (byte) category.ordinal());
+        buffer.putLong(pos + 13, channelId);
+        buffer.put(pos + RECORD_HEADER, text);
+        // The length goes in last; a record without one is treated as never written
+        buffer.putInt(pos, size - 4);
+        tail.writePos = pos + size;
+        pending++;
+        return true;
+    }
+
+    private void drain(BooleanSupplier ready, Sender sender) {
+        if (!ready.getAsBoolean()) {
+            return;
+        }
+        if (pending == 0) {
+            reportDrops(0);
+            return;
+        }
+        long notBefore = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(configManager.get().getSpool().getMaxAgeMinutes());
+        int replayed = 0;
+        Batch batch;
+        while ((batch = next(notBefore)) != null) {
+            if (!sender.send(batch.channelId, batch.text)) {
+                break;
+            }
+            commit(batch);
+            replayed += batch.count;
+            if (!ready.getAsBoolean()) {
+                break;
+            }
+        }
+        reportDrops(replayed);
+    }
+
+    /** The next run of pending lines for one channel, skipping those older than {@code notBefore}. */
+    private synchronized Batch next(long notBefore) {
+        Segment segment;
+        while ((segment = segments.peekFirst()) != null) {
+            MappedByteBuffer buffer = segment.buffer;
+            StringBuilder text = new StringBuilder();
+            long channelId = 0;
+            int count = 0;
+            int pos = segment.readPos;
+            while (pos < segment.writePos) {
+                int length = buffer.getInt(pos);
+                long timestamp = buffer.getLong(pos + 4);
+                long recordChannel = buffer.getLong(pos + 13);
+                byte[] bytes = new byte[length + 4 - RECORD_HEADER];
+                buffer.get(pos + RECORD_HEADER, bytes);
+                String line = new String(bytes, StandardCharsets.UTF_8);
+
+                if (count > 0 && (timestamp < notBefore || recordChannel != channelId
+                        || text.length() + 1 + line.length() > MAX_BATCH_CHARS)) {
+                    break;
+                }
+                if (timestamp < notBefore) {
+                    expired++;
+                    pending--;
+                    pos += 4 + length;
+                    segment.setReadPos(pos);
+                    continue;
+                }
+                if (count > 0) {
+                    text.append('\n');
+                }
+                text.append(line);
+                channelId = recordChannel;
+                count++;
+                pos += 4 + length;
+            }
+            if (count > 0) {
+                return new Batch(segment, pos, channelId, text.toString(), count);
+            }
+            segment.setReadPos(pos);
+            if (segment == segments.peekLast()) {
+                return null;
+            }
+            segments.pollFirst();
+            segment.delete();
+        }
+        return null;
+    }
+
+    private synchronized void commit(Batch batch) {
+        // The segment may have been evicted to make room while the batch was in flight
+        if (segments.peekFirst() == batch.segment) {
+            batch.segment.setReadPos(batch.end);
+            pending -= batch.count;
+        }
+    }
+
+    private void evictOldest() {
+        Segment oldest = segments.pollFirst();
+        if (oldest == null) {
+            return;
+        }
+        MappedByteBuffer buffer = oldest.buffer;
+        for (int pos = oldest.readPos; pos < oldest.writePos; pos += 4 + buffer.getInt(pos)) {
+            dropped[buffer.get(pos + 12)]++;
+            pending--;
+        }
+        oldest.delete();
+    }
+
+    private synchronized void reportDrops(int replayed) {
+        int total = expired;
+        for (int count : dropped) {
+            total += count;
+        }
+        if (replayed == 0 && total == 0) {
+            return;
+        }
+        StringBuilder line = new StringBuilder("[Discord Integration] Spool: ");
+        line.append(replayed).append(" replayed, ").append(pending).append(" waiting");
+        if (expired > 0) {
+            line.append(", ").append(expired).append(" expired");
+        }
+        for (Category category : Category.values()) {
+            if (dropped[category.ordinal()] > 0) {
+                line.append(", ").append(dropped[category.ordinal()]).append(' ')
+                    .append(category.name().toLowerCase(Locale.ROOT)).append(" dropped");
+            }
+        }
+        System.out.println(line);
+        expired = 0;
+        Arrays.fill(dropped, 0);
+    }
+
+    private void recover() throws IOException {
+        String[] names = folder.list((dir, name) -> name.startsWith(PREFIX) && name.endsWith(SUFFIX));
+        if (names == null) {
+            return;
+        }
+        long[] seqs = new long[names.length];
+        int found = 0;
+        for (String name : names) {
+            try {
+                seqs[found++] = Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+            } catch (NumberFormatException e) {
+                // Not one of ours
+            }
+        }
+        seqs = Arrays.copyOf(seqs, found);
+        Arrays.sort(seqs);
+
+        for (long seq : seqs) {
+            File file = segmentFile(seq);
+            if (file.length() < HEADER) {
+                file.delete();
+                continue;
+            }
+            Segment segment = openSegment(seq, (int) file.length());
+            if (segment.buffer.getInt(0) != MAGIC) {
+                segment.delete();
+                continue;
+            }
+            MappedByteBuffer buffer = segment.buffer;
+            int pos = HEADER;
+            int length;
+            while (pos + RECORD_HEADER <= buffer.capacity() && (length = buffer.getInt(pos)) > 0
+                    && pos + 4 + length <= buffer.capacity()) {
+                if (pos >= segment.readPos) {
+                    pending++;
+                }
+                pos += 4 + length;
+            }
+            segment.writePos = pos;
+            segments.addLast(segment);
+            nextSeq = seq + 1;
+        }
+        if (pending > 0) {
+            System.out.println("[Discord Integration] Spool holds " + pending + " undelivered messages from before the restart");
+        }
+    }
+
+    private Segment openSegment(long seq, int capacity) throws IOException {
+        File file = segmentFile(seq);
+        boolean fresh = !file.exists();
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            Segment segment = new Segment(file, buffer);
+            if (fresh) {
+                buffer.putInt(0, MAGIC);
+                segment.setReadPos(HEADER);
+            } else {
+                segment.readPos = Math.max(HEADER, buffer.getInt(READ_POS));
+            }
+            segment.writePos = HEADER;
+            return segment;
+        }
+    }
+
+    private File segmentFile(long seq) {
+        return new File(folder, PREFIX + String.format("%010d", seq) + SUFFIX);
+    }
+
+    private int segmentBytes() {
+        return configManager.get().getSpool().getSegmentKb() * 1024;
+    }
+
+    private int maxSegments(int segmentBytes) {
+        // Eviction needs a segment to give up besides the one being written
+        return Math.max(2, (int) (configManager.get().getSpool().getMaxMb() * 1024L * 1024L / segmentBytes));
+    }
+
+    private Policy policyFor(Category category) {
+        DiscordConfig.Spool settings = configManager.get().getSpool();
+        String value = switch (category) {
+            case CHAT -> settings.getChatPolicy();
+            case JOIN_LEAVE -> settings.getJoinLeavePolicy();
+            case SYSTEM -> settings.getSystemPolicy();
+        };
+        Policy policy = Policy.parse(value);
+        return policy != null ? policy : Policy.KEEP;
+    }
+
+    private static final class Segment {
+        final File file;
+        final MappedByteBuffer buffer;
+        int readPos;
+        int writePos;
+
+        Segment(File file, MappedByteBuffer buffer) {
+            this.file = file;
+            this.buffer = buffer;
+        }
+
+        void setReadPos(int pos) {
+            readPos = pos;
+            buffer.putInt(READ_POS, pos);
+        }
+
+        void close() {
+            buffer.force();
+        }
+
+        void delete() {
+            if (!file.delete()) {
+                // Still mapped on some platforms; an empty read position makes it harmless until then
+                setReadPos(writePos);
+            }
+        }
+    }
+
+    private static final class Batch {
+        final Segment segment;
+        final int end;
+        final long channelId;
+        final String text;
+        final int count;
+
+        Batch(Segment segment, int end, long channelId, String text, int count) {
+            this.segment = segment;
+            this.end = end;
+            this.channelId = channelId;
+            this.text = text;
+            this.count = count;
+        }
+    }
+}
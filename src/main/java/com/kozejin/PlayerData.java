@@ -1,6 +1,7 @@
 package com.kozejin;
 
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class PlayerData {
     private UUID uuid;
@@ -10,6 +11,13 @@ public class PlayerData {
     private long totalPlayTime;
     private long currentSessionStart;
     private String discordId;
+    private boolean discordChatMuted;
+    // How many playtime role thresholds Discord has confirmed for this player
+    private int roleTier;
+    private transient volatile long version;
+
+    // One counter for every record, so a version is never reused, not even by a fresh copy of the same player
+    private static final AtomicLong VERSIONS = new AtomicLong();
 
     public PlayerData(UUID uuid, String username) {
         this.uuid = uuid;
@@ -27,6 +35,7 @@ public class PlayerData {
 
     public void setUuid(UUID uuid) {
         this.uuid = uuid;
+        changed();
     }
 
     public String getUsername() {
@@ -35,6 +44,7 @@ public class PlayerData {
 
     public void setUsername(String username) {
         this.username = username;
+        changed();
     }
 
     public long getFirstLoginTime() {
@@ -43,6 +53,7 @@ public class PlayerData {
 
     public void setFirstLoginTime(long firstLoginTime) {
         this.firstLoginTime = firstLoginTime;
+        changed();
     }
 
     public long getLastLoginTime() {
@@ -51,6 +62,7 @@ public class PlayerData {
 
     public void setLastLoginTime(long lastLoginTime) {
         this.lastLoginTime = lastLoginTime;
+        changed();
     }
 
     public long getTotalPlayTime() {
@@ -59,10 +71,12 @@ public class PlayerData {
 
     public void setTotalPlayTime(long totalPlayTime) {
         this.totalPlayTime = totalPlayTime;
+        changed();
     }
 
     public void addPlayTime(long playTime) {
         this.totalPlayTime += playTime;
+        changed();
     }
 
     public long getCurrentSessionStart() {
@@ -71,6 +85,7 @@ public class PlayerData {
 
     public void setCurrentSessionStart(long currentSessionStart) {
         this.currentSessionStart = currentSessionStart;
+        changed();
     }
 
     public String getDiscordId() {
@@ -79,11 +94,60 @@ public class PlayerData {
 
     public void setDiscordId(String discordId) {
         this.discordId = discordId;
+        changed();
+    }
+
+    public boolean isDiscordChatMuted() {
+        return discordChatMuted;
+    }
+
+    public void setDiscordChatMuted(boolean discordChatMuted) {
+        this.discordChatMuted = discordChatMuted;
+        changed();
+    }
+
+    public int getRoleTier() {
+        return roleTier;
+    }
+
+    public void setRoleTier(int roleTier) {
+        this.roleTier = roleTier;
+        changed();
+    }
+
+    /**
+     * Sets every field from a stored row without taking a version per field;
+     * the record gets a fresh one the next time it is asked for.
+     */
+    void load(UUID uuid, String username, long firstLoginTime, long lastLoginTime, long totalPlayTime,
+              long currentSessionStart, String discordId, boolean discordChatMuted, int roleTier) {
+        this.uuid = uuid;
+        this.username = username;
+        this.firstLoginTime = firstLoginTime;
+        this.lastLoginTime = lastLoginTime;
+        this.totalPlayTime = totalPlayTime;
+        this.currentSessionStart = currentSessionStart;
+        this.discordId = discordId;
+        this.discordChatMuted = discordChatMuted;
+        this.roleTier = roleTier;
+        this.version = 0;
+    }
+
+    public void copyFrom(PlayerData other) {
+        this.username = other.username;
+        this.firstLoginTime = other.firstLoginTime;
+        this.lastLoginTime = other.lastLoginTime;
+        this.totalPlayTime = other.totalPlayTime;
+        this.discordId = other.discordId;
+        this.discordChatMuted = other.discordChatMuted;
+        this.roleTier = other.roleTier;
+        changed();
     }
 
     public void startSession() {
         this.currentSessionStart = System.currentTimeMillis();
         this.lastLoginTime = System.currentTimeMillis();
+        changed();
     }
 
     public void endSession() {
@@ -91,23 +155,26 @@ public class PlayerData {
             long sessionDuration = System.currentTimeMillis() - currentSessionStart;
             addPlayTime(sessionDuration);
             currentSessionStart = -1;
+            changed();
         }
     }
 
-    public String getFormattedPlayTime() {
-        long seconds = totalPlayTime / 1000;
-        long minutes = seconds / 60;
-        long hours = minutes / 60;
-        long days = hours / 24;
-
-        if (days > 0) {
-            return String.format("%dd %dh %dm", days, hours % 24, minutes % 60);
-        } else if (hours > 0) {
-            return String.format("%dh %dm", hours, minutes % 60);
-        } else if (minutes > 0) {
-            return String.format("%dm %ds", minutes, seconds % 60);
-        } else {
-            return String.format("%ds", seconds);
+    /** Changes whenever the record does; two copies of a player never share one, even with equal contents. */
+    public long getVersion() {
+        long current = version;
+        if (current == 0) {
+            // Deserialized and freshly loaded records have none yet; give them one on first use
+            current = VERSIONS.incrementAndGet();
+            version = current;
         }
+        return current;
+    }
+
+    private void changed() {
+        version = VERSIONS.incrementAndGet();
+    }
+
+    public String getFormattedPlayTime() {
+        return ProfileService.formatDuration(totalPlayTime);
     }
 }
@@ -1,124 +1,49 @@
 package com.kozejin;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.reflect.TypeToken;
-
-import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.lang.reflect.Type;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
-
-public class PlayerDataStorage {
-    private final File dataFolder;
-    private final File playerDataFile;
-    private final Gson gson;
-    private final Map<UUID, PlayerData> playerDataCache;
+import java.util.function.Consumer;
 
-    public PlayerDataStorage(File dataFolder) {
-        this.dataFolder = dataFolder;
-        this.playerDataFile = new File(dataFolder, "players.json");
-        this.gson = new GsonBuilder().setPrettyPrinting().create();
-        this.playerDataCache = new ConcurrentHashMap<>();
-        
-        loadAllPlayers();
-    }
+/**
+ * Persistent player records. Returned {@link PlayerData} instances are live:
+ * callers mutate them in place and call {@link #saveAllPlayers()} to persist.
+ * A store may fold records that have sat unchanged through a save back into
+ * a compact form, so hold on to an instance only while using it.
+ */
+public interface PlayerDataStorage {
+    PlayerData getPlayerData(UUID uuid);
 
-    private void loadAllPlayers() {
-        if (!dataFolder.exists()) {
-            dataFolder.mkdirs();
-        }
-        
-        if (!playerDataFile.exists()) {
-            System.out.println("[Discord Integration] No player data file found, creating new one");
-            try {
-                playerDataFile.createNewFile();
-                saveAllPlayers();
-                System.out.println("[Discord Integration] Created player data file at: " + playerDataFile.getAbsolutePath());
-            } catch (IOException e) {
-                System.err.println("[Discord Integration] Error creating player data file: " + e.getMessage());
-                e.printStackTrace();
-            }
-            return;
-        }
+    PlayerData getOrCreatePlayerData(UUID uuid, String username);
 
-        try (FileReader reader = new FileReader(playerDataFile)) {
-            Type type = new TypeToken<Map<String, PlayerData>>(){}.getType();
-            Map<String, PlayerData> loadedData = gson.fromJson(reader, type);
-            
-            if (loadedData != null) {
-                for (Map.Entry<String, PlayerData> entry : loadedData.entrySet()) {
-                    UUID uuid = UUID.fromString(entry.getKey());
-                    playerDataCache.put(uuid, entry.getValue());
-                }
-                System.out.println("[Discord Integration] Loaded " + playerDataCache.size() + " player records");
-            }
-        } catch (IOException e) {
-            System.err.println("[Discord Integration] Error loading player data: " + e.getMessage());
-            e.printStackTrace();
-        }
-    }
+    void updatePlayerData(UUID uuid, PlayerData data);
 
-    public void saveAllPlayers() {
-        try {
-            if (!dataFolder.exists()) {
-                dataFolder.mkdirs();
-            }
+    PlayerData mergePlayerData(PlayerData incoming);
 
-            Map<String, PlayerData> saveData = new HashMap<>();
-            for (Map.Entry<UUID, PlayerData> entry : playerDataCache.entrySet()) {
-                saveData.put(entry.getKey().toString(), entry.getValue());
-            }
+    PlayerData getPlayerByUsername(String username);
 
-            try (FileWriter writer = new FileWriter(playerDataFile)) {
-                gson.toJson(saveData, writer);
-            }
-            
-            System.out.println("[Discord Integration] Saved " + playerDataCache.size() + " player records");
-        } catch (IOException e) {
-            System.err.println("[Discord Integration] Error saving player data: " + e.getMessage());
-            e.printStackTrace();
-        }
-    }
+    PlayerData getPlayerByDiscordId(String discordId);
 
-    public PlayerData getPlayerData(UUID uuid) {
-        return playerDataCache.get(uuid);
-    }
+    void linkDiscordAccount(UUID uuid, String discordId);
 
-    public PlayerData getOrCreatePlayerData(UUID uuid, String username) {
-        return playerDataCache.computeIfAbsent(uuid, k -> {
-            System.out.println("[Discord Integration] Creating new player data for " + username);
-            return new PlayerData(uuid, username);
-        });
-    }
+    Map<UUID, PlayerData> getAllPlayers();
 
-    public void updatePlayerData(UUID uuid, PlayerData data) {
-        playerDataCache.put(uuid, data);
+    /**
+     * Visits every record without blocking writers; records changed mid-walk
+     * may be seen either way. Records not currently live may be passed in a
+     * reused instance, so the action must not keep or change what it is given.
+     */
+    default void forEachPlayer(Consumer<PlayerData> action) {
+        getAllPlayers().values().forEach(action);
     }
 
-    public PlayerData getPlayerByDiscordId(String discordId) {
-        for (PlayerData data : playerDataCache.values()) {
-            if (discordId.equals(data.getDiscordId())) {
-                return data;
-            }
-        }
-        return null;
-    }
+    void saveAllPlayers();
 
-    public void linkDiscordAccount(UUID uuid, String discordId) {
-        PlayerData data = playerDataCache.get(uuid);
-        if (data != null) {
-            data.setDiscordId(discordId);
-            System.out.println("[Discord Integration] Linked " + data.getUsername() + " to Discord ID: " + discordId);
-        }
+    /** Called with the UUID of each record the store folds out of its live form, for callers caching state derived from it. */
+    default void setFoldListener(Consumer<UUID> listener) {
     }
 
-    public Map<UUID, PlayerData> getAllPlayers() {
-        return new HashMap<>(playerDataCache);
+    /** Persists outstanding changes and releases resources; the store is unusable afterwards. */
+    default void close() {
+        saveAllPlayers();
     }
 }
@@ -0,0 +1,259 @@
+package com.kozejin;
+
+import com.hypixel.hytale.server.core.Message;
+import com.hypixel.hytale.server.core.universe.PlayerRef;
+import com.hypixel.hytale.server.core.universe.Universe;
+import com.hypixel.hytale.server.core.universe.world.World;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Where plugin work runs. Blocking file and network work goes to virtual
+ * threads, work that must stay ordered goes through a {@link #lane() lane}, and
+ * anything touching a world's entities is dispatched onto that world's
+ * thread. Periodic work is timed by one shared timer thread that only hands
+ * each run to its lane. With {@code debugThreadGuard} enabled, blocking calls
+ * made from a world thread are reported once per call site.
+ */
+public class PluginExecutor {
+    private static volatile BooleanSupplier guardEnabled = () -> false;
+    private static final Set<String> reported = ConcurrentHashMap.newKeySet();
+
+    private final ExecutorService io = Executors.newThreadPerTaskExecutor(
+        Thread.ofVirtual().name("DiscordIntegration-io-", 0).factory());
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "DiscordIntegration-Timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public PluginExecutor(ConfigManager configManager) {
+        guardEnabled = () -> configManager.get().isDebugThreadGuard();
+    }
+
+    public void runIo(Runnable task) {
+        try {
+            io.execute(() -> runLogged(task));
+        } catch (RejectedExecutionException e) {
+            // Shutting down: finish the work on the caller rather than drop it
+            runLogged(task);
+        }
+    }
+
+    /** Runs {@code task} on the world's own thread, where its players and entities may be touched. */
+    public void runOnWorld(World world, Runnable task) {
+        if (world.isInThread()) {
+            runLogged(task);
+        } else {
+            world.execute(() -> runLogged(task));
+        }
+    }
+
+    /** Sends {@code lines} to the player on their world's thread; a player between worlds has none and gets them directly. */
+    public void sendToPlayer(PlayerRef player, Message... lines) {
+        UUID worldUuid = player.getWorldUuid();
+        World world = worldUuid != null ? Universe.get().getWorld(worldUuid) : null;
+        Runnable send = () -> {
+            for (Message line : lines) {
+                player.sendMessage(line);
+            }
+        };
+        if (world != null) {
+            runOnWorld(world, send);
+        } else {
+            runLogged(send);
+        }
+    }
+
+    /** An executor that runs its tasks one at a time, in submission order, on the I/O threads. */
+    public Executor lane() {
+        return new Lane();
+    }
+
+    /** Runs {@code task} on {@code lane} after {@code delay}. */
+    public void schedule(Executor lane, Runnable task, long delay, TimeUnit unit) {
+        try {
+            timer.schedule(() -> lane.execute(task), delay, unit);
+        } catch (RejectedExecutionException e) {
+            // Shutting down; the task would have been cancelled with the timer anyway
+        }
+    }
+
+    /** Runs {@code task} on {@code lane} after {@code initialDelay}, then again {@code delay} after each run finishes. */
+    public Repeating scheduleWithFixedDelay(Executor lane, Runnable task, long initialDelay, long delay, TimeUnit unit) {
+        Repeating repeating = new Repeating(lane, task, unit.toNanos(delay), false);
+        repeating.start(unit.toNanos(initialDelay));
+        return repeating;
+    }
+
+    /** Runs {@code task} on {@code lane} every {@code period}; a run that is due while the last is still going is skipped. */
+    public Repeating scheduleAtFixedRate(Executor lane, Runnable task, long initialDelay, long period, TimeUnit unit) {
+        Repeating repeating = new Repeating(lane, task, unit.toNanos(period), true);
+        repeating.start(unit.toNanos(initialDelay));
+        return repeating;
+    }
+
+    /** Waits until everything already submitted to {@code lane} has run; false if that took longer than the timeout. */
+    public boolean awaitLane(Executor lane, long timeoutMs) {
+        CountDownLatch done = new CountDownLatch(1);
+        lane.execute(done::countDown);
+        try {
+            return done.await(Math.max(0, timeoutMs), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    public void shutdown(long timeoutMs) {
+        // Stop the timer first, or its hand-offs would run on the caller once the I/O threads refuse them
+        timer.shutdownNow();
+        io.shutdown();
+        try {
+            if (!io.awaitTermination(Math.max(0, timeoutMs), TimeUnit.MILLISECONDS)) {
+                System.out.println("[Discord Integration] I/O tasks still running after " + timeoutMs + "ms, abandoning them");
+                io.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Call at the top of anything that blocks on disk, sockets or locks held by other threads. */
+    public static void checkBlocking(String operation) {
+        if (!guardEnabled.getAsBoolean()) {
+            return;
+        }
+        World world = currentWorld();
+        if (world != null && reported.add(operation + "@" + world.getName())) {
+            System.out.println("[Discord Integration] Blocking call '" + operation + "' on the thread of world " + world.getName());
+            new Throwable("blocking call site").printStackTrace(System.out);
+        }
+    }
+
+    private static World currentWorld() {
+        Universe universe = Universe.get();
+        if (universe == null) {
+            return null;
+        }
+        Map<String, World> worlds = universe.getWorlds();
+        for (World world : worlds.values()) {
+            if (world.isInThread()) {
+                return world;
+            }
+        }
+        return null;
+    }
+
+    private static void runLogged(Runnable task) {
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            System.out.println("[Discord Integration] Task failed: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    /** A periodic task from the shared timer; cancelling stops further runs but lets one in progress finish. */
+    public final class Repeating {
+        private final Executor lane;
+        private final Runnable task;
+        private final long periodNanos;
+        private final boolean fixedRate;
+        private final AtomicBoolean pending = new AtomicBoolean();
+        private volatile boolean cancelled;
+        private volatile ScheduledFuture<?> timed;
+
+        private Repeating(Executor lane, Runnable task, long periodNanos, boolean fixedRate) {
+            this.lane = lane;
+            this.task = task;
+            this.periodNanos = periodNanos;
+            this.fixedRate = fixedRate;
+        }
+
+        private void start(long initialDelayNanos) {
+            try {
+                timed = fixedRate
+                    ? timer.scheduleAtFixedRate(this::handOver, initialDelayNanos, periodNanos, TimeUnit.NANOSECONDS)
+                    : timer.schedule(this::handOver, initialDelayNanos, TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException e) {
+                cancelled = true;
+            }
+        }
+
+        private void handOver() {
+            if (!cancelled && pending.compareAndSet(false, true)) {
+                lane.execute(this::run);
+            }
+        }
+
+        private void run() {
+            try {
+                if (!cancelled) {
+                    runLogged(task);
+                }
+            } finally {
+                pending.set(false);
+            }
+            if (!fixedRate && !cancelled) {
+                start(periodNanos);
+            }
+        }
+
+        public void cancel() {
+            cancelled = true;
+            ScheduledFuture<?> current = timed;
+            if (current != null) {
+                current.cancel(false);
+            }
+        }
+    }
+
+    private final class Lane implements Executor {
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        @Override
+        public void execute(Runnable task) {
+            tasks.add(task);
+            schedule();
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    io.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    drain();
+                }
+            }
+        }
+
+        private void drain() {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                runLogged(task);
+            }
+            scheduled.set(false);
+            // A task may have been added after the last poll but before the flag was cleared
+            if (!tasks.isEmpty()) {
+                schedule();
+            }
+        }
+    }
+}
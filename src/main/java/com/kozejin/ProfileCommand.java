@@ -10,8 +10,6 @@ import com.hypixel.hytale.server.core.universe.world.World;
 import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
 
 import javax.annotation.Nonnull;
-import java.text.SimpleDateFormat;
-import java.util.Date;
 
 public class ProfileCommand extends AbstractPlayerCommand {
 
@@ -37,28 +35,19 @@ public class ProfileCommand extends AbstractPlayerCommand {
         String[] parts = input.split("\\s+");
         
         DiscordIntegration plugin = DiscordIntegration.getInstance();
-        PlayerDataStorage storage = plugin.getPlayerDataStorage();
+        ProfileService profiles = plugin.getProfileService();
         PlayerData playerData;
-        String targetUsername;
         
         if (parts.length > 1) {
-            targetUsername = parts[1];
-            playerData = null;
-            
-            for (PlayerData data : storage.getAllPlayers().values()) {
-                if (data.getUsername().equalsIgnoreCase(targetUsername)) {
-                    playerData = data;
-                    break;
-                }
-            }
+            String targetUsername = parts[1];
+            playerData = profiles.findByUsername(targetUsername);
             
             if (playerData == null) {
                 player.sendMessage(Message.raw("Player '" + targetUsername + "' not found!"));
                 return;
             }
         } else {
-            playerData = storage.getPlayerData(player.getUuid());
-            targetUsername = player.getUsername();
+            playerData = plugin.getPlayerDataStorage().getPlayerData(player.getUuid());
             
             if (playerData == null) {
                 player.sendMessage(Message.raw("Error: Your player data not found!"));
@@ -66,13 +55,8 @@ public class ProfileCommand extends AbstractPlayerCommand {
             }
         }
         
-        SimpleDateFormat dateFormat = new SimpleDateFormat("MMM dd, yyyy");
-        String firstLoginDate = dateFormat.format(new Date(playerData.getFirstLoginTime()));
-        String discordStatus = playerData.getDiscordId() != null ? "Linked" : "Not linked";
-        
-        player.sendMessage(Message.raw("Player Profile: " + targetUsername));
-        player.sendMessage(Message.raw("Total Playtime: " + playerData.getFormattedPlayTime()));
-        player.sendMessage(Message.raw("First Login: " + firstLoginDate));
-        player.sendMessage(Message.raw("Discord: " + discordStatus));
+        for (Message line : profiles.renderInGame(playerData)) {
+            player.sendMessage(line);
+        }
     }
 }
@@ -0,0 +1,153 @@
+package com.kozejin;
+
+import com.hypixel.hytale.server.core.Message;
+import net.dv8tion.jda.api.EmbedBuilder;
+import net.dv8tion.jda.api.entities.MessageEmbed;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+public class ProfileService {
+    private static final DateTimeFormatter FIRST_LOGIN_FORMAT =
+        DateTimeFormatter.ofPattern("MMM dd, yyyy", Locale.ENGLISH).withZone(ZoneId.systemDefault());
+
+    private static final int CACHE_SIZE = 512;
+
+    private final PlayerDataStorage storage;
+    private final Map<UUID, CachedProfile> cache = new LinkedHashMap<UUID, CachedProfile>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<UUID, CachedProfile> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    public ProfileService(PlayerDataStorage storage) {
+        this.storage = storage;
+        storage.setFoldListener(this::invalidate);
+    }
+
+    public PlayerData findByUsername(String username) {
+        return storage.getPlayerByUsername(username);
+    }
+
+    public PlayerData findByDiscordId(String discordId) {
+        return storage.getPlayerByDiscordId(discordId);
+    }
+
+    public Message[] renderInGame(PlayerData data) {
+        CachedProfile profile = profile(data);
+        if (!isOnline(data)) {
+            return profile.inGame;
+        }
+        Message[] lines = profile.inGame.clone();
+        lines[1] = Message.raw("Total Playtime: " + formatDuration(livePlayTime(data)));
+        return lines;
+    }
+
+    public MessageEmbed renderEmbed(PlayerData data) {
+        CachedProfile profile = profile(data);
+        if (!isOnline(data)) {
+            return profile.embed;
+        }
+        return buildEmbed(profile, formatDuration(livePlayTime(data)), true);
+    }
+
+    public void invalidate(UUID uuid) {
+        synchronized (cache) {
+            cache.remove(uuid);
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    private CachedProfile profile(PlayerData data) {
+        long version = data.getVersion();
+        CachedProfile cached;
+        synchronized (cache) {
+            cached = cache.get(data.getUuid());
+        }
+        if (cached != null && cached.version == version) {
+            return cached;
+        }
+
+        CachedProfile profile = new CachedProfile(version, data);
+        String playTime = formatDuration(data.getTotalPlayTime());
+        profile.inGame = new Message[] {
+            Message.raw("Player Profile: " + profile.username),
+            Message.raw("Total Playtime: " + playTime),
+            Message.raw("First Login: " + profile.firstLogin),
+            Message.raw("Discord: " + (profile.discordId != null ? "Linked" : "Not linked"))
+        };
+        profile.embed = buildEmbed(profile, playTime, false);
+        synchronized (cache) {
+            cache.put(data.getUuid(), profile);
+        }
+        return profile;
+    }
+
+    private static MessageEmbed buildEmbed(CachedProfile profile, String playTime, boolean online) {
+        String discordTag = profile.discordId != null ? "<@" + profile.discordId + ">" : "Not linked";
+        return new EmbedBuilder()
+            .setTitle("Player Profile: " + profile.username + (online ? " (online)" : ""))
+            .setColor(0x00FF00)
+            .addField("Total Playtime", playTime, true)
+            .addField("First Login", profile.firstLogin, true)
+            .addField("Discord", discordTag, false)
+            .setFooter("Discord Integration", null)
+            .build();
+    }
+
+    private static boolean isOnline(PlayerData data) {
+        return data.getCurrentSessionStart() > 0;
+    }
+
+    private static long livePlayTime(PlayerData data) {
+        long sessionStart = data.getCurrentSessionStart();
+        long total = data.getTotalPlayTime();
+        return sessionStart > 0 ? total + Math.max(0, System.currentTimeMillis() - sessionStart) : total;
+    }
+
+    public static String formatDuration(long millis) {
+        long seconds = millis / 1000;
+        long minutes = seconds / 60;
+        long hours = minutes / 60;
+        long days = hours / 24;
+
+        StringBuilder out = new StringBuilder(16);
+        if (days > 0) {
+            out.append(days).append("d ").append(hours % 24).append("h ").append(minutes % 60).append('m');
+        } else if (hours > 0) {
+            out.append(hours).append("h ").append(minutes % 60).append('m');
+        } else if (minutes > 0) {
+            out.append(minutes).append("m ").append(seconds % 60).append('s');
+        } else {
+            out.append(seconds).append('s');
+        }
+        return out.toString();
+    }
+
+    private static final class CachedProfile {
+        final long version;
+        final String username;
+        final String firstLogin;
+        final String discordId;
+        Message[] inGame;
+        MessageEmbed embed;
+
+        CachedProfile(long version, PlayerData data) {
+            this.version = version;
+            this.username = data.getUsername();
+            this.firstLogin = FIRST_LOGIN_FORMAT.format(Instant.ofEpochMilli(data.getFirstLoginTime()));
+            this.discordId = data.getDiscordId();
+        }
+    }
+}
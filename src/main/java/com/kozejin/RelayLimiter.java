@@ -0,0 +1,231 @@
+package com.kozejin;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Per-player limits on chat relayed to Discord; in-game chat is never
+ * affected. A line repeated back to back is relayed once and the copies are
+ * counted, then posted as one "(xN)" line once the run ends. Each player
+ * also has a ring of recent line fingerprints, to catch lines cycled with
+ * others, and a relay budget kept as a single theoretical arrival time
+ * (GCRA), so every check is a few atomic operations and never blocks.
+ */
+public class RelayLimiter {
+    private static final long IDLE_EVICT_NANOS = TimeUnit.MINUTES.toNanos(10);
+    private static final int RETIRED = Integer.MIN_VALUE / 2;
+
+    public enum Verdict {
+        RELAY,
+        COLLAPSED,
+        REPEATED,
+        OVER_BUDGET
+    }
+
+    /** Posts the summary of a collapsed run. */
+    public interface Summary {
+        void send(String playerName, String worldName, String message, int count);
+    }
+
+    private final ConfigManager configManager;
+    private final Summary summary;
+    private final Map<UUID, Sender> senders = new ConcurrentHashMap<>();
+    private final PluginExecutor executor;
+    private PluginExecutor.Repeating sweep;
+
+    public RelayLimiter(ConfigManager configManager, PluginExecutor executor, Summary summary) {
+        this.configManager = configManager;
+        this.executor = executor;
+        this.summary = summary;
+    }
+
+    public void start() {
+        sweep = executor.scheduleWithFixedDelay(executor.lane(), () -> {
+            try {
+                flushIdle();
+            } catch (RuntimeException e) {
+                System.out.println("[Discord Integration] Relay limiter sweep failed: " + e.getMessage());
+            }
+        }, 1, 1, TimeUnit.SECONDS);
+    }
+
+    /** Stops the sweep and posts every run still being collapsed. */
+    public void stop() {
+        if (sweep != null) {
+            sweep.cancel();
+        }
+        for (UUID uuid : senders.keySet()) {
+            forget(uuid);
+        }
+    }
+
+    public Verdict check(UUID uuid, String playerName, String worldName, String message) {
+        DiscordConfig.RelayLimits settings = configManager.get().getRelayLimits();
+        if (!settings.isEnabled() || uuid == null) {
+            return Verdict.RELAY;
+        }
+        long now = System.nanoTime();
+        Sender sender = senders.get(uuid);
+        if (sender == null) {
+            if (senders.size() >= settings.getMaxTrackedPlayers()) {
+                // Entries leave with their players, so this only happens under a join flood; don't hold chat hostage to it
+                return Verdict.RELAY;
+            }
+            sender = senders.computeIfAbsent(uuid, id -> new Sender(settings, now));
+        }
+        sender.lastSeen = now;
+
+        long fingerprint = fingerprint(message);
+        Run current = sender.run.get();
+        if (current != null && current.fingerprint == fingerprint && current.count.incrementAndGet() > 0) {
+            current.lastNanos = now;
+            return Verdict.COLLAPSED;
+        }
+
+        Run next = new Run(fingerprint, playerName, worldName, message, now);
+        Run previous = sender.run.getAndSet(next);
+        if (previous != null) {
+            finish(previous);
+        }
+
+        if (sender.countRecent(fingerprint) + 1 >= settings.getRepeatThreshold()) {
+            sender.remember(fingerprint);
+            return Verdict.REPEATED;
+        }
+        sender.remember(fingerprint);
+
+        if (!sender.takeBudget(settings, now)) {
+            if (sender.suppressed.getAndIncrement() == 0) {
+                System.out.println("[Discord Integration] Not relaying chat from " + playerName + " to Discord, over budget");
+            }
+            return Verdict.OVER_BUDGET;
+        }
+        int suppressed = sender.suppressed.getAndSet(0);
+        if (suppressed > 0) {
+            System.out.println("[Discord Integration] Relaying " + playerName + " again after " + suppressed + " messages held back");
+        }
+        next.relayed = true;
+        return Verdict.RELAY;
+    }
+
+    /** Drops a player's state, posting any run still being collapsed. */
+    public void forget(UUID uuid) {
+        Sender sender = senders.remove(uuid);
+        if (sender != null) {
+            Run run = sender.run.getAndSet(null);
+            if (run != null) {
+                finish(run);
+            }
+        }
+    }
+
+    public int getTrackedPlayers() {
+        return senders.size();
+    }
+
+    private void flushIdle() {
+        long now = System.nanoTime();
+        long collapseNanos = TimeUnit.SECONDS.toNanos(configManager.get().getRelayLimits().getCollapseSeconds());
+        Iterator<Map.Entry<UUID, Sender>> it = senders.entrySet().iterator();
+        while (it.hasNext()) {
+            Sender sender = it.next().getValue();
+            Run run = sender.run.get();
+            if (run != null && now - run.lastNanos > collapseNanos && sender.run.compareAndSet(run, null)) {
+                finish(run);
+            }
+            if (now - sender.lastSeen > IDLE_EVICT_NANOS && sender.run.get() == null) {
+                it.remove();
+            }
+        }
+    }
+
+    private void finish(Run run) {
+        // Whoever retires the run owns its count; copies arriving after this start a new run
+        int count = run.count.getAndSet(RETIRED);
+        if (count > 1 && run.relayed) {
+            summary.send(run.playerName, run.worldName, run.message, count);
+        }
+    }
+
+    /** 64-bit FNV-1a over the line, ignoring case and whitespace like {@link FloodGuard#contentHash}. */
+    static long fingerprint(String message) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0, n = message.length(); i < n; i++) {
+            char c = message.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                hash = (hash ^ Character.toLowerCase(c)) * 0x100000001b3L;
+            }
+        }
+        return hash;
+    }
+
+    private static final class Run {
+        final long fingerprint;
+        final String playerName;
+        final String worldName;
+        final String message;
+        final AtomicInteger count = new AtomicInteger(1);
+        volatile long lastNanos;
+        volatile boolean relayed;
+
+        Run(long fingerprint, String playerName, String worldName, String message, long now) {
+            this.fingerprint = fingerprint;
+            this.playerName = playerName;
+            this.worldName = worldName;
+            this.message = message;
+            this.lastNanos = now;
+        }
+    }
+
+    private static final class Sender {
+        final AtomicReference<Run> run = new AtomicReference<>();
+        final AtomicLongArray recent;
+        final AtomicInteger recentNext = new AtomicInteger();
+        // Theoretical arrival time of the next relay; the budget is spent while it runs ahead of now
+        final AtomicLong arrival;
+        final AtomicInteger suppressed = new AtomicInteger();
+        volatile long lastSeen;
+
+        Sender(DiscordConfig.RelayLimits settings, long now) {
+            this.recent = new AtomicLongArray(Math.max(1, settings.getRepeatWindow()));
+            this.arrival = new AtomicLong(now);
+            this.lastSeen = now;
+        }
+
+        int countRecent(long fingerprint) {
+            int matches = 0;
+            for (int i = 0; i < recent.length(); i++) {
+                if (recent.get(i) == fingerprint) {
+                    matches++;
+                }
+            }
+            return matches;
+        }
+
+        void remember(long fingerprint) {
+            recent.set(Math.floorMod(recentNext.getAndIncrement(), recent.length()), fingerprint);
+        }
+
+        boolean takeBudget(DiscordConfig.RelayLimits settings, long now) {
+            long interval = TimeUnit.MINUTES.toNanos(1) / settings.getPerMinute();
+            long tolerance = interval * (settings.getBurst() - 1);
+            while (true) {
+                long expected = arrival.get();
+                long start = expected - now > 0 ? expected : now;
+                if (start - now > tolerance) {
+                    return false;
+                }
+                if (arrival.compareAndSet(expected, start + interval)) {
+                    return true;
+                }
+            }
+        }
+    }
+}
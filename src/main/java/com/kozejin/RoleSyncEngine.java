@@ -0,0 +1,242 @@
+package com.kozejin;
+
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.Role;
+import net.dv8tion.jda.api.entities.UserSnowflake;
+import net.dv8tion.jda.api.exceptions.ErrorResponseException;
+import net.dv8tion.jda.api.requests.ErrorResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * Grants Discord roles for playtime milestones. A player is only looked at
+ * when their playtime may have moved them into another tier: when a session
+ * ends, when they link, on a periodic tick over the players online, or when
+ * they rejoin the guild. The tier Discord last confirmed is stored with the
+ * player, so restarts neither lose nor repeat work. Players that need an
+ * update are queued once each and applied a few at a time.
+ */
+public class RoleSyncEngine {
+    private static final long REQUEST_TIMEOUT_SECONDS = 30;
+    private static final long MAX_RETRY_DELAY_MS = TimeUnit.MINUTES.toMillis(15);
+
+    private final ConfigManager configManager;
+    private final PlayerDataStorage storage;
+    private final OnlineRoster roster;
+    private final DiscordBot bot;
+    private final Consumer<List<PlayerData>> onSynced;
+    private final Queue<UUID> queue = new ConcurrentLinkedQueue<>();
+    private final Set<UUID> queued = ConcurrentHashMap.newKeySet();
+    private final Map<UUID, Retry> retries = new ConcurrentHashMap<>();
+    // Tier Discord refused outright for a player; not retried until the tier changes or they rejoin
+    private final Map<UUID, Integer> rejected = new ConcurrentHashMap<>();
+    private final PluginExecutor executor;
+    // Ticks and batches take turns; a batch blocks on Discord, so it runs on the I/O threads
+    private final Executor lane;
+    private final List<PluginExecutor.Repeating> scheduled = new ArrayList<>();
+
+    public RoleSyncEngine(ConfigManager configManager, PlayerDataStorage storage, OnlineRoster roster,
+                          DiscordBot bot, PluginExecutor executor, Consumer<List<PlayerData>> onSynced) {
+        this.configManager = configManager;
+        this.executor = executor;
+        this.lane = executor.lane();
+        this.storage = storage;
+        this.roster = roster;
+        this.bot = bot;
+        this.onSynced = onSynced;
+    }
+
+    public void start() {
+        DiscordConfig.RoleSync settings = configManager.get().getRoleSync();
+        scheduled.add(executor.scheduleWithFixedDelay(lane, this::checkOnline, settings.getTickMinutes(), settings.getTickMinutes(), TimeUnit.MINUTES));
+        scheduled.add(executor.scheduleWithFixedDelay(lane, () -> {
+            try {
+                applyBatch();
+            } catch (RuntimeException e) {
+                System.out.println("[Discord Integration] Role sync batch failed: " + e.getMessage());
+            }
+        }, settings.getBatchIntervalSeconds(), settings.getBatchIntervalSeconds(), TimeUnit.SECONDS));
+        System.out.println("[Discord Integration] Playtime role sync enabled for " + settings.getTierCount() + " roles");
+    }
+
+    public void stop() {
+        for (PluginExecutor.Repeating task : scheduled) {
+            task.cancel();
+        }
+    }
+
+    /** Queues the player if their playtime is in a different tier than Discord last confirmed. */
+    public void check(PlayerData data) {
+        if (data.getDiscordId() == null) {
+            return;
+        }
+        int tier = configManager.get().getRoleSync().tierFor(livePlayTime(data));
+        Integer refused = rejected.get(data.getUuid());
+        if (refused != null && refused == tier) {
+            return;
+        }
+        if (tier != data.getRoleTier()) {
+            enqueue(data.getUuid());
+        }
+    }
+
+    /** Queues the player whatever their stored tier, for when Discord may have dropped their roles. */
+    public void resync(UUID uuid) {
+        rejected.remove(uuid);
+        enqueue(uuid);
+    }
+
+    private void enqueue(UUID uuid) {
+        if (queued.add(uuid)) {
+            queue.add(uuid);
+        }
+    }
+
+    private void checkOnline() {
+        try {
+            for (UUID uuid : roster.uuids()) {
+                PlayerData data = storage.getPlayerData(uuid);
+                if (data != null) {
+                    check(data);
+                }
+            }
+        } catch (RuntimeException e) {
+            System.out.println("[Discord Integration] Playtime role check failed: " + e.getMessage());
+        }
+    }
+
+    private void applyBatch() {
+        DiscordConfig.RoleSync settings = configManager.get().getRoleSync();
+        if (queue.isEmpty() || !bot.isConnected()) {
+            return;
+        }
+        Guild guild = bot.getGuild(settings.getGuildIdLong());
+        if (guild == null) {
+            System.out.println("[Discord Integration] Role sync guild not found: " + settings.getGuildId());
+            return;
+        }
+
+        List<PlayerData> synced = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        int attempted = 0;
+        // Each queued player is looked at once per batch; ones still backing off go round to the tail
+        for (int remaining = queue.size(); remaining > 0 && attempted < settings.getBatchSize(); remaining--) {
+            UUID uuid = queue.poll();
+            if (uuid == null) {
+                break;
+            }
+            Retry retry = retries.get(uuid);
+            if (retry != null && retry.notBefore > now) {
+                queue.add(uuid);
+                continue;
+            }
+            attempted++;
+            PlayerData data = storage.getPlayerData(uuid);
+            try {
+                if (data != null && data.getDiscordId() != null) {
+                    apply(guild, settings, data);
+                    synced.add(data);
+                }
+            } catch (ExecutionException e) {
+                if (DiscordBot.isPermanent(e.getCause())) {
+                    // Retrying can't help (role above the bot's, role deleted); skip this tier until something changes
+                    System.out.println("[Discord Integration] Role sync for " + data.getUsername() + " rejected by Discord, skipping: " + e.getCause().getMessage());
+                    rejected.put(uuid, settings.tierFor(livePlayTime(data)));
+                } else {
+                    retryLater(uuid, retry, settings, "failed: " + e.getCause().getMessage());
+                    break;
+                }
+            } catch (TimeoutException e) {
+                retryLater(uuid, retry, settings, "timed out");
+                break;
+            } catch (InterruptedException e) {
+                queue.add(uuid);
+                Thread.currentThread().interrupt();
+                break;
+            }
+            retries.remove(uuid);
+            queued.remove(uuid);
+        }
+        if (!synced.isEmpty()) {
+            onSynced.accept(synced);
+        }
+    }
+
+    /** Sends the player to the back of the queue, not to be tried again until its backoff has passed. */
+    private void retryLater(UUID uuid, Retry previous, DiscordConfig.RoleSync settings, String reason) {
+        int attempts = previous != null ? previous.attempts + 1 : 1;
+        long delay = Math.min(MAX_RETRY_DELAY_MS, TimeUnit.SECONDS.toMillis(settings.getBatchIntervalSeconds()) << Math.min(attempts, 16));
+        retries.put(uuid, new Retry(attempts, System.currentTimeMillis() + delay));
+        queue.add(uuid);
+        System.out.println("[Discord Integration] Role sync for " + uuid + " " + reason + ", retrying in " + TimeUnit.MILLISECONDS.toSeconds(delay) + "s");
+    }
+
+    /** Brings one member's roles in line with their tier and records the tier as confirmed. */
+    private void apply(Guild guild, DiscordConfig.RoleSync settings, PlayerData data)
+            throws ExecutionException, InterruptedException, TimeoutException {
+        int tier = settings.tierFor(livePlayTime(data));
+        long discordId = ChannelRouteTable.parseSnowflake(data.getDiscordId());
+        Member member;
+        try {
+            member = guild.retrieveMemberById(discordId).submit().get(REQUEST_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ErrorResponseException
+                    && ((ErrorResponseException) e.getCause()).getErrorResponse() == ErrorResponse.UNKNOWN_MEMBER) {
+                // Not in the guild; they are picked up again if they join
+                data.setRoleTier(tier);
+                return;
+            }
+            throw e;
+        }
+
+        List<Role> current = member.getRoles();
+        int changes = 0;
+        for (int i = 0; i < settings.getTierCount(); i++) {
+            Role role = guild.getRoleById(settings.getRoleIdLong(i));
+            if (role == null) {
+                continue;
+            }
+            boolean wanted = i < tier && (settings.isKeepLowerRoles() || i == tier - 1);
+            boolean has = current.contains(role);
+            if (wanted && !has) {
+                guild.addRoleToMember(UserSnowflake.fromId(discordId), role).submit().get(REQUEST_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                changes++;
+            } else if (!wanted && has) {
+                guild.removeRoleFromMember(UserSnowflake.fromId(discordId), role).submit().get(REQUEST_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                changes++;
+            }
+        }
+        data.setRoleTier(tier);
+        if (changes > 0) {
+            System.out.println("[Discord Integration] Updated " + changes + " playtime roles for " + data.getUsername() + " (tier " + tier + ")");
+        }
+    }
+
+    private static final class Retry {
+        final int attempts;
+        final long notBefore;
+
+        Retry(int attempts, long notBefore) {
+            this.attempts = attempts;
+            this.notBefore = notBefore;
+        }
+    }
+
+    private static long livePlayTime(PlayerData data) {
+        long sessionStart = data.getCurrentSessionStart();
+        return data.getTotalPlayTime() + (sessionStart > 0 ? System.currentTimeMillis() - sessionStart : 0);
+    }
+}
@@ -0,0 +1,522 @@
+package com.kozejin;
+
+import com.google.gson.Gson;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Player records in an embedded SQLite database. Records are loaded on first
+ * use and cached; changed records are queued and written by a single writer
+ * thread as batched upserts, so callers on game threads never wait on disk.
+ * Cached records with no open session are dropped again once they are saved
+ * and have gone a whole save without changing, so the cache tracks the
+ * players in use rather than everyone ever looked up.
+ */
+public class SqlitePlayerDataStorage implements PlayerDataStorage {
+    private static final String COLUMNS = "uuid, username, first_login, last_login, total_play_time, session_start, discord_id, discord_muted, role_tier";
+    private static final String UPSERT = "INSERT INTO players (" + COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) "
+        + "ON CONFLICT(uuid) DO UPDATE SET username = excluded.username, first_login = excluded.first_login, "
+        + "last_login = excluded.last_login, total_play_time = excluded.total_play_time, "
+        + "session_start = excluded.session_start, discord_id = excluded.discord_id, "
+        + "discord_muted = excluded.discord_muted, role_tier = excluded.role_tier";
+    private static final int WALK_FETCH_SIZE = 1000;
+
+    private final File databaseFile;
+    private final DiscordConfig.Storage settings;
+    private final Connection readConnection;
+    private final Connection writeConnection;
+    private final PreparedStatement selectByUuid;
+    private final PreparedStatement selectByUsername;
+    private final PreparedStatement selectByDiscordId;
+    private final Map<UUID, PlayerData> cache = new ConcurrentHashMap<>();
+    private final Map<UUID, Long> savedVersions = new ConcurrentHashMap<>();
+    private final Map<UUID, Long> idleVersions = new ConcurrentHashMap<>();
+    private volatile Consumer<UUID> foldListener = uuid -> { };
+    private final BlockingQueue<PlayerData> writeQueue = new LinkedBlockingQueue<>();
+    private final Set<UUID> queued = ConcurrentHashMap.newKeySet();
+    private final Thread writerThread;
+    private volatile boolean running = true;
+
+    public SqlitePlayerDataStorage(File dataFolder, DiscordConfig.Storage settings) throws SQLException {
+        if (!dataFolder.exists()) {
+            dataFolder.mkdirs();
+        }
+        this.databaseFile = new File(dataFolder, settings.getSqliteFile());
+        this.settings = settings;
+
+        String url = "jdbc:sqlite:" + databaseFile.getAbsolutePath();
+        writeConnection = DriverManager.getConnection(url);
+        try (Statement statement = writeConnection.createStatement()) {
+            statement.execute("PRAGMA journal_mode=WAL");
+            statement.execute("PRAGMA synchronous=NORMAL");
+            statement.execute("CREATE TABLE IF NOT EXISTS players ("
+                + "uuid TEXT PRIMARY KEY, username TEXT NOT NULL, first_login INTEGER NOT NULL, "
+                + "last_login INTEGER NOT NULL, total_play_time INTEGER NOT NULL, "
+                + "session_start INTEGER NOT NULL, discord_id TEXT, discord_muted INTEGER NOT NULL DEFAULT 0, "
+                + "role_tier INTEGER NOT NULL DEFAULT 0)");
+            addColumnIfMissing(statement, "discord_muted", "INTEGER NOT NULL DEFAULT 0");
+            addColumnIfMissing(statement, "role_tier", "INTEGER NOT NULL DEFAULT 0");
+            statement.execute("CREATE INDEX IF NOT EXISTS idx_players_discord_id ON players (discord_id)");
+            statement.execute("CREATE INDEX IF NOT EXISTS idx_players_username ON players (lower(username))");
+        }
+        importJson(new File(dataFolder, "players.json"));
+
+        // WAL lets lookups run alongside the writer on a second connection
+        readConnection = DriverManager.getConnection(url);
+        selectByUuid = readConnection.prepareStatement("SELECT " + COLUMNS + " FROM players WHERE uuid = ?");
+        selectByUsername = readConnection.prepareStatement("SELECT " + COLUMNS + " FROM players WHERE lower(username) = lower(?) LIMIT 1");
+        selectByDiscordId = readConnection.prepareStatement("SELECT " + COLUMNS + " FROM players WHERE discord_id = ? LIMIT 1");
+
+        writerThread = new Thread(this::writeLoop, "DiscordIntegration-PlayerWriter");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        System.out.println("[Discord Integration] Using SQLite player storage at: " + databaseFile.getAbsolutePath());
+    }
+
+    private static void addColumnIfMissing(Statement statement, String column, String definition) throws SQLException {
+        try (ResultSet columns = statement.executeQuery("PRAGMA table_info(players)")) {
+            while (columns.next()) {
+                if (column.equalsIgnoreCase(columns.getString("name"))) {
+                    return;
+                }
+            }
+        }
+        statement.execute("ALTER TABLE players ADD COLUMN " + column + " " + definition);
+    }
+
+    private void importJson(File jsonFile) throws SQLException {
+        if (!jsonFile.exists()) {
+            return;
+        }
+        try (Statement statement = writeConnection.createStatement();
+             ResultSet rows = statement.executeQuery("SELECT COUNT(*) FROM players")) {
+            if (rows.next() && rows.getLong(1) > 0) {
+                System.out.println("[Discord Integration] Skipping players.json import, database already has records");
+                return;
+            }
+        }
+
+        long start = System.currentTimeMillis();
+        FlightEvents.StorageLoad event = new FlightEvents.StorageLoad();
+        event.begin();
+        int imported;
+        writeConnection.setAutoCommit(false);
+        try (PreparedStatement upsert = writeConnection.prepareStatement(UPSERT)) {
+            int[] pending = {0};
+            imported = JsonPlayerDataStorage.forEachRecord(jsonFile, new Gson(), (uuid, data) -> {
+                try {
+                    bind(upsert, uuid, data);
+                    upsert.addBatch();
+                    if (++pending[0] >= 1000) {
+                        upsert.executeBatch();
+                        pending[0] = 0;
+                    }
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            upsert.executeBatch();
+            writeConnection.commit();
+        } catch (IOException | RuntimeException e) {
+            writeConnection.rollback();
+            System.err.println("[Discord Integration] Error importing players.json, it was left in place: " + e.getMessage());
+            return;
+        } finally {
+            writeConnection.setAutoCommit(true);
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.backend = "sqlite";
+            event.records = imported;
+            event.bytes = jsonFile.length();
+            event.commit();
+        }
+
+        File done = new File(jsonFile.getParentFile(), jsonFile.getName() + ".imported");
+        if (!jsonFile.renameTo(done)) {
+            System.err.println("[Discord Integration] Imported players.json but could not rename it; remove it to avoid confusion");
+        }
+        System.out.println("[Discord Integration] Imported " + imported + " player records from players.json in " + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    @Override
+    public PlayerData getPlayerData(UUID uuid) {
+        PlayerData data = cache.get(uuid);
+        if (data != null && (data = touch(data)) != null) {
+            return data;
+        }
+        PluginExecutor.checkBlocking("player database read");
+        synchronized (selectByUuid) {
+            try {
+                selectByUuid.setString(1, uuid.toString());
+                return cacheRow(selectByUuid);
+            } catch (SQLException e) {
+                System.err.println("[Discord Integration] Error reading player " + uuid + ": " + e.getMessage());
+                return null;
+            }
+        }
+    }
+
+    @Override
+    public PlayerData getOrCreatePlayerData(UUID uuid, String username) {
+        PlayerData data = getPlayerData(uuid);
+        if (data != null) {
+            return data;
+        }
+        PlayerData created = new PlayerData(uuid, username);
+        PlayerData existing = cache.putIfAbsent(uuid, created);
+        if (existing != null) {
+            return existing;
+        }
+        System.out.println("[Discord Integration] Creating new player data for " + username);
+        enqueue(created);
+        return created;
+    }
+
+    @Override
+    public void updatePlayerData(UUID uuid, PlayerData data) {
+        cache.put(uuid, data);
+        enqueue(data);
+    }
+
+    @Override
+    public PlayerData mergePlayerData(PlayerData incoming) {
+        PlayerData existing = getPlayerData(incoming.getUuid());
+        if (existing == null) {
+            existing = cache.putIfAbsent(incoming.getUuid(), incoming);
+        }
+        if (existing == null) {
+            enqueue(incoming);
+            return incoming;
+        }
+        existing.copyFrom(incoming);
+        enqueue(existing);
+        return existing;
+    }
+
+    @Override
+    public PlayerData getPlayerByUsername(String username) {
+        PluginExecutor.checkBlocking("player database query");
+        PlayerData data;
+        synchronized (selectByUsername) {
+            try {
+                selectByUsername.setString(1, username);
+                data = cacheRow(selectByUsername);
+            } catch (SQLException e) {
+                System.err.println("[Discord Integration] Error looking up player " + username + ": " + e.getMessage());
+                data = null;
+            }
+        }
+        if (data != null && username.equalsIgnoreCase(data.getUsername())) {
+            return data;
+        }
+        // The row may be behind a cached record that has not been written yet
+        for (PlayerData cached : cache.values()) {
+            if (username.equalsIgnoreCase(cached.getUsername()) && (cached = touch(cached)) != null) {
+                return cached;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public PlayerData getPlayerByDiscordId(String discordId) {
+        PluginExecutor.checkBlocking("player database query");
+        PlayerData data;
+        synchronized (selectByDiscordId) {
+            try {
+                selectByDiscordId.setString(1, discordId);
+                data = cacheRow(selectByDiscordId);
+            } catch (SQLException e) {
+                System.err.println("[Discord Integration] Error looking up Discord ID " + discordId + ": " + e.getMessage());
+                data = null;
+            }
+        }
+        if (data != null && discordId.equals(data.getDiscordId())) {
+            return data;
+        }
+        for (PlayerData cached : cache.values()) {
+            if (discordId.equals(cached.getDiscordId()) && (cached = touch(cached)) != null) {
+                return cached;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void linkDiscordAccount(UUID uuid, String discordId) {
+        PlayerData data = getPlayerData(uuid);
+        if (data != null) {
+            data.setDiscordId(discordId);
+            enqueue(data);
+            System.out.println("[Discord Integration] Linked " + data.getUsername() + " to Discord ID: " + discordId);
+        }
+    }
+
+    @Override
+    public Map<UUID, PlayerData> getAllPlayers() {
+        PluginExecutor.checkBlocking("player database scan");
+        Map<UUID, PlayerData> all = new HashMap<>();
+        try (Statement statement = readConnection.createStatement();
+             ResultSet rows = statement.executeQuery("SELECT " + COLUMNS + " FROM players")) {
+            while (rows.next()) {
+                PlayerData data = readRow(rows);
+                all.put(data.getUuid(), data);
+            }
+        } catch (SQLException e) {
+            System.err.println("[Discord Integration] Error reading player data: " + e.getMessage());
+        }
+        // Cached records are the live copies and may be ahead of their rows
+        all.putAll(cache);
+        return all;
+    }
+
+    /**
+     * Streams the table through one reused record rather than loading it. Cached
+     * records are visited first, as the live copies, and their rows skipped.
+     */
+    @Override
+    public void forEachPlayer(Consumer<PlayerData> action) {
+        PluginExecutor.checkBlocking("player database scan");
+        Set<UUID> visited = new HashSet<>();
+        for (PlayerData data : cache.values()) {
+            visited.add(data.getUuid());
+            action.accept(data);
+        }
+        PlayerData scratch = new PlayerData(null, null);
+        try (Statement statement = readConnection.createStatement()) {
+            statement.setFetchSize(WALK_FETCH_SIZE);
+            try (ResultSet rows = statement.executeQuery("SELECT " + COLUMNS + " FROM players")) {
+                while (rows.next()) {
+                    readRow(rows, scratch);
+                    if (!visited.contains(scratch.getUuid())) {
+                        action.accept(scratch);
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("[Discord Integration] Error reading player data: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void saveAllPlayers() {
+        for (PlayerData data : cache.values()) {
+            UUID uuid = data.getUuid();
+            long version = data.getVersion();
+            Long saved = savedVersions.get(uuid);
+            if (saved == null || saved != version) {
+                enqueue(data);
+                continue;
+            }
+            if (data.getCurrentSessionStart() > 0 || queued.contains(uuid)) {
+                continue;
+            }
+            Long seen = idleVersions.put(uuid, version);
+            if (seen != null && seen == version && evict(uuid, data, version)) {
+                savedVersions.remove(uuid);
+                foldListener.accept(uuid);
+            }
+        }
+    }
+
+    /**
+     * Drops an idle record from the cache unless it was looked up since it was
+     * marked. Runs under the cache's lock for the key, as {@link #touch} does.
+     */
+    private boolean evict(UUID uuid, PlayerData data, long version) {
+        boolean[] evicted = {false};
+        cache.computeIfPresent(uuid, (key, live) -> {
+            if (live == data && idleVersions.remove(key, version)) {
+                evicted[0] = true;
+                return null;
+            }
+            return live;
+        });
+        return evicted[0];
+    }
+
+    /**
+     * A cache hit handed to a caller. Clearing its idle mark restarts the wait
+     * before it can be evicted, so a caller about to change it is not left with
+     * a record the cache no longer holds. Null if it was evicted meanwhile.
+     */
+    private PlayerData touch(PlayerData data) {
+        UUID uuid = data.getUuid();
+        if (!idleVersions.containsKey(uuid)) {
+            return data;
+        }
+        return cache.computeIfPresent(uuid, (key, live) -> {
+            idleVersions.remove(key);
+            return live;
+        });
+    }
+
+    @Override
+    public void setFoldListener(Consumer<UUID> listener) {
+        foldListener = listener;
+    }
+
+    @Override
+    public void close() {
+        saveAllPlayers();
+        running = false;
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!writeQueue.isEmpty()) {
+            System.err.println("[Discord Integration] " + writeQueue.size() + " player records were not written before shutdown");
+        }
+        try {
+            readConnection.close();
+            writeConnection.close();
+        } catch (SQLException e) {
+            System.err.println("[Discord Integration] Error closing player database: " + e.getMessage());
+        }
+    }
+
+    private void enqueue(PlayerData data) {
+        if (queued.add(data.getUuid())) {
+            writeQueue.offer(data);
+        }
+    }
+
+    private void writeLoop() {
+        List<PlayerData> batch = new ArrayList<>(settings.getWriteBatchSize());
+        try (PreparedStatement upsert = writeConnection.prepareStatement(UPSERT)) {
+            while (running || !writeQueue.isEmpty()) {
+                PlayerData first = writeQueue.poll(250, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                if (running && settings.getWriteDelayMs() > 0) {
+                    // Let a burst of changes (a save after every leave) land in one transaction
+                    Thread.sleep(settings.getWriteDelayMs());
+                }
+                batch.add(first);
+                writeQueue.drainTo(batch, settings.getWriteBatchSize() - 1);
+                writeBatch(upsert, batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (SQLException e) {
+            System.err.println("[Discord Integration] Player writer stopped: " + e.getMessage());
+        }
+    }
+
+    private void writeBatch(PreparedStatement upsert, List<PlayerData> batch) {
+        long[] versions = new long[batch.size()];
+        FlightEvents.StorageSave event = new FlightEvents.StorageSave();
+        event.begin();
+        try {
+            writeConnection.setAutoCommit(false);
+            for (int i = 0; i < batch.size(); i++) {
+                PlayerData data = batch.get(i);
+                // Unmark first so a change made while we bind re-queues the record
+                queued.remove(data.getUuid());
+                versions[i] = data.getVersion();
+                bind(upsert, data.getUuid(), data);
+                upsert.addBatch();
+            }
+            upsert.executeBatch();
+            writeConnection.commit();
+            for (int i = 0; i < batch.size(); i++) {
+                savedVersions.put(batch.get(i).getUuid(), versions[i]);
+            }
+            event.end();
+            if (event.shouldCommit()) {
+                event.backend = "sqlite";
+                event.records = batch.size();
+                for (PlayerData data : batch) {
+                    event.bytes += boundBytes(data);
+                }
+                event.commit();
+            }
+        } catch (SQLException e) {
+            // Versions stay unsaved, so the next saveAllPlayers queues these records again
+            System.err.println("[Discord Integration] Error writing " + batch.size() + " player records: " + e.getMessage());
+            try {
+                upsert.clearBatch();
+                writeConnection.rollback();
+            } catch (SQLException ignored) {
+            }
+        } finally {
+            try {
+                writeConnection.setAutoCommit(true);
+            } catch (SQLException ignored) {
+            }
+        }
+    }
+
+    private PlayerData cacheRow(PreparedStatement query) throws SQLException {
+        try (ResultSet rows = query.executeQuery()) {
+            if (!rows.next()) {
+                return null;
+            }
+            PlayerData loaded = readRow(rows);
+            PlayerData existing = cache.putIfAbsent(loaded.getUuid(), loaded);
+            if (existing != null) {
+                return existing;
+            }
+            savedVersions.put(loaded.getUuid(), loaded.getVersion());
+            return loaded;
+        }
+    }
+
+    private static PlayerData readRow(ResultSet rows) throws SQLException {
+        return readRow(rows, new PlayerData(null, null));
+    }
+
+    private static PlayerData readRow(ResultSet rows, PlayerData data) throws SQLException {
+        data.load(UUID.fromString(rows.getString(1)), rows.getString(2), rows.getLong(3), rows.getLong(4),
+            rows.getLong(5), rows.getLong(6), rows.getString(7), rows.getInt(8) != 0, rows.getInt(9));
+        return data;
+    }
+
+    /** Roughly what {@link #bind} hands SQLite for a record: its text as UTF-8 plus eight bytes per number. */
+    private static long boundBytes(PlayerData data) {
+        long bytes = 36 + 6 * 8;
+        if (data.getUsername() != null) {
+            bytes += data.getUsername().getBytes(StandardCharsets.UTF_8).length;
+        }
+        if (data.getDiscordId() != null) {
+            bytes += data.getDiscordId().length();
+        }
+        return bytes;
+    }
+
+    private static void bind(PreparedStatement statement, UUID uuid, PlayerData data) throws SQLException {
+        statement.setString(1, uuid.toString());
+        statement.setString(2, data.getUsername() != null ? data.getUsername() : "");
+        statement.setLong(3, data.getFirstLoginTime());
+        statement.setLong(4, data.getLastLoginTime());
+        statement.setLong(5, data.getTotalPlayTime());
+        statement.setLong(6, data.getCurrentSessionStart());
+        statement.setString(7, data.getDiscordId());
+        statement.setInt(8, data.isDiscordChatMuted() ? 1 : 0);
+        statement.setInt(9, data.getRoleTier());
+    }
+}
@@ -0,0 +1,193 @@
+package com.kozejin;
+
+import com.hypixel.hytale.server.core.universe.Universe;
+import com.hypixel.hytale.server.core.universe.world.World;
+import net.dv8tion.jda.api.EmbedBuilder;
+import net.dv8tion.jda.api.entities.MessageEmbed;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps one pinned status embed in the bridge channel up to date. The embed
+ * is re-rendered on a fixed tick and only edited when its content hash has
+ * changed, so Discord traffic is bounded by the tick rate however busy the
+ * server is. Uptime is rendered as a Discord relative timestamp, which the
+ * client keeps current without any edits.
+ */
+public class StatusPublisher {
+    private static final int RECENT_JOINS = 5;
+    private static final String STATE_FILE = "status-message.txt";
+
+    private final DiscordIntegration plugin;
+    private final ConfigManager configManager;
+    private final DiscordBot bot;
+    private final File stateFile;
+    private final long startedAt = System.currentTimeMillis();
+    private final PluginExecutor executor;
+    private final Executor lane;
+    private PluginExecutor.Repeating scheduled;
+
+    // Recent joins, guarded by this
+    private final String[] recentJoins = new String[RECENT_JOINS];
+    private int recentNext;
+
+    // Only touched on the status lane
+    private long channelId;
+    private long messageId;
+    private long lastHash;
+
+    public StatusPublisher(DiscordIntegration plugin, ConfigManager configManager, DiscordBot bot, PluginExecutor executor, File dataFolder) {
+        this.plugin = plugin;
+        this.configManager = configManager;
+        this.bot = bot;
+        this.executor = executor;
+        this.lane = executor.lane();
+        this.stateFile = new File(dataFolder, STATE_FILE);
+    }
+
+    public void start() {
+        int interval = configManager.get().getStatusEmbed().getIntervalSeconds();
+        lane.execute(this::loadState);
+        scheduled = executor.scheduleWithFixedDelay(lane, () -> {
+            try {
+                tick();
+            } catch (RuntimeException e) {
+                System.out.println("[Discord Integration] Status embed update failed: " + e.getMessage());
+            }
+        }, interval, interval, TimeUnit.SECONDS);
+    }
+
+    public void stop() {
+        if (scheduled != null) {
+            scheduled.cancel();
+        }
+    }
+
+    public synchronized void recordJoin(String username) {
+        recentJoins[recentNext] = username;
+        recentNext = (recentNext + 1) % RECENT_JOINS;
+    }
+
+    private void tick() {
+        if (!bot.isConnected()) {
+            return;
+        }
+        DiscordConfig config = configManager.get();
+        long target = ChannelRouteTable.parseSnowflake(config.getStatusEmbed().getChannelId());
+        if (target == 0) {
+            target = ChannelRouteTable.parseSnowflake(config.getChannelId());
+        }
+        if (target != channelId) {
+            // Moved to another channel: start a fresh message there
+            channelId = target;
+            messageId = 0;
+        }
+
+        List<String> worlds = new ArrayList<>();
+        for (Map.Entry<String, World> entry : Universe.get().getWorlds().entrySet()) {
+            worlds.add(DiscordEscaper.escape(entry.getKey(), config.getEscaping()) + ": " + entry.getValue().getPlayerCount());
+        }
+        worlds.sort(String.CASE_INSENSITIVE_ORDER);
+        int remote = plugin.getRemotePlayerCount();
+        if (remote > 0) {
+            worlds.add("Other servers: " + remote);
+        }
+
+        String description = "**" + plugin.getTotalOnline() + "** players online\n"
+            + "Online since <t:" + startedAt / 1000 + ":R>";
+        String worldText = worlds.isEmpty() ? "None" : String.join("\n", worlds);
+        String joinText = recentJoinsText(config.getEscaping());
+
+        long hash = hash(description, worldText, joinText);
+        if (messageId != 0 && hash == lastHash) {
+            return;
+        }
+
+        MessageEmbed embed = new EmbedBuilder()
+            .setTitle("Server Status")
+            .setColor(0x00FFFF)
+            .setDescription(description)
+            .addField("Worlds", worldText, true)
+            .addField("Recent Joins", joinText, true)
+            .setFooter("Discord Integration", null)
+            .build();
+
+        if (messageId != 0) {
+            DiscordBot.EditResult result = bot.editEmbed(channelId, messageId, embed);
+            if (result == DiscordBot.EditResult.EDITED) {
+                lastHash = hash;
+                return;
+            }
+            if (result == DiscordBot.EditResult.FAILED) {
+                return;
+            }
+            System.out.println("[Discord Integration] Status message was deleted, posting a new one");
+        }
+
+        long posted = bot.postPinnedEmbed(channelId, embed);
+        if (posted != 0) {
+            messageId = posted;
+            lastHash = hash;
+            saveState();
+        }
+    }
+
+    private synchronized String recentJoinsText(DiscordConfig.Escaping escaping) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 1; i <= RECENT_JOINS; i++) {
+            String name = recentJoins[(recentNext - i + RECENT_JOINS) % RECENT_JOINS];
+            if (name == null) {
+                break;
+            }
+            if (text.length() > 0) {
+                text.append('\n');
+            }
+            text.append(DiscordEscaper.escape(name, escaping));
+        }
+        return text.length() > 0 ? text.toString() : "None yet";
+    }
+
+    /** 64-bit FNV-1a over the rendered parts; a collision only costs one skipped edit. */
+    private static long hash(String... parts) {
+        long hash = 0xcbf29ce484222325L;
+        for (String part : parts) {
+            for (int i = 0; i < part.length(); i++) {
+                hash = (hash ^ part.charAt(i)) * 0x100000001b3L;
+            }
+            hash = (hash ^ 0xFFFF) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private void loadState() {
+        if (!stateFile.isFile()) {
+            return;
+        }
+        try {
+            String[] parts = new String(Files.readAllBytes(stateFile.toPath()), StandardCharsets.UTF_8).trim().split("\\s+");
+            if (parts.length == 2) {
+                channelId = ChannelRouteTable.parseSnowflake(parts[0]);
+                messageId = ChannelRouteTable.parseSnowflake(parts[1]);
+            }
+        } catch (IOException e) {
+            System.out.println("[Discord Integration] Could not read status message state: " + e.getMessage());
+        }
+    }
+
+    private void saveState() {
+        try {
+            Files.write(stateFile.toPath(), (Long.toUnsignedString(channelId) + " " + Long.toUnsignedString(messageId) + "\n")
+                .getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            System.out.println("[Discord Integration] Could not save status message state: " + e.getMessage());
+        }
+    }
+}
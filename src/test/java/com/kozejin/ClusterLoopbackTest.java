@@ -0,0 +1,238 @@
+package com.kozejin;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a hub and several nodes on loopback over the real framing and
+ * protocol, the way a multi-node box does: every node says HELLO and gets
+ * the hub's player records, streams chat that must arrive whole and in
+ * order, and a player update from one node reaches every other node but
+ * not its sender. Discord chat fans out from the hub to all nodes.
+ *
+ * <p>Runs without a server; from the repository root, with the plugin's
+ * compile classpath (server jar, JDA, Gson) in {@code $CP}:
+ * <pre>
+ * javac -cp "$CP" -d out $(find src/main/java src/test/java -name '*.java')
+ * java -cp "out:$CP" com.kozejin.ClusterLoopbackTest
+ * </pre>
+ */
+public class ClusterLoopbackTest {
+    private static final int NODES = 4;
+    private static final int CHAT_PER_NODE = 5000;
+    private static final int SEEDED_RECORDS = 1500;
+
+    public static void main(String[] args) throws Exception {
+        Map<UUID, PlayerData> hubStore = new ConcurrentHashMap<>();
+        for (int i = 0; i < SEEDED_RECORDS; i++) {
+            PlayerData data = new PlayerData(UUID.randomUUID(), "Seeded" + i);
+            hubStore.put(data.getUuid(), data);
+        }
+
+        List<ClusterConnection> hubSide = new CopyOnWriteArrayList<>();
+        Map<String, List<String>> chatByNode = new ConcurrentHashMap<>();
+        CountDownLatch chatDone = new CountDownLatch(NODES * CHAT_PER_NODE);
+        ClusterConnection.Handler hub = new ClusterConnection.Handler() {
+            @Override
+            public void onMessage(ClusterConnection connection, byte type, DataInputStream in) throws IOException {
+                switch (type) {
+                    case ClusterProtocol.HELLO:
+                        connection.setNodeId(in.readUTF());
+                        chatByNode.put(connection.getNodeId(), new CopyOnWriteArrayList<>());
+                        for (byte[] chunk : ClusterProtocol.playerDataChunks(hubStore.values())) {
+                            connection.send(chunk);
+                        }
+                        break;
+                    case ClusterProtocol.CHAT:
+                        ClusterProtocol.readUuid(in);
+                        in.readUTF();
+                        in.readUTF();
+                        chatByNode.get(connection.getNodeId()).add(in.readUTF());
+                        chatDone.countDown();
+                        break;
+                    case ClusterProtocol.PLAYER_DATA:
+                        int count = in.readUnsignedShort();
+                        for (int i = 0; i < count; i++) {
+                            PlayerData data = ClusterProtocol.readPlayerData(in);
+                            hubStore.put(data.getUuid(), data);
+                            for (ClusterConnection other : hubSide) {
+                                if (other != connection) {
+                                    other.send(ClusterProtocol.playerData(data));
+                                }
+                            }
+                        }
+                        break;
+                    default:
+                        throw new IOException("Unexpected frame " + type);
+                }
+            }
+
+            @Override
+            public void onClosed(ClusterConnection connection) {
+                hubSide.remove(connection);
+            }
+        };
+
+        ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(() -> {
+            try {
+                for (int i = 0; i < NODES; i++) {
+                    ClusterConnection connection = new ClusterConnection(server.accept(), hub, 5);
+                    hubSide.add(connection);
+                    connection.start("hub-" + i);
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+        acceptor.start();
+
+        Node[] nodes = new Node[NODES];
+        for (int i = 0; i < NODES; i++) {
+            nodes[i] = new Node("node-" + i, server.getLocalPort());
+        }
+        acceptor.join(TimeUnit.SECONDS.toMillis(5));
+        check(hubSide.size() == NODES, "hub accepted " + hubSide.size() + " of " + NODES + " nodes");
+
+        for (Node node : nodes) {
+            check(node.awaitRecords(SEEDED_RECORDS), node.id + " got " + node.records.size() + " of " + SEEDED_RECORDS + " records after HELLO");
+        }
+
+        // All nodes stream at once, as they would under load
+        Thread[] senders = new Thread[NODES];
+        for (int i = 0; i < NODES; i++) {
+            Node node = nodes[i];
+            senders[i] = new Thread(() -> {
+                UUID player = UUID.randomUUID();
+                for (int n = 0; n < CHAT_PER_NODE; n++) {
+                    node.connection.send(ClusterProtocol.chat(player, "Player", "world", node.id + " line " + n));
+                }
+            });
+            senders[i].start();
+        }
+        for (Thread sender : senders) {
+            sender.join();
+        }
+        check(chatDone.await(10, TimeUnit.SECONDS), "hub got " + (NODES * CHAT_PER_NODE - chatDone.getCount()) + " of " + NODES * CHAT_PER_NODE + " chat lines");
+        for (Node node : nodes) {
+            List<String> lines = chatByNode.get(node.id);
+            for (int n = 0; n < CHAT_PER_NODE; n++) {
+                check((node.id + " line " + n).equals(lines.get(n)), node.id + " chat out of order at " + n + ": " + lines.get(n));
+            }
+        }
+
+        PlayerData update = new PlayerData(UUID.randomUUID(), "Linked");
+        update.setDiscordId("123456789012345678");
+        update.setTotalPlayTime(42_000);
+        int before = nodes[0].records.size();
+        nodes[0].connection.send(ClusterProtocol.playerData(update));
+        for (int i = 1; i < NODES; i++) {
+            check(nodes[i].awaitRecord(update.getUuid()), nodes[i].id + " never got the update from node-0");
+            PlayerData copy = nodes[i].records.get(update.getUuid());
+            check("123456789012345678".equals(copy.getDiscordId()) && copy.getTotalPlayTime() == 42_000,
+                nodes[i].id + " got a different record: " + copy.getDiscordId() + " " + copy.getTotalPlayTime());
+        }
+        check(nodes[0].records.size() == before, "node-0 got its own update echoed back");
+
+        for (ClusterConnection connection : hubSide) {
+            connection.send(ClusterProtocol.discordChat("{username}: {message}", "Mod", "hello nodes", Arrays.asList("world")));
+        }
+        for (Node node : nodes) {
+            check(node.awaitDiscordChat(), node.id + " never got the Discord chat broadcast");
+            check("Mod: hello nodes [world]".equals(node.discordChat.peek()), node.id + " got " + node.discordChat.peek());
+        }
+
+        for (Node node : nodes) {
+            node.connection.close();
+        }
+        server.close();
+        System.out.println("ClusterLoopbackTest passed: " + NODES + " nodes, " + NODES * CHAT_PER_NODE + " chat lines, "
+            + SEEDED_RECORDS + " records each");
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+
+    private static final class Node implements ClusterConnection.Handler {
+        final String id;
+        final ClusterConnection connection;
+        final Map<UUID, PlayerData> records = new ConcurrentHashMap<>();
+        final Queue<String> discordChat = new ConcurrentLinkedQueue<>();
+
+        Node(String id, int port) throws IOException {
+            this.id = id;
+            this.connection = new ClusterConnection(new Socket(InetAddress.getLoopbackAddress(), port), this, 5);
+            connection.start(id);
+            connection.send(ClusterProtocol.hello(id));
+        }
+
+        @Override
+        public void onMessage(ClusterConnection connection, byte type, DataInputStream in) throws IOException {
+            switch (type) {
+                case ClusterProtocol.PLAYER_DATA:
+                    int count = in.readUnsignedShort();
+                    for (int i = 0; i < count; i++) {
+                        PlayerData data = ClusterProtocol.readPlayerData(in);
+                        records.put(data.getUuid(), data);
+                    }
+                    break;
+                case ClusterProtocol.DISCORD_CHAT:
+                    String template = in.readUTF();
+                    String username = in.readUTF();
+                    String message = in.readUTF();
+                    List<String> worlds = new ArrayList<>();
+                    for (int i = in.readUnsignedShort(); i > 0; i--) {
+                        worlds.add(in.readUTF());
+                    }
+                    discordChat.add(template.replace("{username}", username).replace("{message}", message) + " " + worlds);
+                    break;
+                default:
+                    throw new IOException("Unexpected frame " + type);
+            }
+        }
+
+        @Override
+        public void onClosed(ClusterConnection connection) {
+        }
+
+        boolean awaitRecords(int count) throws InterruptedException {
+            return await(() -> records.size() >= count);
+        }
+
+        boolean awaitRecord(UUID uuid) throws InterruptedException {
+            return await(() -> records.containsKey(uuid));
+        }
+
+        boolean awaitDiscordChat() throws InterruptedException {
+            return await(() -> !discordChat.isEmpty());
+        }
+
+        private static boolean await(java.util.function.BooleanSupplier done) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (!done.getAsBoolean()) {
+                if (System.nanoTime() > deadline) {
+                    return false;
+                }
+                Thread.sleep(10);
+            }
+            return true;
+        }
+    }
+}
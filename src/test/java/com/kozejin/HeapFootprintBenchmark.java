@@ -0,0 +1,84 @@
+package com.kozejin;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Measures the heap retained by offline player records held the old way, as
+ * PlayerData in a ConcurrentHashMap, and the way JsonPlayerDataStorage holds
+ * them now, as rows of a CompactPlayerTable. Records look like a real
+ * players.json: every third is linked to Discord and role tiers vary.
+ *
+ * <p>Retained heap is read from the runtime after repeated GCs, so run each
+ * layout in its own JVM with a fixed heap for stable figures. From the
+ * repository root, with the plugin's compile classpath in {@code $CP}:
+ * <pre>
+ * javac -cp "$CP" -d out $(find src/main/java src/test/java -name '*.java')
+ * java -Xms2g -Xmx2g -cp "out:$CP" com.kozejin.HeapFootprintBenchmark 1000000 map
+ * java -Xms2g -Xmx2g -cp "out:$CP" com.kozejin.HeapFootprintBenchmark 1000000 table
+ * </pre>
+ * With no layout argument both are measured, one after the other.
+ */
+public class HeapFootprintBenchmark {
+    // Keeps the records reachable while the heap is read
+    private static Object retained;
+
+    public static void main(String[] args) {
+        int records = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        String layout = args.length > 1 ? args[1] : "both";
+        if (!layout.equals("table")) {
+            measure("map", records);
+        }
+        if (!layout.equals("map")) {
+            measure("table", records);
+        }
+    }
+
+    private static void measure(String layout, int records) {
+        long base = usedHeap();
+        retained = layout.equals("map") ? fillMap(records) : fillTable(records);
+        long used = usedHeap() - base;
+        retained = null;
+        System.out.println(layout + ": " + records + " records, " + used / (1024 * 1024) + " MB, "
+            + used / records + " bytes/record");
+    }
+
+    private static Map<UUID, PlayerData> fillMap(int records) {
+        Map<UUID, PlayerData> map = new ConcurrentHashMap<>();
+        Random random = new Random(1);
+        for (int i = 0; i < records; i++) {
+            PlayerData data = record(i, random);
+            map.put(data.getUuid(), data);
+        }
+        return map;
+    }
+
+    private static CompactPlayerTable fillTable(int records) {
+        CompactPlayerTable table = new CompactPlayerTable();
+        Random random = new Random(1);
+        for (int i = 0; i < records; i++) {
+            table.put(record(i, random));
+        }
+        return table;
+    }
+
+    private static PlayerData record(int i, Random random) {
+        PlayerData data = new PlayerData(new UUID(random.nextLong(), random.nextLong()), "Player_" + Integer.toString(i, 36));
+        data.setTotalPlayTime(random.nextInt(1_000_000_000));
+        if (i % 3 == 0) {
+            data.setDiscordId(Long.toUnsignedString(1_000_000_000_000_000_000L + random.nextInt(Integer.MAX_VALUE)));
+        }
+        data.setRoleTier(i % 4);
+        return data;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}